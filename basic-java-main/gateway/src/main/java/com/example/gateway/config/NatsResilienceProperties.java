@@ -0,0 +1,53 @@
+package com.example.gateway.config;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulkhead, circuit breaker and timeout settings of the NATS requests.
+ * Subjects listed in a group use its settings; a setting left empty falls back to the defaults.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "nats.resilience")
+public class NatsResilienceProperties {
+
+    /** Values used by subjects in no group and by any group leaving a setting empty */
+    private Policy defaults = new Policy();
+
+    /** Named groups of subjects sharing the same settings (each subject still has its own state) */
+    private Map<String, Group> groups = new LinkedHashMap<>();
+
+    @Data
+    public static class Policy {
+        /** Requests of the subject in flight at once; more fail fast (bulkhead) */
+        private Integer maxConcurrent;
+        /** Share of failed calls (timeout, no responder) in the window that opens the circuit */
+        private Double failureRateThreshold;
+        /** Calls seen before the failure rate and the latency percentile are trusted */
+        private Integer minimumCalls;
+        /** Last calls kept for the failure rate and the latency percentile */
+        private Integer windowSize;
+        /** ms an open circuit fails fast before one probe is let through */
+        private Long openDuration;
+        /** Timeout = latency percentile x multiplier, within [min-timeout, max-timeout] ms */
+        private Double timeoutPercentile;
+        private Double timeoutMultiplier;
+        private Long minTimeout;
+        /** Also the timeout until minimum-calls are seen; empty = nats.timeout */
+        private Long maxTimeout;
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class Group extends Policy {
+        private List<String> subjects = new ArrayList<>();
+    }
+}
@@ -9,12 +9,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/auth")
@@ -35,48 +37,47 @@ public class AuthController {
     // LOGIN
     // ===========================
     @PostMapping("/login")
-    public ResponseEntity<?> login(
-            @RequestBody LoginRequest request,
-            HttpServletResponse response
-    ) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest request) {
         // 1) Authenticate via NATS
-        NatsResponse natsResponse = nats.login(request);
-        if (!natsResponse.isSuccess()) {
-            throw new BadCredentialsException("Invalid credentials");
-        }
-
-        // 2) Convert response to UserDto
-        UserDto user = new ObjectMapper()
-                .convertValue(natsResponse.getData(), UserDto.class);
-
-        // 3) Generate JWT
-        String token = jwtUtil.generateToken(
-                user.getEmail(),
-                user.getRole(),
-                user.getUserId()
-        );
-
-        // 4) Set JWT cookie (profile-aware)
-        boolean isDocker = isDockerProfile();
-
-        String cookieHeader =
-                COOKIE_NAME + "=" + token +
-                        "; HttpOnly" +
-                        "; Path=/" +
-                        "; Max-Age=900" +
-                        (isDocker
-                                ? "; SameSite=None; Secure"
-                                : "; SameSite=Lax");
-
-        response.addHeader("Set-Cookie", cookieHeader);
-
-        // 5) Return user info (NO TOKEN in body)
-        return ResponseEntity.ok(Map.of(
-                "userId", user.getUserId(),
-                "email", user.getEmail(),
-                "role", user.getRole(),
-                "name", user.getName()
-        ));
+        return nats.login(request).thenApply(natsResponse -> {
+            if (!natsResponse.isSuccess()) {
+                throw new BadCredentialsException("Invalid credentials");
+            }
+
+            // 2) Convert response to UserDto
+            UserDto user = new ObjectMapper()
+                    .convertValue(natsResponse.getData(), UserDto.class);
+
+            // 3) Generate JWT
+            String token = jwtUtil.generateToken(
+                    user.getEmail(),
+                    user.getRole(),
+                    user.getUserId()
+            );
+
+            // 4) Set JWT cookie (profile-aware)
+            boolean isDocker = isDockerProfile();
+
+            String cookieHeader =
+                    COOKIE_NAME + "=" + token +
+                            "; HttpOnly" +
+                            "; Path=/" +
+                            "; Max-Age=900" +
+                            (isDocker
+                                    ? "; SameSite=None; Secure"
+                                    : "; SameSite=Lax");
+
+            // 5) Return user info (NO TOKEN in body)
+            // the cookie goes on the entity: the servlet response belongs to the async dispatch
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, cookieHeader)
+                    .body(Map.of(
+                            "userId", user.getUserId(),
+                            "email", user.getEmail(),
+                            "role", user.getRole(),
+                            "name", user.getName()
+                    ));
+        });
     }
 
     // ===========================
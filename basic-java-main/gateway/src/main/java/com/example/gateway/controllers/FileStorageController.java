@@ -1,21 +1,28 @@
 package com.example.gateway.controllers;
 
-import com.example.gateway.dtos.ProofUploadRequest;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import io.nats.client.Connection;
-import io.nats.client.Message;
+import com.example.gateway.service.NatsProofClient;
+import com.example.gateway.service.NatsUploadClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Base64;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Slf4j
 @RestController
@@ -23,11 +30,11 @@ import java.util.concurrent.CompletableFuture;
 @RequiredArgsConstructor
 public class FileStorageController {
 
-    private final Connection natsConnection;
-    private final ObjectMapper objectMapper;
+    private final NatsUploadClient uploadClient;
+    private final NatsProofClient proofClient;
 
     // -----------------------------------------------------
-    // ✅ POST — Upload Proof (multipart)
+    // ✅ POST — Upload Proof (multipart, streamed to Shipping-service in raw chunks)
     // -----------------------------------------------------
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @PostMapping("/{shipmentId}/upload-proof")
@@ -36,27 +43,18 @@ public class FileStorageController {
             @RequestParam("type") String type,
             @RequestParam("file") MultipartFile file
     ) {
-        try {
-
-            // Convert MultipartFile → DTO + Base64
-            ProofUploadRequest req = new ProofUploadRequest();
-            req.setShipmentId(shipmentId);
-            req.setType(type);
-            req.setFilename(file.getOriginalFilename());
-            req.setContentType(file.getContentType());
-            req.setFileBase64(Base64.getEncoder().encodeToString(file.getBytes()));
-
-            String json = objectMapper.writeValueAsString(req);
-
-            // send to Shipping-service via NATS (request-response)
-            CompletableFuture<Message> future = natsConnection.request(
-                    "shipping.file.upload",
-                    json.getBytes()
+        try (InputStream content = file.getInputStream()) {
+
+            // the file is read chunk by chunk, never held whole in memory
+            Map<String, Object> resp = uploadClient.upload(
+                    shipmentId,
+                    type,
+                    file.getOriginalFilename(),
+                    file.getContentType(),
+                    file.getSize(),
+                    content
             );
 
-            Message replyMsg = future.get();
-            Map<String, Object> resp = objectMapper.readValue(replyMsg.getData(), Map.class);
-
             return ResponseEntity.ok(resp);
 
         } catch (Exception e) {
@@ -69,51 +67,165 @@ public class FileStorageController {
     }
 
     // -----------------------------------------------------
-    // ✅ GET — Download Proof (bytes from MongoDB)
+    // ✅ GET — Download Proof (streamed from Shipping-service, conditional and range-capable)
+    //    ?variant=thumb: small JPEG preview of an image proof (the full file until it is generated)
     // -----------------------------------------------------
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @GetMapping("/{shipmentId}/proof/{type}")
-    public ResponseEntity<byte[]> downloadProof(
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> downloadProof(
             @PathVariable String shipmentId,
-            @PathVariable String type
+            @PathVariable String type,
+            @RequestParam(defaultValue = "full") String variant,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range
     ) {
-        try {
-            // build request
-            Map<String, String> request = Map.of(
-                    "shipmentId", shipmentId,
-                    "type", type
-            );
+        return proofClient.headAsync(shipmentId, type, variant)
+                .thenApply(resp -> Boolean.TRUE.equals(resp.get("success"))
+                        ? proofResponse((Map<String, Object>) resp.get("data"), ifNoneMatch, range)
+                        : ResponseEntity.status(404).<StreamingResponseBody>build())
+                .exceptionally(e -> {
+                    log.error("❌ File download failed", e);
+                    return ResponseEntity.status(500).build();
+                });
+    }
 
-            String json = objectMapper.writeValueAsString(request);
+    private ResponseEntity<StreamingResponseBody> proofResponse(Map<String, Object> file, String ifNoneMatch, String range) {
+        String etag = "\"" + file.get("etag") + "\"";
+        long size = ((Number) file.get("size")).longValue();
+        // A proof can be replaced under the same URL: clients keep it but revalidate (cheap 304)
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
 
-            // send the request to Shipping-service
-            CompletableFuture<Message> future = natsConnection.request(
-                    "shipping.file.get",
-                    json.getBytes()
-            );
+        long start = 0;
+        long length = size;
+        HttpStatus status = HttpStatus.OK;
+        if (range != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                // several ranges: the whole file is a valid answer
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(size);
+                    length = ranges.get(0).getRangeEnd(size) - start + 1;
+                    status = HttpStatus.PARTIAL_CONTENT;
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+        }
 
-            Message reply = future.get();
-            Map<String, Object> resp = objectMapper.readValue(reply.getData(), Map.class);
+        Object contentType = file.get("contentType");
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                .contentType(contentType != null
+                        ? MediaType.parseMediaType(contentType.toString())
+                        : MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(length)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(String.valueOf(file.get("filename"))).build().toString());
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + length - 1) + "/" + size);
+        }
 
-            if (!(boolean) resp.getOrDefault("success", false)) {
-                return ResponseEntity.status(404).build();
+        long from = start;
+        long count = length;
+        return response.body(out -> {
+            try {
+                proofClient.read(file, from, count, out);
+            } catch (RuntimeException e) {
+                // headers are already sent: the client sees a truncated body
+                log.error("❌ File download failed after {} bytes were announced", count, e);
+                throw e;
             }
+        });
+    }
+
+    // -----------------------------------------------------
+    // ✅ GET — List Proofs of a shipment (metadata only)
+    // -----------------------------------------------------
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    @GetMapping("/{shipmentId}/proofs")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> listProofs(@PathVariable String shipmentId) {
+        return proofClient.listAsync(List.of(shipmentId))
+                .thenApply(resp -> {
+                    if (Boolean.TRUE.equals(resp.get("success"))) {
+                        // storageIds are for the service-to-service reads only
+                        ((List<Map<String, Object>>) resp.get("data")).forEach(file -> file.remove("storageId"));
+                    }
+                    return ResponseEntity.ok(resp);
+                })
+                .exceptionally(e -> {
+                    log.error("❌ File listing failed", e);
+                    return ResponseEntity.status(500).body(Map.of(
+                            "success", false,
+                            "message", String.valueOf(e.getMessage())
+                    ));
+                });
+    }
 
-            // Data extraction
-            Map<String, Object> file = (Map<String, Object>) resp.get("data");
+    // -----------------------------------------------------
+    // ✅ GET — Export every proof of one or more shipments as a ZIP
+    //    built while it is sent: one proof slice in memory at a time
+    // -----------------------------------------------------
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    @GetMapping("/export")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> exportProofs(@RequestParam List<String> shipmentIds) {
+        return proofClient.listAsync(shipmentIds)
+                .thenApply(resp -> Boolean.TRUE.equals(resp.get("success"))
+                        ? zipResponse((List<Map<String, Object>>) resp.get("data"))
+                        : ResponseEntity.badRequest().<StreamingResponseBody>build())
+                .exceptionally(e -> {
+                    log.error("❌ Proof export failed", e);
+                    return ResponseEntity.status(500).build();
+                });
+    }
 
-            String filename = file.get("filename").toString();
-            String contentType = file.get("contentType").toString();
-            byte[] data = Base64.getDecoder().decode(file.get("fileBase64").toString());
+    private ResponseEntity<StreamingResponseBody> zipResponse(List<Map<String, Object>> files) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("proofs.zip").build().toString())
+                // written on the streaming task executor, not on a request thread
+                .body(out -> {
+                    ZipOutputStream zip = new ZipOutputStream(out);
+                    for (Map<String, Object> file : files) {
+                        Map<String, Object> current = file;
+                        if (current.get("size") == null) {
+                            // not migrated yet: the size comes with the head
+                            current = (Map<String, Object>) proofClient.head(
+                                    (String) file.get("shipmentId"), (String) file.get("type"), "full").get("data");
+                            if (current == null) continue;
+                        }
+                        // photos and PDFs are already compressed: level 0 still writes a DEFLATED entry, but of
+                        // stored blocks (a copy, no compression work). A STORED entry would need the CRC-32
+                        // before the content, which the listing does not have.
+                        zip.setLevel(isCompressed(current.get("contentType")) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                        zip.putNextEntry(new ZipEntry(zipEntryName(current)));
+                        proofClient.read(current, 0, ((Number) current.get("size")).longValue(), zip);
+                        zip.closeEntry();
+                    }
+                    zip.finish();
+                });
+    }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
-                    .body(data);
+    private static String zipEntryName(Map<String, Object> file) {
+        String filename = file.get("filename") != null ? file.get("filename").toString() : "file";
+        String name = file.get("shipmentId") + "/" + file.get("type") + "_" + filename.replaceAll("[/\\\\:]", "_");
+        return name.replace("..", "_");
+    }
 
-        } catch (Exception e) {
-            log.error("❌ File download failed", e);
-            return ResponseEntity.status(500).build();
-        }
+    private static boolean isCompressed(Object contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toString().toLowerCase();
+        return type.startsWith("image/jpeg") || type.startsWith("image/png")
+                || type.startsWith("application/pdf") || type.startsWith("application/zip");
     }
 }
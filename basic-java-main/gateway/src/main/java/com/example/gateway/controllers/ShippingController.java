@@ -2,24 +2,32 @@ package com.example.gateway.controllers;
 
 import com.example.gateway.dtos.NatsResponse;
 import com.example.gateway.dtos.ShipmentRequest;
-import com.example.gateway.dtos.ShipmentResponse;
 import com.example.gateway.dtos.UserDto;
 import com.example.gateway.exception.InvalidShipmentException;
+import com.example.gateway.service.NatsChunkStream;
 import com.example.gateway.service.NatsGatewayService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.gateway.service.NatsRawReply;
+import com.example.gateway.service.ValidatorCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 @Slf4j
 @RestController
@@ -27,8 +35,11 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class ShippingController {
 
+    // Shipments change under the same URL: clients keep them but revalidate (cheap 304)
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final NatsGatewayService natsGatewayService;
-    private final ObjectMapper objectMapper;
+    private final ValidatorCache validators;
 
     /* ============================================================
        🔐 USER ID RESOLUTION
@@ -77,25 +88,43 @@ public class ShippingController {
 
 
     /* ============================================================
-       📦 GET ALL SHIPMENTS
+       📦 GET ALL SHIPMENTS (streamed)
        ============================================================ */
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @GetMapping
-    public ResponseEntity<?> getAllShipments() {
+    public ResponseEntity<?> getAllShipments() throws IOException {
 
-        NatsResponse response = natsGatewayService.getAllShipments();
+        NatsChunkStream stream = natsGatewayService.streamAllShipments();
 
-        if (!response.isSuccess()) {
-            return handleErrorResponse(response);
+        NatsResponse error = stream.errorResponse();
+        if (error != null) {
+            stream.close();
+            return handleErrorResponse(error);
         }
 
-        List<ShipmentResponse> shipments = objectMapper.convertValue(
-                response.getData(),
-                objectMapper.getTypeFactory()
-                        .constructCollectionType(List.class, ShipmentResponse.class)
-        );
+        // Chunked HTTP: each NATS chunk is written out as soon as it arrives
+        StreamingResponseBody body = out -> {
+            try (stream) {
+                stream.writeJsonArray(out);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /* ============================================================
+       📦 GET SHIPMENTS PAGE (keyset cursor)
+       ============================================================ */
+    @PreAuthorize("hasAnyRole('USER','ADMIN')")
+    @GetMapping("/page")
+    public CompletableFuture<ResponseEntity<?>> getShipmentsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
 
-        return ResponseEntity.ok(shipments);
+        // { items, nextCursor, limit } — passed through untouched
+        return natsGatewayService.getShipmentsPage(cursor, limit).thenApply(reply -> passThrough(reply, null));
     }
 
     /* ============================================================
@@ -103,19 +132,23 @@ public class ShippingController {
        ============================================================ */
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @GetMapping("/{shipmentId}")
-    public ResponseEntity<?> getShipmentById(@PathVariable String shipmentId) {
+    public CompletableFuture<ResponseEntity<?>> getShipmentById(
+            @PathVariable String shipmentId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
-        NatsResponse response =
-                natsGatewayService.getShipmentByShipmentId(shipmentId);
+        String key = ValidatorCache.shipmentKey(shipmentId);
+        // same JSON as ShipmentResponse, already produced by Shipping-service
+        Supplier<CompletableFuture<ResponseEntity<?>>> fetch = () ->
+                natsGatewayService.getShipmentByShipmentId(shipmentId).thenApply(reply -> passThrough(reply, key));
 
-        if (!response.isSuccess()) {
-            return handleErrorResponse(response);
+        if (ifNoneMatch == null) {
+            return fetch.get();
         }
-
-        ShipmentResponse shipment =
-                objectMapper.convertValue(response.getData(), ShipmentResponse.class);
-
-        return ResponseEntity.ok(shipment);
+        // unchanged: confirmed by the version alone, the shipment itself is not fetched
+        return validators.confirm(key, ifNoneMatch, () -> natsGatewayService.getVersion(Map.of("shipmentId", shipmentId)))
+                .thenCompose(etag -> etag != null
+                        ? CompletableFuture.completedFuture(notModified(etag))
+                        : fetch.get());
     }
 
     /* ============================================================
@@ -123,28 +156,21 @@ public class ShippingController {
        ============================================================ */
     @PostMapping
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
-    public ResponseEntity<NatsResponse> createShipping(
+    public CompletableFuture<ResponseEntity<NatsResponse>> createShipping(
             @RequestBody ShipmentRequest request) {
 
         enforceUserId(request); // userId always retrieved
         request.validate();
 
-        try {
-            return ResponseEntity.ok(
-                    natsGatewayService.createShipping(request)
-            );
-        } catch (InvalidShipmentException e) {
-            return ResponseEntity.badRequest().body(
-                    new NatsResponse(false, null, null,
-                            "Shipping-service", "VALIDATION_ERROR", e.getMessage())
-            );
-        } catch (Exception e) {
-            log.error("❌ Error while creating shipment", e);
-            return ResponseEntity.internalServerError().body(
-                    new NatsResponse(false, null, null,
-                            "Shipping-service", "ERROR", "Erreur interne")
-            );
-        }
+        return natsGatewayService.createShipping(request)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(e -> {
+                    log.error("❌ Error while creating shipment", e);
+                    return ResponseEntity.internalServerError().body(
+                            new NatsResponse(false, null, null,
+                                    "Shipping-service", "ERROR", "Erreur interne")
+                    );
+                });
     }
 
     /* ============================================================
@@ -152,7 +178,7 @@ public class ShippingController {
        ============================================================ */
     @PutMapping("/{shipmentId}")
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
-    public ResponseEntity<NatsResponse> updateShipment(
+    public CompletableFuture<ResponseEntity<NatsResponse>> updateShipment(
             @PathVariable String shipmentId,
             @RequestBody ShipmentRequest request) {
 
@@ -165,9 +191,14 @@ public class ShippingController {
         request.setShipmentId(shipmentId);
 
         // Important : do not wrap in "data"
-        NatsResponse response = natsGatewayService.updateShipment(request);
-
-        return ResponseEntity.ok(response);
+        // the tracking number is not in the path: the one sent, and the one the reply tells
+        String trackingNumber = request.getTrackingNumber();
+        return natsGatewayService.updateShipment(request)
+                .whenComplete((response, error) -> {
+                    validators.evictShipment(shipmentId, trackingNumber);
+                    if (response != null) validators.evictShipment(null, response.dataField("trackingNumber"));
+                })
+                .thenApply(ResponseEntity::ok);
     }
 
 
@@ -176,25 +207,48 @@ public class ShippingController {
        ============================================================ */
     @DeleteMapping("/{shipmentId}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<NatsResponse> deleteShipping(
+    public CompletableFuture<ResponseEntity<NatsResponse>> deleteShipping(
             @PathVariable String shipmentId) {
 
+        return natsGatewayService.deleteShipment(shipmentId)
+                .whenComplete((response, error) -> validators.evict(ValidatorCache.shipmentKey(shipmentId)))
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(e -> {
+                    log.error("❌ Error while deleting shipment {}", shipmentId, e);
+                    return ResponseEntity.internalServerError().body(
+                            new NatsResponse(false, null, null,
+                                    "Shipping-service", "ERROR", "Erreur interne")
+                    );
+                });
+    }
+
+    /* ============================================================
+       ⏩ PASSTHROUGH: data bytes written as received
+       ============================================================ */
+    private ResponseEntity<?> passThrough(NatsRawReply reply, String validatorKey) {
         try {
-            return ResponseEntity.ok(
-                    natsGatewayService.sendRequest(
-                            "shipping.delete",
-                            Map.of("shipmentId", shipmentId)
-                    )
-            );
-        } catch (Exception e) {
-            log.error("❌ Error while deleting shipment {}", shipmentId, e);
-            return ResponseEntity.internalServerError().body(
-                    new NatsResponse(false, null, null,
-                            "Shipping-service", "ERROR", "Erreur interne")
-            );
+            if (!reply.isSuccess()) {
+                return handleErrorResponse(reply.envelope());
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+            String etag = reply.etag();
+            if (etag != null) {
+                if (validatorKey != null) validators.put(validatorKey, etag);
+                response.eTag(etag).cacheControl(REVALIDATE);
+            }
+            return response.body(reply.data());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
+    private static ResponseEntity<?> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(REVALIDATE)
+                .build();
+    }
+
     /* ============================================================
        🚨 ERROR HANDLING
        ============================================================ */
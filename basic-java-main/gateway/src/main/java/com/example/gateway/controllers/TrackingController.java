@@ -3,16 +3,23 @@ package com.example.gateway.controllers;
 import com.example.gateway.dtos.AddTrackingStatusRequest;
 import com.example.gateway.dtos.NatsResponse;
 import com.example.gateway.service.NatsGatewayService;
+import com.example.gateway.service.ValidatorCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 @Slf4j
 @RestController
@@ -20,18 +27,47 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class TrackingController {
 
+    // Tracking changes under the same URL: clients keep it but revalidate (cheap 304)
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final NatsGatewayService natsGatewayService;
+    private final ValidatorCache validators;
 
-    // GET Tracking by trackingNumber
+    // GET Tracking by trackingNumber (latest events, or an older bucket with ?bucket=previousBucket)
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @GetMapping("/{trackingNumber}")
-    public ResponseEntity<NatsResponse> getTrackingByTrackingNumber(@PathVariable String trackingNumber) {
-        return ResponseEntity.ok(
-                natsGatewayService.sendRequest(
-                        "shipping.tracking.get",
-                        Map.of("trackingNumber", trackingNumber)
-                )
-        );
+    public CompletableFuture<ResponseEntity<NatsResponse>> getTrackingByTrackingNumber(
+            @PathVariable String trackingNumber,
+            @RequestParam(required = false) Integer bucket,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        // every bucket carries the ETag of the shipment: any new event changes it
+        String key = ValidatorCache.trackingKey(trackingNumber);
+        Supplier<CompletableFuture<ResponseEntity<NatsResponse>>> fetch = () ->
+                natsGatewayService.getTracking(trackingNumber, bucket).thenApply(reply -> {
+                    try {
+                        NatsResponse response = reply.envelope();
+                        String etag = reply.etag();
+                        if (!response.isSuccess() || etag == null) {
+                            return ResponseEntity.ok(response);
+                        }
+                        validators.put(key, etag);
+                        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(response);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+        if (ifNoneMatch == null) {
+            return fetch.get();
+        }
+        return validators.confirm(key, ifNoneMatch, () -> natsGatewayService.getVersion(Map.of("trackingNumber", trackingNumber)))
+                .thenCompose(etag -> etag != null
+                        ? CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(etag)
+                                .cacheControl(REVALIDATE)
+                                .<NatsResponse>build())
+                        : fetch.get());
     }
 
 
@@ -39,12 +75,11 @@ public class TrackingController {
     // Add Tracking status via NATS
     @PreAuthorize("hasAnyRole('USER','ADMIN')")
     @PostMapping("/{trackingNumber}/add")
-    public ResponseEntity<NatsResponse> addTrackingStatus(
+    public CompletableFuture<ResponseEntity<NatsResponse>> addTrackingStatus(
             @PathVariable String trackingNumber,
             @RequestBody AddTrackingStatusRequest request
     ) {
-        return ResponseEntity.ok(
-                natsGatewayService.sendRequest(
+        return natsGatewayService.sendRequestAsync(
                         "shipping.tracking.add",
                         Map.of(
                                 "trackingNumber", trackingNumber,
@@ -53,7 +88,9 @@ public class TrackingController {
                                 "note", request.getNote()
                         )
                 )
-        );
+                .whenComplete((response, error) -> validators.evictShipment(
+                        response != null ? response.dataField("shipmentId") : null, trackingNumber))
+                .thenApply(ResponseEntity::ok);
     }
 
     /**
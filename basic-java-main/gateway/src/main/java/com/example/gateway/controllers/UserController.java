@@ -19,6 +19,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -34,19 +35,19 @@ public class UserController {
      */
     @PostMapping
     @PreAuthorize("hasAnyRole('ADMIN')")
-    public ResponseEntity<?> createUser(@Valid @RequestBody CreateUserRequest request) {
+    public CompletableFuture<ResponseEntity<?>> createUser(@Valid @RequestBody CreateUserRequest request) {
         log.info("POST /api/users - Creating user: {}", request.getEmail());
         
-        NatsResponse response = natsGatewayService.createUser(request);
-        
-        if (response.isSuccess()) {
-            UserDto user = objectMapper.convertValue(response.getData(), UserDto.class);
-            log.info("User created successfully: id={}", user.getUserId());
-            return ResponseEntity.status(HttpStatus.CREATED).body(user);
-        } else {
-            log.warn("Failed to create user: {}", response.getError().getMessage());
-            return handleErrorResponse(response);
-        }
+        return natsGatewayService.createUser(request).thenApply(response -> {
+            if (response.isSuccess()) {
+                UserDto user = objectMapper.convertValue(response.getData(), UserDto.class);
+                log.info("User created successfully: id={}", user.getUserId());
+                return ResponseEntity.status(HttpStatus.CREATED).body(user);
+            } else {
+                log.warn("Failed to create user: {}", response.getError().getMessage());
+                return handleErrorResponse(response);
+            }
+        });
     }
 
     /**
@@ -54,19 +55,19 @@ public class UserController {
      */
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN')")
-    public ResponseEntity<?> getUserById(@PathVariable Long id) {
+    public CompletableFuture<ResponseEntity<?>> getUserById(@PathVariable Long id) {
         log.info("GET /api/users/{} - Fetching user", id);
 
-        NatsResponse response = natsGatewayService.getUserById(id);
-
-        if (response.isSuccess()) {
-            UserDto user = objectMapper.convertValue(response.getData(), UserDto.class);
-            log.info("User fetched successfully: id={}", user.getUserId());
-            return ResponseEntity.ok(user);
-        } else {
-            log.warn("Failed to fetch user id={}: {}", id, response.getError().getMessage());
-            return handleErrorResponse(response);
-        }
+        return natsGatewayService.getUserById(id).thenApply(response -> {
+            if (response.isSuccess()) {
+                UserDto user = objectMapper.convertValue(response.getData(), UserDto.class);
+                log.info("User fetched successfully: id={}", user.getUserId());
+                return ResponseEntity.ok(user);
+            } else {
+                log.warn("Failed to fetch user id={}: {}", id, response.getError().getMessage());
+                return handleErrorResponse(response);
+            }
+        });
     }
 
     /**
@@ -74,23 +75,23 @@ public class UserController {
      */
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN')")
-    public ResponseEntity<?> getAllUsers() {
+    public CompletableFuture<ResponseEntity<?>> getAllUsers() {
         log.info("GET /api/users - Fetching all users");
 
-        NatsResponse response = natsGatewayService.getAllUsers();
-
-        if (response.isSuccess()) {
-
-            List<UserDto> users = objectMapper.convertValue(
-                    response.getData(),
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, UserDto.class)
-            );
-            log.info("Fetched {} users successfully", users.size());
-            return ResponseEntity.ok(users);
-        } else {
-            log.warn("Failed to fetch all users: {}", response.getError().getMessage());
-            return handleErrorResponse(response);
-        }
+        return natsGatewayService.getAllUsers().thenApply(response -> {
+            if (response.isSuccess()) {
+
+                List<UserDto> users = objectMapper.convertValue(
+                        response.getData(),
+                        objectMapper.getTypeFactory().constructCollectionType(List.class, UserDto.class)
+                );
+                log.info("Fetched {} users successfully", users.size());
+                return ResponseEntity.ok(users);
+            } else {
+                log.warn("Failed to fetch all users: {}", response.getError().getMessage());
+                return handleErrorResponse(response);
+            }
+        });
     }
 
     /**
@@ -98,21 +99,21 @@ public class UserController {
      */
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN')")
-    public ResponseEntity<?> updateUser(
+    public CompletableFuture<ResponseEntity<?>> updateUser(
             @PathVariable Long id,
             @Valid @RequestBody UpdateUserRequest request) {
         log.info("PUT /api/users/{} - Updating user", id);
         
-        NatsResponse response = natsGatewayService.updateUser(id, request);
-        
-        if (response.isSuccess()) {
-            UserDto user = objectMapper.convertValue(response.getData(), UserDto.class);
-            log.info("User updated successfully: id={}", user.getUserId());
-            return ResponseEntity.ok(user);
-        } else {
-            log.warn("Failed to update user id={}: {}", id, response.getError().getMessage());
-            return handleErrorResponse(response);
-        }
+        return natsGatewayService.updateUser(id, request).thenApply(response -> {
+            if (response.isSuccess()) {
+                UserDto user = objectMapper.convertValue(response.getData(), UserDto.class);
+                log.info("User updated successfully: id={}", user.getUserId());
+                return ResponseEntity.ok(user);
+            } else {
+                log.warn("Failed to update user id={}: {}", id, response.getError().getMessage());
+                return handleErrorResponse(response);
+            }
+        });
     }
 
     /**
@@ -120,18 +121,18 @@ public class UserController {
      */
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN')")
-    public ResponseEntity<?> deleteUser(@PathVariable Long id) {
+    public CompletableFuture<ResponseEntity<?>> deleteUser(@PathVariable Long id) {
         log.info("DELETE /api/users/{} - Deleting user", id);
         
-        NatsResponse response = natsGatewayService.deleteUser(id);
-        
-        if (response.isSuccess()) {
-            log.info("User deleted successfully: id={}", id);
-            return ResponseEntity.noContent().build();
-        } else {
-            log.warn("Failed to delete user id={}: {}", id, response.getError().getMessage());
-            return handleErrorResponse(response);
-        }
+        return natsGatewayService.deleteUser(id).thenApply(response -> {
+            if (response.isSuccess()) {
+                log.info("User deleted successfully: id={}", id);
+                return ResponseEntity.noContent().build();
+            } else {
+                log.warn("Failed to delete user id={}: {}", id, response.getError().getMessage());
+                return handleErrorResponse(response);
+            }
+        });
     }
 
     /**
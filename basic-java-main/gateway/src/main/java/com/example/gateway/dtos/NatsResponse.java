@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,6 +21,13 @@ public class NatsResponse {
     private String message;
     private String status;
     
+    /**
+     * One field of an object data, as text; null if absent or if the data is not an object.
+     */
+    public String dataField(String name) {
+        return data instanceof Map<?, ?> map && map.get(name) != null ? map.get(name).toString() : null;
+    }
+
     public static NatsResponse success(Object data) {
         return NatsResponse.builder()
                 .success(true)
@@ -0,0 +1,11 @@
+package com.example.gateway.exception;
+
+/**
+ * Request refused by the gateway itself: the subject's circuit is open or its bulkhead is full.
+ */
+public class NatsUnavailableException extends RuntimeException {
+
+    public NatsUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -8,6 +8,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -26,6 +27,7 @@ import java.util.List;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
+    private final VerifiedTokenCache tokenCache;
     private static final String COOKIE_NAME = "AUTH_TOKEN";
 
     @Override
@@ -59,46 +61,53 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // 4️ Parse token and set authentication
-        try {
-            Jws<Claims> parsedToken = jwtUtil.parseToken(token);
-            Claims claims = parsedToken.getBody();
+        // 4️ Token already verified: same identity, no signature check
+        VerifiedTokenCache.Identity identity = tokenCache.get(token);
 
-            String email = claims.getSubject();
-            String role = claims.get("role", String.class);
-            Long userId = claims.get("userId", Long.class);
+        // 5️ Otherwise parse the token
+        if (identity == null) {
+            try {
+                Jws<Claims> parsedToken = jwtUtil.parseToken(token);
+                Claims claims = parsedToken.getBody();
 
-            if (userId == null) {
-                log.error("JWT does not contain userId ❌");
+                Long userId = claims.get("userId", Long.class);
+                if (userId == null) {
+                    log.error("JWT does not contain userId ❌");
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    return;
+                }
+
+                identity = new VerifiedTokenCache.Identity(userId, claims.getSubject(), claims.get("role", String.class));
+                tokenCache.put(token, claims.getExpiration(), identity);
+
+            } catch (JwtException e) {
+                log.error("JWT validation failed: {}", e.getMessage());
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 return;
             }
-
-            // PRINCIPAL = UserDto
-            UserDto user = new UserDto();
-            user.setUserId(userId);
-            user.setEmail(email);
-            user.setRole(List.of("ROLE_" + role).toString());
-
-            var authorities = List.of(
-                    new SimpleGrantedAuthority("ROLE_" + role)
-            );
-
-            UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(
-                            user,
-                            null,
-                            authorities
-                    );
-
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-
-        } catch (JwtException e) {
-            log.error("JWT validation failed: {}", e.getMessage());
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            return;
         }
 
+        // 6️ Authentication of this request only: nothing a request changes in it reaches the others
+        SecurityContextHolder.getContext().setAuthentication(authentication(identity));
+
         chain.doFilter(request, response);
     }
+
+    private static Authentication authentication(VerifiedTokenCache.Identity identity) {
+        // PRINCIPAL = UserDto
+        UserDto user = new UserDto();
+        user.setUserId(identity.userId());
+        user.setEmail(identity.email());
+        user.setRole(List.of("ROLE_" + identity.role()).toString());
+
+        var authorities = List.of(
+                new SimpleGrantedAuthority("ROLE_" + identity.role())
+        );
+
+        return new UsernamePasswordAuthenticationToken(
+                user,
+                null,
+                authorities
+        );
+    }
 }
@@ -23,9 +23,15 @@ public class JwtUtil {
 
     private Key signingKey;
 
+    // immutable and thread-safe: built once, not per request
+    private JwtParser parser;
+
     @PostConstruct
     public void init() {
         this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
     // =======================
@@ -52,10 +58,7 @@ public class JwtUtil {
     // Parse JWT
     // =======================
     public Jws<Claims> parseToken(String token) throws JwtException {
-        return Jwts.parserBuilder()
-                .setSigningKey(signingKey)
-                .build()
-                .parseClaimsJws(token);
+        return parser.parseClaimsJws(token);
     }
 
     public String refreshToken(String token) {
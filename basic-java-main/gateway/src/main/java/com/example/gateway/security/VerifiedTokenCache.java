@@ -0,0 +1,80 @@
+package com.example.gateway.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokens already verified, with the identity read from their claims.
+ * The same cookie comes back on every request of its 15 minutes: the signature check and the
+ * claims parse are done once. Keyed by the SHA-256 of the token (the bearer token itself is not kept),
+ * each entry expires at the token's exp. Rejected tokens are never cached.
+ * Only the immutable Identity is shared between requests; each builds its own Authentication from it.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    /** What a verified token says about its bearer */
+    public record Identity(Long userId, String email, String role) {}
+
+    private final Cache<String, Entry> tokens;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-entries:10000}") long maxEntries) {
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        long millis = entry.expiresAt() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return the identity of a token verified earlier and not expired yet, null otherwise
+     */
+    public Identity get(String token) {
+        Entry entry = tokens.getIfPresent(digest(token));
+        return entry != null ? entry.identity() : null;
+    }
+
+    public void put(String token, Date expiration, Identity identity) {
+        // no exp claim: verified again on every request, as before
+        if (expiration == null) return;
+        tokens.put(digest(token), new Entry(identity, expiration.getTime()));
+    }
+
+    // ==== INTERNAL ====
+
+    private record Entry(Identity identity, long expiresAt) {}
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.gateway.service;
+
+import com.example.gateway.dtos.NatsResponse;
+import com.example.gateway.exception.NatsConnectionException;
+import com.example.gateway.exception.NatsTimeoutException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.nats.client.Message;
+import io.nats.client.Subscription;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Reply of a streamed NATS request (shipping.getAll with stream=true).
+ * The service publishes the result as raw JSON-array chunks on our inbox, flagged with
+ * Shipping-Chunk-Seq / Shipping-Chunk-Last headers. A message without those headers is a
+ * regular NatsResponse envelope (an error).
+ */
+public class NatsChunkStream implements AutoCloseable {
+
+    static final String HEADER_CHUNK_SEQ = "Shipping-Chunk-Seq";
+    static final String HEADER_CHUNK_LAST = "Shipping-Chunk-Last";
+
+    private final Subscription subscription;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper;
+    private final Message first;
+
+    NatsChunkStream(Subscription subscription, Duration timeout, ObjectMapper objectMapper, Message first) {
+        this.subscription = subscription;
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+        this.first = first;
+    }
+
+    /**
+     * The error envelope if the service refused the request, null if chunks are coming.
+     */
+    public NatsResponse errorResponse() throws IOException {
+        return isChunk(first) ? null : objectMapper.readValue(first.getData(), NatsResponse.class);
+    }
+
+    /**
+     * Writes all chunks as one JSON array, as they arrive: chunks are concatenated
+     * byte for byte, nothing is deserialized.
+     */
+    public void writeJsonArray(OutputStream out) throws IOException {
+        out.write('[');
+        boolean firstItem = true;
+        Message chunk = first;
+        int expectedSeq = 0;
+
+        while (true) {
+            if (!isChunk(chunk)) {
+                throw new NatsConnectionException("Shipment stream aborted by the service: "
+                        + new String(chunk.getData(), StandardCharsets.UTF_8));
+            }
+            int seq = Integer.parseInt(chunk.getHeaders().getFirst(HEADER_CHUNK_SEQ));
+            if (seq != expectedSeq++) {
+                throw new NatsConnectionException("Shipment stream out of order: got chunk " + seq);
+            }
+
+            byte[] body = chunk.getData();
+            // body is "[...]": copy what is between the brackets
+            if (body.length > 2) {
+                if (!firstItem) out.write(',');
+                out.write(body, 1, body.length - 2);
+                firstItem = false;
+            }
+            out.flush();
+
+            if (Boolean.parseBoolean(chunk.getHeaders().getFirst(HEADER_CHUNK_LAST))) {
+                break;
+            }
+            chunk = next();
+        }
+        out.write(']');
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        try {
+            subscription.unsubscribe();
+        } catch (IllegalStateException ignored) {
+            // connection already closed
+        }
+    }
+
+    // ==== INTERNAL ====
+
+    private Message next() {
+        try {
+            Message message = subscription.nextMessage(timeout);
+            if (message == null) {
+                throw new NatsTimeoutException("NATS timeout while streaming shipments");
+            }
+            return message;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NatsConnectionException("Interrupted while streaming shipments", e);
+        }
+    }
+
+    private static boolean isChunk(Message message) {
+        return message.hasHeaders() && message.getHeaders().containsKey(HEADER_CHUNK_SEQ);
+    }
+}
@@ -3,19 +3,28 @@ package com.example.gateway.service;
 import com.example.gateway.dtos.*;
 import com.example.gateway.exception.NatsConnectionException;
 import com.example.gateway.exception.NatsTimeoutException;
+import com.example.gateway.exception.NatsUnavailableException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.nats.client.Connection;
 import io.nats.client.Message;
+import io.nats.client.Subscription;
+import io.nats.client.impl.Headers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
@@ -24,6 +33,9 @@ public class NatsGatewayService {
 
     private final Connection connection;
     private final ObjectMapper objectMapper;
+    private final NatsRequestCoalescer coalescer;
+    private final NatsResilience resilience;
+    private final NatsHedger hedger;
 
     @Value("${nats.timeout:5000}")
     private int timeout;
@@ -43,75 +55,76 @@ public class NatsGatewayService {
 
     private static final String SUBJECT_TRACKING_GET = "shipping.tracking.get";
     private static final String SUBJECT_TRACKING_STATUS_ADD = "shipping.tracking.add";
+    private static final String SUBJECT_VERSION = "shipping.version";
 
     private static final String SUBJECT_USER_LOGIN = "user.login";
 
+    /* Side-effect free: identical concurrent requests may share one reply */
+    private static final Set<String> READ_SUBJECTS = Set.of(
+            SUBJECT_GET_USER,
+            SUBJECT_GET_ALL_USERS,
+            SUBJECT_GET_ALL_SHIPMENTS,
+            SUBJECT_GET_SHIPMENT_BY_ID,
+            SUBJECT_TRACKING_GET,
+            SUBJECT_VERSION
+    );
+
     /**
      * Generic method to send a NATS request to a specific subject.
      * For shipping requests, the payload is sent **as-is**, no wrapper.
+     * No thread is held while the reply is pending: the future completes on the NATS dispatcher,
+     * exceptionally with a NatsTimeoutException or NatsConnectionException.
      */
-    public NatsResponse sendRequest(String subject, Object payload) {
-        log.debug("Sending generic NATS request to subject '{}': {}", subject, payload);
-        try {
-            checkConnection();
-
-            String requestJson;
-
-            // login has special handling
-            if (SUBJECT_USER_LOGIN.equals(subject)) {
-                requestJson = objectMapper.writeValueAsString(payload);
-                log.info("FINAL JSON SENT TO NATS [user.login] → {}", requestJson);
-
-            } else if (SUBJECT_SHIPPING_CREATE.equals(subject)
-                    || SUBJECT_GET_ALL_SHIPMENTS.equals(subject)
-                    || SUBJECT_GET_SHIPMENT_BY_ID.equals(subject)
-                    || SUBJECT_UPDATE_SHIPPING.equals(subject)
-                    || SUBJECT_DELETE_SHIPPING.equals(subject)) {
-
-                // shipping: send payload **as-is**, do not wrap userId
-                requestJson = objectMapper.writeValueAsString(payload);
-               // log.info("FINAL JSON SENT TO NATS [{}] → {}", subject, requestJson);
-
-            } else {
-                // wrapper for other services (user, notifications)
-                Map<String, Object> wrapper = new HashMap<>();
-                wrapper.put("data", payload);
-                requestJson = objectMapper.writeValueAsString(wrapper);
-                //log.info("FINAL JSON SENT TO NATS [{}] → {}", subject, requestJson);
+    public CompletableFuture<NatsResponse> sendRequestAsync(String subject, Object payload) {
+        return request(subject, null, payload).thenApply(reply -> {
+            try {
+                return deserializeResponse(reply);
+            } catch (NatsConnectionException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new NatsConnectionException("Failed NATS communication on subject " + subject, e);
             }
+        });
+    }
 
-            Message reply = connection.request(
-                    subject,
-                    requestJson.getBytes(StandardCharsets.UTF_8),
-                    Duration.ofMillis(timeout)
-            );
-
-            return deserializeResponse(reply);
+    /**
+     * Passthrough variant: on success the reply body is the data JSON itself, nothing is deserialized.
+     * For replies the gateway forwards without transforming them.
+     */
+    public CompletableFuture<NatsRawReply> sendRawRequestAsync(String subject, Object payload) {
+        return sendRawRequestAsync(subject, payload, true);
+    }
 
-        } catch (TimeoutException e) {
-            throw new NatsTimeoutException("NATS timeout on subject " + subject, e);
-        } catch (Exception e) {
-            throw new NatsConnectionException("Failed NATS communication on subject " + subject, e);
-        }
+    /**
+     * @param dataOnly false: the body stays the usual envelope, only the reply headers are of interest
+     */
+    public CompletableFuture<NatsRawReply> sendRawRequestAsync(String subject, Object payload, boolean dataOnly) {
+        Headers headers = dataOnly ? new Headers().put(NatsRawReply.HEADER_REPLY, NatsRawReply.REPLY_DATA) : null;
+        return request(subject, headers, payload).thenApply(reply -> {
+            if (reply == null || reply.getData() == null) {
+                throw new NatsConnectionException("Empty response from NATS");
+            }
+            return new NatsRawReply(reply, objectMapper, dataOnly);
+        });
     }
 
     // ==== USER OPERATIONS ====
 
-    public NatsResponse createUser(CreateUserRequest request) {
-        return sendRequest(SUBJECT_CREATE_USER, request);
+    public CompletableFuture<NatsResponse> createUser(CreateUserRequest request) {
+        return sendRequestAsync(SUBJECT_CREATE_USER, request);
     }
 
-    public NatsResponse getUserById(Long id) {
+    public CompletableFuture<NatsResponse> getUserById(Long id) {
         Map<String, Object> request = new HashMap<>();
         request.put("id", id);
-        return sendRequest(SUBJECT_GET_USER, request);
+        return sendRequestAsync(SUBJECT_GET_USER, request);
     }
 
-    public NatsResponse getAllUsers() {
-        return sendRequest(SUBJECT_GET_ALL_USERS, new HashMap<>());
+    public CompletableFuture<NatsResponse> getAllUsers() {
+        return sendRequestAsync(SUBJECT_GET_ALL_USERS, new HashMap<>());
     }
 
-    public NatsResponse updateUser(Long id, UpdateUserRequest request) {
+    public CompletableFuture<NatsResponse> updateUser(Long id, UpdateUserRequest request) {
         Map<String, Object> requestMap = new HashMap<>();
         requestMap.put("id", id);
         requestMap.put("name", request.getName());
@@ -119,13 +132,13 @@ public class NatsGatewayService {
         requestMap.put("address", request.getAddress());
         requestMap.put("role", request.getRole());
 
-        return sendRequest(SUBJECT_UPDATE_USER, requestMap);
+        return sendRequestAsync(SUBJECT_UPDATE_USER, requestMap);
     }
 
-    public NatsResponse deleteUser(Long id) {
+    public CompletableFuture<NatsResponse> deleteUser(Long id) {
         Map<String, Object> request = new HashMap<>();
         request.put("id", id);
-        return sendRequest(SUBJECT_DELETE_USER, request);
+        return sendRequestAsync(SUBJECT_DELETE_USER, request);
     }
 
     public void notifyUser(Long id, NotificationRequest request) {
@@ -143,40 +156,102 @@ public class NatsGatewayService {
         }
     }
 
-    public NatsResponse login(LoginRequest request) {
-        return sendRequest(SUBJECT_USER_LOGIN, request);
+    public CompletableFuture<NatsResponse> login(LoginRequest request) {
+        return sendRequestAsync(SUBJECT_USER_LOGIN, request);
     }
 
     // ==== SHIPPING OPERATIONS ====
 
-    public NatsResponse getAllShipments() {
-        return sendRequest(SUBJECT_GET_ALL_SHIPMENTS, new HashMap<>());
+    public CompletableFuture<NatsRawReply> getShipmentsPage(String cursor, Integer limit) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("cursor", cursor);
+        request.put("limit", limit);
+        return sendRawRequestAsync(SUBJECT_GET_ALL_SHIPMENTS, request);
+    }
+
+    /**
+     * Asks for every shipment as a stream of reply chunks.
+     * Waits for the first message only; the caller pulls the rest and must close the stream.
+     * Unlike the other requests this one blocks the calling thread, up to the NATS timeout, until
+     * the first chunk arrives.
+     */
+    public NatsChunkStream streamAllShipments() {
+        checkConnection();
+        Subscription subscription = null;
+        try {
+            String inbox = connection.createInbox();
+            subscription = connection.subscribe(inbox);
+            connection.publish(
+                    SUBJECT_GET_ALL_SHIPMENTS,
+                    inbox,
+                    objectMapper.writeValueAsBytes(Map.of("stream", true))
+            );
+
+            Message first = subscription.nextMessage(Duration.ofMillis(timeout));
+            if (first == null) {
+                throw new NatsTimeoutException("NATS timeout on subject " + SUBJECT_GET_ALL_SHIPMENTS);
+            }
+            return new NatsChunkStream(subscription, Duration.ofMillis(timeout), objectMapper, first);
+
+        } catch (NatsTimeoutException e) {
+            subscription.unsubscribe();
+            throw e;
+        } catch (Exception e) {
+            if (subscription != null) subscription.unsubscribe();
+            throw new NatsConnectionException("Failed NATS communication on subject " + SUBJECT_GET_ALL_SHIPMENTS, e);
+        }
     }
 
-    public NatsResponse createShipping(ShipmentRequest request) {
-        return sendRequest(SUBJECT_SHIPPING_CREATE, request);
+    public CompletableFuture<NatsResponse> createShipping(ShipmentRequest request) {
+        return sendRequestAsync(SUBJECT_SHIPPING_CREATE, request);
     }
 
-    public NatsResponse getShipmentByShipmentId(String shipmentId) {
+    public CompletableFuture<NatsRawReply> getShipmentByShipmentId(String shipmentId) {
         Map<String, Object> request = new HashMap<>();
         request.put("shipmentId", shipmentId);
-        return sendRequest(SUBJECT_GET_SHIPMENT_BY_ID, request);
+        return sendRawRequestAsync(SUBJECT_GET_SHIPMENT_BY_ID, request);
     }
 
-    public NatsResponse updateShipment(ShipmentRequest request) {
-        return sendRequest(SUBJECT_UPDATE_SHIPPING, request);
+    public CompletableFuture<NatsResponse> updateShipment(ShipmentRequest request) {
+        return sendRequestAsync(SUBJECT_UPDATE_SHIPPING, request);
     }
 
-    public NatsResponse deleteShipment(String shipmentId) {
+    public CompletableFuture<NatsResponse> deleteShipment(String shipmentId) {
         Map<String, Object> request = new HashMap<>();
         request.put("shipmentId", shipmentId);
-        return sendRequest(SUBJECT_DELETE_SHIPPING, request);
+        return sendRequestAsync(SUBJECT_DELETE_SHIPPING, request);
     }
 
-    public NatsResponse getTrackingInfo(String shipmentId) {
+    public CompletableFuture<NatsResponse> getTrackingInfo(String shipmentId) {
         Map<String, Object> request = new HashMap<>();
         request.put("shipmentId", shipmentId);
-        return sendRequest(SUBJECT_TRACKING_GET, request);
+        return sendRequestAsync(SUBJECT_TRACKING_GET, request);
+    }
+
+    /**
+     * Latest events, or an older bucket. Envelope reply, with the ETag of the shipment in its headers.
+     */
+    public CompletableFuture<NatsRawReply> getTracking(String trackingNumber, Integer bucket) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("trackingNumber", trackingNumber);
+        if (bucket != null) {
+            request.put("bucket", bucket);
+        }
+        return sendRawRequestAsync(SUBJECT_TRACKING_GET, request, false);
+    }
+
+    /**
+     * Current ETag (quoted) of a shipment, without its payload. Null when the service could not tell.
+     *
+     * @param key {"shipmentId": ...} or {"trackingNumber": ...}
+     */
+    public CompletableFuture<String> getVersion(Map<String, Object> key) {
+        return sendRequestAsync(SUBJECT_VERSION, key).thenApply(response -> {
+            if (!response.isSuccess() || !(response.getData() instanceof Map<?, ?> data) || data.get("etag") == null) {
+                return null;
+            }
+            return "\"" + data.get("etag") + "\"";
+        });
     }
 
     // ==== INTERNAL ====
@@ -187,6 +262,95 @@ public class NatsGatewayService {
         }
     }
 
+    private CompletableFuture<Message> request(String subject, Headers headers, Object payload) {
+        log.debug("Sending generic NATS request to subject '{}': {}", subject, payload);
+        byte[] request;
+        try {
+            checkConnection();
+            request = encodeRequest(subject, payload);
+        } catch (NatsConnectionException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(
+                    new NatsConnectionException("Failed NATS communication on subject " + subject, e));
+        }
+
+        // bulkhead, circuit breaker and timeout of the subject (see NatsResilience);
+        // a slow read may be sent twice within them (see NatsHedger)
+        Supplier<CompletableFuture<Message>> send = () -> resilience.call(subject, subjectTimeout -> {
+            Supplier<CompletableFuture<Message>> attempt =
+                    () -> connection.requestWithTimeout(subject, headers, request, subjectTimeout);
+            return READ_SUBJECTS.contains(subject) && hedger.applies(subject)
+                    ? hedger.send(subject, attempt)
+                    : attempt.get();
+        });
+
+        CompletableFuture<Message> pending;
+        if (READ_SUBJECTS.contains(subject)) {
+            pending = coalescer.request(subject, headers != null, request, send);
+        } else {
+            // answered or not, the write may have been applied: no read shared from before it
+            pending = send.get().whenComplete((reply, error) -> coalescer.evict(service(subject)));
+        }
+
+        return pending.handle((reply, error) -> {
+            if (error != null) {
+                throw translate(subject, error);
+            }
+            return reply;
+        });
+    }
+
+    /**
+     * "shipping." for shipping.update, "user." for user.delete...
+     */
+    private static String service(String subject) {
+        return subject.substring(0, subject.indexOf('.') + 1);
+    }
+
+    private byte[] encodeRequest(String subject, Object payload) throws IOException {
+        String requestJson;
+
+        // login has special handling
+        if (SUBJECT_USER_LOGIN.equals(subject)) {
+            requestJson = objectMapper.writeValueAsString(payload);
+            log.info("FINAL JSON SENT TO NATS [user.login] → {}", requestJson);
+
+        } else if (SUBJECT_SHIPPING_CREATE.equals(subject)
+                || SUBJECT_GET_ALL_SHIPMENTS.equals(subject)
+                || SUBJECT_GET_SHIPMENT_BY_ID.equals(subject)
+                || SUBJECT_UPDATE_SHIPPING.equals(subject)
+                || SUBJECT_DELETE_SHIPPING.equals(subject)
+                || SUBJECT_VERSION.equals(subject)) {
+
+            // shipping: send payload **as-is**, do not wrap userId
+            requestJson = objectMapper.writeValueAsString(payload);
+           // log.info("FINAL JSON SENT TO NATS [{}] → {}", subject, requestJson);
+
+        } else {
+            // wrapper for other services (user, notifications)
+            Map<String, Object> wrapper = new HashMap<>();
+            wrapper.put("data", payload);
+            requestJson = objectMapper.writeValueAsString(wrapper);
+            //log.info("FINAL JSON SENT TO NATS [{}] → {}", subject, requestJson);
+        }
+        return requestJson.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * requestWithTimeout cancels the future when no reply came in time.
+     */
+    private static RuntimeException translate(String subject, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof NatsUnavailableException unavailable) {
+            return unavailable;
+        }
+        if (cause instanceof CancellationException || cause instanceof TimeoutException) {
+            return new NatsTimeoutException("NATS timeout on subject " + subject, cause);
+        }
+        return new NatsConnectionException("Failed NATS communication on subject " + subject, cause);
+    }
+
     private NatsResponse deserializeResponse(Message message) throws Exception {
         if (message == null || message.getData() == null) {
             throw new NatsConnectionException("Empty response from NATS");
@@ -0,0 +1,198 @@
+package com.example.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.nats.client.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedged reads: when no reply came within the subject's p95, a second copy is sent and the first
+ * reply wins; the other one is discarded when it arrives. With a queue group the copy goes to any
+ * replica, most often not the slow one.
+ * The p95 is the one of the first copies alone, measured here: gateway.nats.latency sees the hedged
+ * latency, which hedging itself brings down, and would shrink the delay further and further.
+ * Opt-in (nats.hedging.enabled) and only for the listed subjects, which must be idempotent reads.
+ * The budget caps the extra load: each request earns {@code budget} of a hedge, a hedge spends one.
+ * <p>
+ * Metrics: gateway.nats.hedges{subject, result=sent|won|over_budget}, and
+ * gateway.nats.hedging.primary{subject}: latency of the first copy alone, i.e. without hedging,
+ * to compare with the p99 of gateway.nats.latency.
+ */
+@Component
+public class NatsHedger {
+
+    /* hedges that can be spent in a burst, in thousandths */
+    private static final long MAX_TOKENS = 10_000;
+
+    /* first-copy replies kept per subject; p95 known from MIN_SAMPLES on, recomputed every REFRESH_EVERY */
+    private static final int WINDOW_SIZE = 100;
+    private static final int MIN_SAMPLES = 20;
+    private static final int REFRESH_EVERY = 16;
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong tokens = new AtomicLong(MAX_TOKENS);
+    private final Map<String, PrimaryLatency> primaryLatencies = new ConcurrentHashMap<>();
+
+    @Value("${nats.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${nats.hedging.subjects:}")
+    private List<String> subjects;
+
+    @Value("${nats.hedging.budget:0.05}")
+    private double budget;
+
+    @Value("${nats.hedging.min-delay:10}")
+    private long minDelay;
+
+    public NatsHedger(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean applies(String subject) {
+        return enabled && subjects.contains(subject);
+    }
+
+    /**
+     * No hedge until the p95 of the subject is known.
+     *
+     * @param send sends one copy of the request
+     */
+    public CompletableFuture<Message> send(String subject, Supplier<CompletableFuture<Message>> send) {
+        deposit();
+        PrimaryLatency latency = primaryLatencies.computeIfAbsent(subject, s -> new PrimaryLatency());
+        long p95Millis = latency.p95Millis();
+
+        long start = System.nanoTime();
+        CompletableFuture<Message> primary = send.get();
+        primary.whenComplete((reply, error) -> {
+            if (error == null) {
+                long nanos = System.nanoTime() - start;
+                primaryTimer(subject).record(nanos, TimeUnit.NANOSECONDS);
+                latency.record(nanos);
+            }
+        });
+        if (p95Millis < 0) {
+            return primary;
+        }
+
+        Race race = new Race();
+        primary.whenComplete((reply, error) -> race.done(reply, error, false, subject));
+
+        CompletableFuture.delayedExecutor(Math.max(minDelay, p95Millis), TimeUnit.MILLISECONDS).execute(() -> {
+            if (!race.start()) return;
+            if (!withdraw()) {
+                race.done(null, null, true, subject);
+                counter(subject, "over_budget").increment();
+                return;
+            }
+            counter(subject, "sent").increment();
+            CompletableFuture<Message> hedge;
+            try {
+                hedge = send.get();
+            } catch (RuntimeException e) {
+                hedge = CompletableFuture.failedFuture(e);
+            }
+            hedge.whenComplete((reply, error) -> race.done(reply, error, true, subject));
+        });
+        return race.result;
+    }
+
+    // ==== INTERNAL ====
+
+    /**
+     * First successful reply wins; fails when every copy sent has failed.
+     */
+    private final class Race {
+        final CompletableFuture<Message> result = new CompletableFuture<>();
+        private int outstanding = 1;
+        private Throwable lastError;
+
+        /** @return false if the race is already decided: no hedge needed */
+        synchronized boolean start() {
+            if (result.isDone()) return false;
+            outstanding++;
+            return true;
+        }
+
+        /** reply == null and error == null: the hedge was not sent after all */
+        synchronized void done(Message reply, Throwable error, boolean hedge, String subject) {
+            outstanding--;
+            if (reply != null) {
+                if (result.complete(reply) && hedge) {
+                    counter(subject, "won").increment();
+                }
+                return;
+            }
+            if (error != null) lastError = error;
+            if (outstanding == 0 && lastError != null) {
+                result.completeExceptionally(lastError);
+            }
+        }
+    }
+
+    /**
+     * Recent latencies of the replies to first copies.
+     */
+    private static final class PrimaryLatency {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int next;
+        private int count;
+        private int sinceRefresh;
+        private volatile long p95Millis = -1;
+
+        /** -1 until MIN_SAMPLES replies are seen */
+        long p95Millis() {
+            return p95Millis;
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (++sinceRefresh >= REFRESH_EVERY && count >= MIN_SAMPLES) {
+                sinceRefresh = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(0.95 * sorted.length) - 1;
+                p95Millis = TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+            }
+        }
+    }
+
+    private void deposit() {
+        long earned = (long) (budget * 1000);
+        tokens.getAndUpdate(current -> Math.min(MAX_TOKENS, current + earned));
+    }
+
+    private boolean withdraw() {
+        return tokens.getAndUpdate(current -> current >= 1000 ? current - 1000 : current) >= 1000;
+    }
+
+    private Counter counter(String subject, String result) {
+        return Counter.builder("gateway.nats.hedges")
+                .description("Second copies of slow read requests")
+                .tag("subject", subject)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Timer primaryTimer(String subject) {
+        return Timer.builder("gateway.nats.hedging.primary")
+                .description("Latency of the first copy alone (what the request would have taken without hedging)")
+                .tag("subject", subject)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+}
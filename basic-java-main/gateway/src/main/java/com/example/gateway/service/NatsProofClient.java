@@ -0,0 +1,190 @@
+package com.example.gateway.service;
+
+import com.example.gateway.exception.NatsConnectionException;
+import com.example.gateway.exception.NatsTimeoutException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Client side of the proof download.
+ * <pre>
+ *   shipping.file.head  {shipmentId, type, variant}             -> NatsReply: metadata, etag, storageId
+ *   shipping.file.list  {shipmentIds}                           -> NatsReply: metadata of every proof
+ *   shipping.file.read  {storageId, offset, length}             -> raw bytes + Proof-Offset header
+ * </pre>
+ * A read is answered by any replica (contents are immutable per storageId). The requested range is
+ * pulled in slices of {@code chunkSize}, at most {@code window} in flight, and each slice is written
+ * to the output as it arrives: memory per download is window x chunkSize, whatever the file size.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NatsProofClient {
+
+    private static final String SUBJECT_HEAD = "shipping.file.head";
+    private static final String SUBJECT_LIST = "shipping.file.list";
+    private static final String SUBJECT_READ = "shipping.file.read";
+
+    private static final String HEADER_OFFSET = "Proof-Offset";
+
+    private final Connection connection;
+    private final ObjectMapper objectMapper;
+
+    @Value("${nats.timeout:5000}")
+    private int timeout;
+
+    @Value("${proofs.download.chunk-size:262144}")
+    private int chunkSize;
+
+    @Value("${proofs.download.window:4}")
+    private int window;
+
+    /**
+     * @param variant "thumb" or "full"
+     * @return the shipping-service reply envelope (metadata of the current proof, or an error)
+     */
+    public Map<String, Object> head(String shipmentId, String type, String variant) {
+        return envelope(SUBJECT_HEAD, headRequest(shipmentId, type, variant));
+    }
+
+    /**
+     * {@link #head} without waiting: completes on the NATS dispatcher.
+     */
+    public CompletableFuture<Map<String, Object>> headAsync(String shipmentId, String type, String variant) {
+        return envelopeAsync(SUBJECT_HEAD, headRequest(shipmentId, type, variant));
+    }
+
+    /**
+     * Completes on the NATS dispatcher.
+     * @return the shipping-service reply envelope, data = metadata of every proof of the shipments
+     */
+    public CompletableFuture<Map<String, Object>> listAsync(List<String> shipmentIds) {
+        return envelopeAsync(SUBJECT_LIST, Map.of("shipmentIds", shipmentIds));
+    }
+
+    /**
+     * Copies bytes [offset, offset + length) of the content described by a head() reply to the output.
+     */
+    public void read(Map<String, Object> file, long offset, long length, OutputStream out) throws IOException {
+        // a slice, with its headers, always fits in one message
+        int sliceSize = (int) Math.min(chunkSize, connection.getMaxPayload() - 1024);
+        long end = offset + length;
+        long next = offset;
+        Deque<Slice> inFlight = new ArrayDeque<>();
+
+        try {
+            while (next < end || !inFlight.isEmpty()) {
+                while (next < end && inFlight.size() < window) {
+                    int size = (int) Math.min(sliceSize, end - next);
+                    inFlight.addLast(new Slice(send(SUBJECT_READ, readRequest(file, next, size)), size));
+                    next += size;
+                }
+
+                Slice slice = inFlight.removeFirst();
+                Message reply = await(slice.reply());
+                if (!reply.hasHeaders() || !reply.getHeaders().containsKey(HEADER_OFFSET)) {
+                    throw new NatsConnectionException("Proof download aborted by the service: "
+                            + new String(reply.getData(), StandardCharsets.UTF_8));
+                }
+                if (reply.getData().length != slice.length()) {
+                    throw new NatsConnectionException("Proof content shorter than announced");
+                }
+                out.write(reply.getData());
+                out.flush();
+            }
+        } finally {
+            // client gone or error: replies still pending are of no use
+            inFlight.forEach(slice -> slice.reply().cancel(true));
+        }
+    }
+
+    // ==== INTERNAL ====
+
+    private record Slice(CompletableFuture<Message> reply, int length) {}
+
+    private Map<String, Object> envelope(String subject, Object payload) {
+        return decode(subject, await(send(subject, payload)));
+    }
+
+    /* a send that fails right away (not connected) fails the future too */
+    private CompletableFuture<Map<String, Object>> envelopeAsync(String subject, Object payload) {
+        return CompletableFuture.completedFuture(payload)
+                .thenCompose(request -> send(subject, request))
+                .thenApply(reply -> decode(subject, reply));
+    }
+
+    private static Map<String, Object> headRequest(String shipmentId, String type, String variant) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("shipmentId", shipmentId);
+        request.put("type", type);
+        request.put("variant", variant);
+        return request;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> decode(String subject, Message reply) {
+        try {
+            return objectMapper.readValue(reply.getData(), Map.class);
+        } catch (IOException e) {
+            throw new NatsConnectionException("Invalid reply on " + subject + ": "
+                    + new String(reply.getData(), StandardCharsets.UTF_8), e);
+        }
+    }
+
+    private static Map<String, Object> readRequest(Map<String, Object> file, long offset, int length) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("storageId", file.get("storageId"));
+        request.put("shipmentId", file.get("shipmentId"));
+        request.put("type", file.get("type"));
+        request.put("offset", offset);
+        request.put("length", length);
+        return request;
+    }
+
+    private CompletableFuture<Message> send(String subject, Object payload) {
+        if (connection.getStatus() != Connection.Status.CONNECTED) {
+            throw new NatsConnectionException("NATS server is not available");
+        }
+        try {
+            return connection.requestWithTimeout(subject, objectMapper.writeValueAsBytes(payload), Duration.ofMillis(timeout));
+        } catch (IOException e) {
+            throw new NatsConnectionException("Could not encode request on " + subject, e);
+        }
+    }
+
+    private Message await(CompletableFuture<Message> pending) {
+        try {
+            return pending.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new NatsTimeoutException("NATS timeout during proof download", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw new NatsTimeoutException("NATS timeout during proof download", e.getCause());
+            }
+            throw new NatsConnectionException("Proof download failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NatsConnectionException("Interrupted during proof download", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.gateway.service;
+
+import com.example.gateway.dtos.NatsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.nats.client.Message;
+
+import java.io.IOException;
+
+/**
+ * Reply of a shipping request, read through its headers first.
+ * Sent with Shipping-Reply: data, the outcome is read from the Shipping-Status header: on success
+ * the body is the data JSON, ready to be written to the HTTP response untouched; on error it is
+ * the usual envelope. A reply without the header (older service) is an envelope and is unwrapped here.
+ * Shipping-ETag, when present, is the validator of the shipment or tracking view in the data.
+ */
+public class NatsRawReply {
+
+    static final String HEADER_STATUS = "Shipping-Status";
+    static final String HEADER_REPLY = "Shipping-Reply";
+    static final String REPLY_DATA = "data";
+    static final String HEADER_ETAG = "Shipping-ETag";
+
+    private final Message message;
+    private final ObjectMapper objectMapper;
+    private final boolean dataOnly;
+
+    NatsRawReply(Message message, ObjectMapper objectMapper, boolean dataOnly) {
+        this.message = message;
+        this.objectMapper = objectMapper;
+        this.dataOnly = dataOnly;
+    }
+
+    public boolean isSuccess() throws IOException {
+        String status = status();
+        return status != null ? "success".equals(status) : envelope().isSuccess();
+    }
+
+    /**
+     * JSON of the reply data, as the service produced it.
+     */
+    public byte[] data() throws IOException {
+        if (dataOnly && status() != null) {
+            return message.getData();
+        }
+        return objectMapper.writeValueAsBytes(envelope().getData());
+    }
+
+    /**
+     * The full envelope: only needed for errors, or when the data has to be transformed.
+     */
+    public NatsResponse envelope() throws IOException {
+        if (dataOnly && "success".equals(status())) {
+            // data only: put the envelope back around it
+            return NatsResponse.success(objectMapper.readValue(message.getData(), Object.class));
+        }
+        return objectMapper.readValue(message.getData(), NatsResponse.class);
+    }
+
+    /**
+     * Quoted HTTP ETag, null if the service sent none.
+     */
+    public String etag() {
+        String etag = message.hasHeaders() ? message.getHeaders().getFirst(HEADER_ETAG) : null;
+        return etag != null ? "\"" + etag + "\"" : null;
+    }
+
+    // ==== INTERNAL ====
+
+    private String status() {
+        return message.hasHeaders() ? message.getHeaders().getFirst(HEADER_STATUS) : null;
+    }
+}
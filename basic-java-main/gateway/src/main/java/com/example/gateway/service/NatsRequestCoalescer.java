@@ -0,0 +1,106 @@
+package com.example.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.nats.client.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Shares one NATS request between identical concurrent reads (same subject, same bytes, same reply mode).
+ * The first caller sends, the others wait for its reply. A successful reply is still handed to callers
+ * arriving within {@code nats.coalescing.window} ms after it; a failure is never reused.
+ * Only the subjects passed by NatsGatewayService as reads go through here: writes are always sent,
+ * and once one is answered the reads of its service are evicted, so that no reply older than a write
+ * of this gateway is handed out after it. A write made elsewhere is seen at most window ms late.
+ * <p>
+ * Metrics: gateway.nats.requests{subject, coalesced}. Coalescing ratio = coalesced=true / total.
+ */
+@Component
+public class NatsRequestCoalescer {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<RequestKey, CompletableFuture<Message>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${nats.coalescing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nats.coalescing.window:0}")
+    private long window;
+
+    public NatsRequestCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param send sends the request; called only if no identical one is pending
+     * @return a future of the shared reply (cancelling it does not affect the other callers)
+     */
+    public CompletableFuture<Message> request(String subject, boolean raw, byte[] body,
+                                              Supplier<CompletableFuture<Message>> send) {
+        if (!enabled) {
+            counter(subject, false).increment();
+            return send.get();
+        }
+
+        RequestKey key = new RequestKey(subject, raw, ByteBuffer.wrap(body));
+        CompletableFuture<Message> created = new CompletableFuture<>();
+        CompletableFuture<Message> pending = inFlight.putIfAbsent(key, created);
+
+        if (pending != null) {
+            counter(subject, true).increment();
+            return pending.copy();
+        }
+
+        counter(subject, false).increment();
+        CompletableFuture<Message> sent;
+        try {
+            sent = send.get();
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        sent.whenComplete((reply, error) -> {
+            if (error != null) {
+                inFlight.remove(key, created);
+                created.completeExceptionally(error);
+                return;
+            }
+            created.complete(reply);
+            if (window > 0) {
+                CompletableFuture.delayedExecutor(window, TimeUnit.MILLISECONDS)
+                        .execute(() -> inFlight.remove(key, created));
+            } else {
+                inFlight.remove(key, created);
+            }
+        });
+        return created.copy();
+    }
+
+    /**
+     * Forgets the replies and pending requests of the subjects starting with the prefix: later callers
+     * send again. Callers already waiting still get the reply they joined.
+     */
+    public void evict(String subjectPrefix) {
+        inFlight.keySet().removeIf(key -> key.subject().startsWith(subjectPrefix));
+    }
+
+    // ==== INTERNAL ====
+
+    /* ByteBuffer equality is content equality */
+    private record RequestKey(String subject, boolean raw, ByteBuffer body) {}
+
+    private Counter counter(String subject, boolean coalesced) {
+        return Counter.builder("gateway.nats.requests")
+                .description("NATS requests by the gateway; coalesced = answered by an identical request in flight")
+                .tag("subject", subject)
+                .tag("coalesced", String.valueOf(coalesced))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.gateway.service;
+
+import com.example.gateway.config.NatsResilienceProperties;
+import com.example.gateway.config.NatsResilienceProperties.Group;
+import com.example.gateway.config.NatsResilienceProperties.Policy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.nats.client.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * One SubjectGuard per NATS subject, created on first use from nats.resilience.
+ * Metrics (tag subject): gateway.nats.latency{outcome}, gateway.nats.rejected{reason},
+ * gateway.nats.inflight, gateway.nats.circuit.state, gateway.nats.timeout.
+ */
+@Slf4j
+@Component
+public class NatsResilience {
+
+    private static final int MAX_CONCURRENT = 100;
+    private static final double FAILURE_RATE_THRESHOLD = 0.5;
+    private static final int MINIMUM_CALLS = 20;
+    private static final int WINDOW_SIZE = 100;
+    private static final long OPEN_DURATION = 10_000;
+    private static final double TIMEOUT_PERCENTILE = 0.99;
+    private static final double TIMEOUT_MULTIPLIER = 3.0;
+    private static final long MIN_TIMEOUT = 250;
+
+    private final NatsResilienceProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final long natsTimeout;
+    private final Map<String, SubjectGuard> guards = new ConcurrentHashMap<>();
+
+    public NatsResilience(NatsResilienceProperties properties, MeterRegistry meterRegistry,
+                          @Value("${nats.timeout:5000}") long natsTimeout) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.natsTimeout = natsTimeout;
+    }
+
+    /**
+     * Sends through the guard of the subject.
+     *
+     * @param send sends the request with the timeout chosen for the subject
+     */
+    public CompletableFuture<Message> call(String subject, Function<Duration, CompletableFuture<Message>> send) {
+        return guards.computeIfAbsent(subject, this::create).call(send);
+    }
+
+    // ==== INTERNAL ====
+
+    private SubjectGuard create(String subject) {
+        Policy defaults = properties.getDefaults();
+        Policy group = properties.getGroups().values().stream()
+                .filter(g -> g.getSubjects().contains(subject))
+                .map(Policy.class::cast)
+                .findFirst()
+                .orElse(new Policy());
+
+        SubjectGuard.Settings settings = new SubjectGuard.Settings(
+                first(group.getMaxConcurrent(), defaults.getMaxConcurrent(), MAX_CONCURRENT),
+                first(group.getFailureRateThreshold(), defaults.getFailureRateThreshold(), FAILURE_RATE_THRESHOLD),
+                first(group.getMinimumCalls(), defaults.getMinimumCalls(), MINIMUM_CALLS),
+                first(group.getWindowSize(), defaults.getWindowSize(), WINDOW_SIZE),
+                first(group.getOpenDuration(), defaults.getOpenDuration(), OPEN_DURATION),
+                first(group.getTimeoutPercentile(), defaults.getTimeoutPercentile(), TIMEOUT_PERCENTILE),
+                first(group.getTimeoutMultiplier(), defaults.getTimeoutMultiplier(), TIMEOUT_MULTIPLIER),
+                first(group.getMinTimeout(), defaults.getMinTimeout(), MIN_TIMEOUT),
+                first(group.getMaxTimeout(), defaults.getMaxTimeout(), natsTimeout)
+        );
+        log.info("NATS guard for '{}': {}", subject, settings);
+        return new SubjectGuard(subject, settings, meterRegistry);
+    }
+
+    private static <T> T first(T group, T defaults, T fallback) {
+        return group != null ? group : defaults != null ? defaults : fallback;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.gateway.service;
+
+import com.example.gateway.exception.NatsConnectionException;
+import com.example.gateway.exception.NatsTimeoutException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+
+/**
+ * Client side of the chunked proof upload (see ChunkedUploadHandler in shipping-service).
+ * The file is read from its InputStream one chunk at a time and sent as raw bytes, with at most
+ * {@code window} chunks waiting for their ack: memory per upload is window x chunkSize,
+ * whatever the file size.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NatsUploadClient {
+
+    private static final String SUBJECT_UPLOAD_BEGIN = "shipping.file.upload.begin";
+
+    private static final String HEADER_SEQ = "Upload-Seq";
+    private static final String HEADER_CRC32 = "Upload-Crc32";
+    private static final String HEADER_COMMIT = "Upload-Commit";
+    private static final String HEADER_ABORT = "Upload-Abort";
+    private static final String HEADER_SIZE = "Upload-Size";
+    private static final String HEADER_SHA256 = "Upload-Sha256";
+    private static final String HEADER_ACK = "Upload-Ack";
+
+    private final Connection connection;
+    private final ObjectMapper objectMapper;
+
+    @Value("${nats.timeout:5000}")
+    private int timeout;
+
+    /**
+     * Uploads a proof file.
+     * @return the shipping-service reply envelope (the stored file, or the error that ended the upload)
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> upload(String shipmentId, String type, String filename, String contentType,
+                                      long size, InputStream content) {
+        Map<String, Object> begin = new HashMap<>();
+        begin.put("shipmentId", shipmentId);
+        begin.put("type", type);
+        begin.put("filename", filename);
+        begin.put("contentType", contentType);
+        begin.put("size", size);
+
+        Map<String, Object> beginReply = toEnvelope(request(SUBJECT_UPLOAD_BEGIN, null, json(begin)));
+        if (!Boolean.TRUE.equals(beginReply.get("success"))) {
+            return beginReply;
+        }
+        Map<String, Object> session = (Map<String, Object>) beginReply.get("data");
+        String subject = (String) session.get("subject");
+        int chunkSize = ((Number) session.get("chunkSize")).intValue();
+        int window = Math.max(1, ((Number) session.get("window")).intValue());
+
+        boolean committed = false;
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            CRC32 crc = new CRC32();
+            Deque<CompletableFuture<Message>> inFlight = new ArrayDeque<>();
+            byte[] buffer = new byte[chunkSize];
+            long seq = 0;
+            long sent = 0;
+
+            int read;
+            while ((read = content.readNBytes(buffer, 0, chunkSize)) > 0) {
+                byte[] chunk = read == chunkSize ? buffer.clone() : Arrays.copyOf(buffer, read);
+                crc.reset();
+                crc.update(chunk);
+                sha256.update(chunk);
+
+                Headers headers = new Headers()
+                        .put(HEADER_SEQ, String.valueOf(seq++))
+                        .put(HEADER_CRC32, String.valueOf(crc.getValue()));
+                inFlight.addLast(connection.requestWithTimeout(subject, headers, chunk, Duration.ofMillis(timeout)));
+                sent += read;
+
+                // Flow control: wait for the oldest ack before going over the window
+                if (inFlight.size() >= window) {
+                    Map<String, Object> error = awaitAck(inFlight.removeFirst());
+                    if (error != null) return error;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                Map<String, Object> error = awaitAck(inFlight.removeFirst());
+                if (error != null) return error;
+            }
+
+            Headers commit = new Headers()
+                    .put(HEADER_COMMIT, "true")
+                    .put(HEADER_SIZE, String.valueOf(sent))
+                    .put(HEADER_SHA256, HexFormat.of().formatHex(sha256.digest()));
+            committed = true;
+            return toEnvelope(request(subject, commit, new byte[0]));
+
+        } catch (IOException e) {
+            throw new NatsConnectionException("Failed to read the uploaded file", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (!committed) {
+                // Ended early (error reply, timeout, unreadable file): release the session right away
+                connection.publish(subject, new Headers().put(HEADER_ABORT, "true"), new byte[0]);
+            }
+        }
+    }
+
+    // ==== INTERNAL ====
+
+    /**
+     * @return null when acked, the error envelope otherwise
+     */
+    private Map<String, Object> awaitAck(CompletableFuture<Message> pending) {
+        Message reply = await(pending);
+        if (reply.hasHeaders() && reply.getHeaders().containsKey(HEADER_ACK)) {
+            return null;
+        }
+        return toEnvelope(reply);
+    }
+
+    private Message request(String subject, Headers headers, byte[] body) {
+        if (connection.getStatus() != Connection.Status.CONNECTED) {
+            throw new NatsConnectionException("NATS server is not available");
+        }
+        return await(connection.requestWithTimeout(subject, headers, body, Duration.ofMillis(timeout)));
+    }
+
+    private Message await(CompletableFuture<Message> pending) {
+        try {
+            return pending.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new NatsTimeoutException("NATS timeout during proof upload", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw new NatsTimeoutException("NATS timeout during proof upload", e.getCause());
+            }
+            throw new NatsConnectionException("Proof upload failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NatsConnectionException("Interrupted during proof upload", e);
+        }
+    }
+
+    private byte[] json(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new NatsConnectionException("Could not encode upload request", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> toEnvelope(Message reply) {
+        try {
+            return objectMapper.readValue(reply.getData(), Map.class);
+        } catch (IOException e) {
+            throw new NatsConnectionException("Invalid reply during proof upload: "
+                    + new String(reply.getData(), StandardCharsets.UTF_8), e);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.gateway.service;
+
+import com.example.gateway.exception.NatsUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.nats.client.Message;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Bulkhead, circuit breaker and adaptive timeout of one NATS subject.
+ * <pre>
+ *   CLOSED     calls go through; opens when the failure rate of the last window-size calls
+ *              reaches the threshold (after minimum-calls)
+ *   OPEN       calls fail fast with NatsUnavailableException for open-duration ms
+ *   HALF_OPEN  one probe goes through: success closes the circuit, failure opens it again
+ * </pre>
+ * A failure is a request that got no reply (timeout, no responder, connection error);
+ * an error reply is an answer and counts as a success.
+ * The timeout follows the observed latency: percentile x multiplier, within [min, max].
+ */
+class SubjectGuard {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    record Settings(int maxConcurrent, double failureRateThreshold, int minimumCalls, int windowSize,
+                    long openDurationMillis, double timeoutPercentile, double timeoutMultiplier,
+                    long minTimeoutMillis, long maxTimeoutMillis) {}
+
+    /* percentile recomputed every N calls, not on each one */
+    private static final int TIMEOUT_REFRESH_EVERY = 16;
+
+    private final String subject;
+    private final Settings settings;
+    private final Semaphore permits;
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+
+    // ---- guarded by this ----
+    private final boolean[] outcomes;
+    private int outcomeNext;
+    private int outcomeCount;
+    private int failures;
+    private final long[] latencies;
+    private int latencyNext;
+    private int latencyCount;
+    private int sinceRefresh;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+    private volatile long timeoutMillis;
+
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter rejectedByBulkhead;
+    private final Counter rejectedByCircuit;
+
+    SubjectGuard(String subject, Settings settings, MeterRegistry meterRegistry) {
+        this.subject = subject;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxConcurrent());
+        this.outcomes = new boolean[settings.windowSize()];
+        this.latencies = new long[settings.windowSize()];
+        this.timeoutMillis = settings.maxTimeoutMillis();
+
+        this.successTimer = latencyTimer(meterRegistry, "success");
+        this.failureTimer = latencyTimer(meterRegistry, "failure");
+        this.rejectedByBulkhead = rejectedCounter(meterRegistry, "bulkhead");
+        this.rejectedByCircuit = rejectedCounter(meterRegistry, "circuit");
+        Gauge.builder("gateway.nats.inflight", permits, p -> settings.maxConcurrent() - p.availablePermits())
+                .description("NATS requests in flight, bulkhead limit = nats.resilience max-concurrent")
+                .tag("subject", subject)
+                .register(meterRegistry);
+        Gauge.builder("gateway.nats.circuit.state", this, guard -> guard.state.ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .tag("subject", subject)
+                .strongReference(true)
+                .register(meterRegistry);
+        Gauge.builder("gateway.nats.timeout", this, guard -> guard.timeoutMillis)
+                .description("Current adaptive timeout (ms)")
+                .tag("subject", subject)
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param send sends the request with the given timeout
+     * @return the reply, or a future failed with NatsUnavailableException when refused here
+     */
+    CompletableFuture<Message> call(Function<Duration, CompletableFuture<Message>> send) {
+        boolean probe = false;
+        if (state != State.CLOSED) {
+            if (state == State.OPEN && System.nanoTime() - openedAt < TimeUnit.MILLISECONDS.toNanos(settings.openDurationMillis())) {
+                return reject(rejectedByCircuit, "circuit open");
+            }
+            if (!probeInFlight.compareAndSet(false, true)) {
+                return reject(rejectedByCircuit, "circuit half-open, probe in flight");
+            }
+            state = State.HALF_OPEN;
+            probe = true;
+        }
+
+        if (!permits.tryAcquire()) {
+            if (probe) probeInFlight.set(false);
+            return reject(rejectedByBulkhead, settings.maxConcurrent() + " requests already in flight");
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<Message> pending;
+        try {
+            pending = send.apply(Duration.ofMillis(timeoutMillis));
+        } catch (RuntimeException e) {
+            pending = CompletableFuture.failedFuture(e);
+        }
+
+        boolean isProbe = probe;
+        return pending.whenComplete((reply, error) -> {
+            permits.release();
+            record(System.nanoTime() - start, error == null, isProbe);
+        });
+    }
+
+    // ==== INTERNAL ====
+
+    private synchronized void record(long nanos, boolean success, boolean probe) {
+        (success ? successTimer : failureTimer).record(nanos, TimeUnit.NANOSECONDS);
+
+        if (probe) {
+            probeInFlight.set(false);
+            if (success) {
+                close();
+            } else {
+                open();
+            }
+        } else if (state == State.CLOSED) {
+            // once open, late outcomes of calls sent before do not count
+            if (outcomeCount == outcomes.length && !outcomes[outcomeNext]) failures--;
+            outcomes[outcomeNext] = success;
+            if (!success) failures++;
+            outcomeNext = (outcomeNext + 1) % outcomes.length;
+            outcomeCount = Math.min(outcomeCount + 1, outcomes.length);
+
+            if (outcomeCount >= settings.minimumCalls()
+                    && failures >= settings.failureRateThreshold() * outcomeCount) {
+                open();
+            }
+        }
+
+        // a timeout is a sample too: the timeout grows back when it cuts too many calls
+        latencies[latencyNext] = nanos;
+        latencyNext = (latencyNext + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+        if (++sinceRefresh >= TIMEOUT_REFRESH_EVERY && latencyCount >= settings.minimumCalls()) {
+            sinceRefresh = 0;
+            refreshTimeout();
+        }
+    }
+
+    private void refreshTimeout() {
+        long[] samples = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(samples);
+        long target = (long) (percentileMillis(samples, settings.timeoutPercentile()) * settings.timeoutMultiplier());
+        timeoutMillis = Math.max(settings.minTimeoutMillis(), Math.min(settings.maxTimeoutMillis(), target));
+    }
+
+    private static long percentileMillis(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        state = State.OPEN;
+    }
+
+    private void close() {
+        Arrays.fill(outcomes, false);
+        outcomeNext = 0;
+        outcomeCount = 0;
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    private CompletableFuture<Message> reject(Counter counter, String reason) {
+        counter.increment();
+        return CompletableFuture.failedFuture(
+                new NatsUnavailableException("NATS request refused on subject " + subject + ": " + reason));
+    }
+
+    private Timer latencyTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("gateway.nats.latency")
+                .description("NATS request latency; failure = no reply")
+                .tag("subject", subject)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("gateway.nats.rejected")
+                .description("NATS requests failed fast by the gateway")
+                .tag("subject", subject)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
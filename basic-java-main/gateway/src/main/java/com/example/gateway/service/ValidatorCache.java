@@ -0,0 +1,107 @@
+package com.example.gateway.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Last ETag seen per shipment / tracking number, kept {@code validators.ttl} ms.
+ * Lets a conditional GET be answered 304 without asking Shipping-service, or with a
+ * shipping.version lookup only (a few bytes) instead of the full payload.
+ * Writes through this gateway evict their key; a change made elsewhere is seen at most ttl late.
+ */
+@Component
+public class ValidatorCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    public ValidatorCache(@Value("${validators.max-entries:10000}") int maxEntries,
+                          @Value("${validators.ttl:1000}") long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ValidatorCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Whether If-None-Match still designates the current version.
+     *
+     * @param currentEtag asks Shipping-service, used when no fresh ETag is known here
+     * @return the current (quoted) ETag if it matches, null if the full representation must be sent
+     */
+    public CompletableFuture<String> confirm(String key, String ifNoneMatch,
+                                             Supplier<CompletableFuture<String>> currentEtag) {
+        String known = fresh(key);
+        if (known != null) {
+            return CompletableFuture.completedFuture(matches(ifNoneMatch, known) ? known : null);
+        }
+        return currentEtag.get().handle((etag, error) -> {
+            // no answer: the full request will tell
+            if (error != null || etag == null) return null;
+            put(key, etag);
+            return matches(ifNoneMatch, etag) ? etag : null;
+        });
+    }
+
+    public void put(String key, String etag) {
+        if (etag == null) return;
+        synchronized (entries) {
+            entries.put(key, new Entry(etag, System.nanoTime()));
+        }
+    }
+
+    public void evict(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * A shipment and its tracking carry the same ETag: a write evicts both keys. Null ids are skipped.
+     */
+    public void evictShipment(String shipmentId, String trackingNumber) {
+        synchronized (entries) {
+            if (shipmentId != null) entries.remove(shipmentKey(shipmentId));
+            if (trackingNumber != null) entries.remove(trackingKey(trackingNumber));
+        }
+    }
+
+    public static String shipmentKey(String shipmentId) {
+        return "shipment:" + shipmentId;
+    }
+
+    public static String trackingKey(String trackingNumber) {
+        return "tracking:" + trackingNumber;
+    }
+
+    // ==== INTERNAL ====
+
+    private record Entry(String etag, long learnedAt) {}
+
+    private String fresh(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) return null;
+            if (System.nanoTime() - entry.learnedAt() > ttlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.etag();
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        return ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag);
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.gateway.controllers;
+
+import com.example.gateway.config.NatsResilienceProperties;
+import com.example.gateway.service.NatsGatewayService;
+import com.example.gateway.service.NatsHedger;
+import com.example.gateway.service.NatsRequestCoalescer;
+import com.example.gateway.service.NatsResilience;
+import com.example.gateway.service.ValidatorCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Conditional GETs of a shipment and of its tracking: a fresh validator answers 304 without
+ * Shipping-service, a stale one costs a shipping.version lookup, the payload only when it changed.
+ */
+class ConditionalGetTest {
+
+    /* short enough to outlive in a test, for the stale cases */
+    private static final long SHORT_TTL = 50;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    /* subjects of the requests that reached Shipping-service, in order */
+    private final List<String> asked = new CopyOnWriteArrayList<>();
+    /* what Shipping-service holds */
+    private volatile String revision = "r1";
+    private NatsGatewayService natsGatewayService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        Connection connection = mock(Connection.class);
+        when(connection.getStatus()).thenReturn(Connection.Status.CONNECTED);
+        when(connection.requestWithTimeout(anyString(), any(), any(byte[].class), any(Duration.class)))
+                .thenAnswer(invocation -> {
+                    String subject = invocation.getArgument(0);
+                    asked.add(subject);
+                    return CompletableFuture.completedFuture(reply(subject));
+                });
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        natsGatewayService = new NatsGatewayService(connection, objectMapper,
+                new NatsRequestCoalescer(meterRegistry),
+                new NatsResilience(new NatsResilienceProperties(), meterRegistry, 5000),
+                new NatsHedger(meterRegistry));
+    }
+
+    @Test
+    void freshValidatorIsAnswered304WithoutShippingService() throws Exception {
+        validators(60_000);
+        perform(get("/api/shipping/SHIP-1")).andExpect(status().isOk()).andExpect(header().string("ETag", "\"r1\""));
+        perform(get("/api/tracking/LP-1")).andExpect(status().isOk()).andExpect(header().string("ETag", "\"r1\""));
+        asked.clear();
+
+        perform(get("/api/shipping/SHIP-1").header(HttpHeaders.IF_NONE_MATCH, "\"r1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"r1\""));
+        perform(get("/api/tracking/LP-1").header(HttpHeaders.IF_NONE_MATCH, "\"r1\""))
+                .andExpect(status().isNotModified());
+
+        assertThat(asked).isEmpty();
+    }
+
+    @Test
+    void staleValidatorIsConfirmedByTheVersionAlone() throws Exception {
+        validators(SHORT_TTL);
+        perform(get("/api/shipping/SHIP-1"));
+        perform(get("/api/tracking/LP-1"));
+        Thread.sleep(SHORT_TTL * 2);
+        asked.clear();
+
+        perform(get("/api/shipping/SHIP-1").header(HttpHeaders.IF_NONE_MATCH, "\"r1\""))
+                .andExpect(status().isNotModified());
+        perform(get("/api/tracking/LP-1").header(HttpHeaders.IF_NONE_MATCH, "\"r1\""))
+                .andExpect(status().isNotModified());
+
+        assertThat(asked).containsExactly("shipping.version", "shipping.version");
+    }
+
+    @Test
+    void changedVersionIsAnsweredInFull() throws Exception {
+        validators(SHORT_TTL);
+        perform(get("/api/shipping/SHIP-1"));
+        Thread.sleep(SHORT_TTL * 2);
+        revision = "r2";
+        asked.clear();
+
+        perform(get("/api/shipping/SHIP-1").header(HttpHeaders.IF_NONE_MATCH, "\"r1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"r2\""));
+
+        assertThat(asked).containsExactly("shipping.version", "shipping.getByShipmentId");
+    }
+
+    @Test
+    void trackingEventEvictsTheShipmentAndTrackingValidators() throws Exception {
+        validators(60_000);
+        perform(get("/api/shipping/SHIP-1"));
+        perform(get("/api/tracking/LP-1"));
+
+        perform(post("/api/tracking/LP-1/add")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"HUB\",\"location\":\"Lyon\",\"note\":\"\"}"))
+                .andExpect(status().isOk());
+        revision = "r2";
+        asked.clear();
+
+        // well within the ttl, yet neither is trusted any more
+        perform(get("/api/shipping/SHIP-1").header(HttpHeaders.IF_NONE_MATCH, "\"r1\""))
+                .andExpect(status().isOk());
+        perform(get("/api/tracking/LP-1").header(HttpHeaders.IF_NONE_MATCH, "\"r1\""))
+                .andExpect(status().isOk());
+
+        assertThat(asked).containsExactly(
+                "shipping.version", "shipping.getByShipmentId", "shipping.version", "shipping.tracking.get");
+    }
+
+    // ==== HELPERS ====
+
+    private void validators(long ttlMillis) {
+        ValidatorCache validators = new ValidatorCache(100, ttlMillis);
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(
+                        new ShippingController(natsGatewayService, validators),
+                        new TrackingController(natsGatewayService, validators))
+                .build();
+    }
+
+    private ResultActions perform(RequestBuilder builder) throws Exception {
+        MvcResult started = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(started));
+    }
+
+    /** What Shipping-service answers on each subject, for SHIP-1 / LP-1 at the current revision */
+    private Message reply(String subject) throws Exception {
+        Map<String, Object> shipment = Map.of("shipmentId", "SHIP-1", "trackingNumber", "LP-1");
+        Headers headers = new Headers().put("Shipping-Status", "success");
+        Object body = switch (subject) {
+            case "shipping.version" -> Map.of("success", true, "data", Map.of("etag", revision));
+            case "shipping.getByShipmentId" -> shipment;
+            default -> Map.of("success", true, "data", shipment);
+        };
+        if (!subject.equals("shipping.version")) {
+            headers.put("Shipping-ETag", revision);
+        }
+        return NatsMessage.builder()
+                .subject("_INBOX.test")
+                .headers(headers)
+                .data(objectMapper.writeValueAsBytes(body))
+                .build();
+    }
+}
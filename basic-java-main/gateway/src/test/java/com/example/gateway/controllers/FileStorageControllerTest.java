@@ -0,0 +1,211 @@
+package com.example.gateway.controllers;
+
+import com.example.gateway.service.NatsProofClient;
+import com.example.gateway.service.NatsUploadClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Proof downloads and exports: the metadata request does not hold the request thread, the content
+ * is streamed afterwards from shipping.file.read slices.
+ */
+class FileStorageControllerTest {
+
+    private static final byte[] CONTENT = "%PDF-1.7 delivery note".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PHOTO = "\u00ff\u00d8 jpeg bytes of the parcel".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NOTE = "left with the neighbour at number 12".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    /* metadata replies held back by the stub connection, per subject */
+    private final Map<String, CompletableFuture<Message>> pendingReplies = new ConcurrentHashMap<>();
+    /* metadata replies given right away, per subject */
+    private final Map<String, Message> answers = new ConcurrentHashMap<>();
+    /* stored contents, per storageId: reads are answered right away */
+    private final Map<String, byte[]> contents = new HashMap<>();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        Connection connection = mock(Connection.class);
+        when(connection.getStatus()).thenReturn(Connection.Status.CONNECTED);
+        when(connection.getMaxPayload()).thenReturn(1024L * 1024);
+        when(connection.requestWithTimeout(anyString(), any(byte[].class), any(Duration.class)))
+                .thenAnswer(invocation -> {
+                    String subject = invocation.getArgument(0);
+                    JsonNode request = objectMapper.readTree((byte[]) invocation.getArgument(1));
+                    if (subject.equals("shipping.file.read")) {
+                        return CompletableFuture.completedFuture(slice(request));
+                    }
+                    if (answers.containsKey(subject)) {
+                        return CompletableFuture.completedFuture(answers.get(subject));
+                    }
+                    CompletableFuture<Message> reply = new CompletableFuture<>();
+                    pendingReplies.put(subject, reply);
+                    return reply;
+                });
+
+        NatsProofClient proofClient = new NatsProofClient(connection, objectMapper);
+        ReflectionTestUtils.setField(proofClient, "timeout", 1000);
+        ReflectionTestUtils.setField(proofClient, "chunkSize", 8);
+        ReflectionTestUtils.setField(proofClient, "window", 2);
+
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new FileStorageController(mock(NatsUploadClient.class), proofClient))
+                .build();
+        contents.put("st-1", CONTENT);
+        contents.put("st-2", PHOTO);
+        contents.put("st-3", NOTE);
+    }
+
+    @Test
+    void downloadIsStreamedOnceTheMetadataArrives() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/store/SHIP-1/proof/POD"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // no answer yet: the request thread is already back
+        assertThat(started.getResponse().getContentAsByteArray()).isEmpty();
+
+        pendingReplies.get("shipping.file.head").complete(envelope(file("SHIP-1", "POD", "st-1", "application/pdf")));
+
+        MvcResult streaming = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"e-st-1\""))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(streaming)).andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void currentEtagIsAnsweredNotModified() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/store/SHIP-1/proof/POD")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"e-st-1\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        pendingReplies.get("shipping.file.head").complete(envelope(file("SHIP-1", "POD", "st-1", "application/pdf")));
+
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isNotModified());
+    }
+
+    @Test
+    void unknownProofIsNotFound() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/store/SHIP-1/proof/POD"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        pendingReplies.get("shipping.file.head").complete(reply(Map.of("success", false, "message", "no proof")));
+
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void exportZipsEveryListedProofUnderItsShipment() throws Exception {
+        Map<String, Object> pod = file("SHIP-1", "POD", "st-1", "application/pdf");
+        Map<String, Object> photo = file("SHIP-1", "PHOTO", "st-2", "image/jpeg");
+        // not migrated yet: no size in the listing, asked with a head
+        Map<String, Object> legacy = file("SHIP-2", "NOTE", "st-3", "text/plain");
+        legacy.remove("size");
+        answers.put("shipping.file.head", envelope(file("SHIP-2", "NOTE", "st-3", "text/plain")));
+
+        MvcResult started = mockMvc.perform(get("/api/store/export").param("shipmentIds", "SHIP-1", "SHIP-2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        pendingReplies.get("shipping.file.list").complete(envelope(List.of(pod, photo, legacy)));
+
+        MvcResult streaming = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/zip"))
+                .andReturn();
+        byte[] zip = mockMvc.perform(asyncDispatch(streaming)).andReturn().getResponse().getContentAsByteArray();
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                entries.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        assertThat(entries).containsOnlyKeys("SHIP-1/POD_pod.bin", "SHIP-1/PHOTO_photo.bin", "SHIP-2/NOTE_note.bin");
+        assertThat(entries.get("SHIP-1/POD_pod.bin")).isEqualTo(CONTENT);
+        assertThat(entries.get("SHIP-1/PHOTO_photo.bin")).isEqualTo(PHOTO);
+        assertThat(entries.get("SHIP-2/NOTE_note.bin")).isEqualTo(NOTE);
+    }
+
+    @Test
+    void refusedListingIsABadRequest() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/store/export").param("shipmentIds", "SHIP-1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        pendingReplies.get("shipping.file.list").complete(reply(Map.of("success", false, "message", "too many")));
+
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isBadRequest());
+    }
+
+    // ==== HELPERS ====
+
+    private Map<String, Object> file(String shipmentId, String type, String storageId, String contentType) {
+        Map<String, Object> file = new HashMap<>();
+        file.put("shipmentId", shipmentId);
+        file.put("type", type);
+        file.put("storageId", storageId);
+        file.put("etag", "e-" + storageId);
+        file.put("filename", type.toLowerCase() + ".bin");
+        file.put("contentType", contentType);
+        file.put("size", contents.get(storageId).length);
+        return file;
+    }
+
+    private Message envelope(Object data) throws Exception {
+        return reply(Map.of("success", true, "data", data));
+    }
+
+    private Message reply(Object body) throws Exception {
+        return NatsMessage.builder()
+                .subject("_INBOX.test")
+                .data(objectMapper.writeValueAsBytes(body))
+                .build();
+    }
+
+    private Message slice(JsonNode request) {
+        byte[] content = contents.get(request.get("storageId").asText());
+        int offset = request.get("offset").asInt();
+        return NatsMessage.builder()
+                .subject("_INBOX.test")
+                .headers(new Headers().put("Proof-Offset", String.valueOf(offset)))
+                .data(Arrays.copyOfRange(content, offset, offset + request.get("length").asInt()))
+                .build();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.gateway.controllers;
+
+import com.example.gateway.config.NatsResilienceProperties;
+import com.example.gateway.exception.GlobalExceptionHandler;
+import com.example.gateway.service.NatsGatewayService;
+import com.example.gateway.service.NatsHedger;
+import com.example.gateway.service.NatsRequestCoalescer;
+import com.example.gateway.service.NatsResilience;
+import com.example.gateway.service.ValidatorCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The request thread is given back while Shipping-service has not replied: one thread starts
+ * more requests than any pool would hold blocked, and each completes once its reply arrives.
+ * Writes evict the validators of every view of the shipment.
+ */
+class ShippingControllerAsyncTest {
+
+    private static final int REQUESTS = 500;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    /* replies held back by the stub connection, per shipmentId */
+    private final Map<String, CompletableFuture<Message>> pendingReplies = new ConcurrentHashMap<>();
+    private final ValidatorCache validators = new ValidatorCache(100, 60_000);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        Connection connection = mock(Connection.class);
+        when(connection.getStatus()).thenReturn(Connection.Status.CONNECTED);
+        when(connection.requestWithTimeout(anyString(), any(), any(byte[].class), any(Duration.class)))
+                .thenAnswer(invocation -> {
+                    String shipmentId = objectMapper.readTree((byte[]) invocation.getArgument(2))
+                            .get("shipmentId").asText();
+                    CompletableFuture<Message> reply = new CompletableFuture<>();
+                    pendingReplies.put(shipmentId, reply);
+                    return reply;
+                });
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NatsResilienceProperties resilience = new NatsResilienceProperties();
+        resilience.getDefaults().setMaxConcurrent(REQUESTS);
+        NatsGatewayService natsGatewayService = new NatsGatewayService(connection, objectMapper,
+                new NatsRequestCoalescer(meterRegistry),
+                new NatsResilience(resilience, meterRegistry, 5000),
+                new NatsHedger(meterRegistry));
+
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new ShippingController(natsGatewayService, validators))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void requestThreadIsReleasedWhileTheReplyIsPending() throws Exception {
+        List<MvcResult> started = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            started.add(mockMvc.perform(get("/api/shipping/SHIP-" + i))
+                    .andExpect(request().asyncStarted())
+                    .andReturn());
+        }
+
+        // every request is in flight at once, none answered yet
+        assertThat(pendingReplies).hasSize(REQUESTS);
+
+        pendingReplies.forEach((shipmentId, reply) -> reply.complete(reply(shipmentId)));
+
+        for (int i = 0; i < REQUESTS; i++) {
+            mockMvc.perform(asyncDispatch(started.get(i)))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"r1\""))
+                    .andExpect(content().json("{\"shipmentId\":\"SHIP-" + i + "\"}"));
+        }
+    }
+
+    @Test
+    void timeoutIsAnsweredWithoutHoldingAThread() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/shipping/SHIP-SLOW"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // what requestWithTimeout does when no reply came in time
+        pendingReplies.get("SHIP-SLOW").cancel(true);
+
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isGatewayTimeout());
+    }
+
+    @Test
+    void updateEvictsTheTrackingEtagTooThoughItsNumberIsNotInThePath() throws Exception {
+        validators.put(ValidatorCache.shipmentKey("SHIP-1"), "\"r1\"");
+        validators.put(ValidatorCache.trackingKey("LP-1"), "\"r1\"");
+
+        MvcResult started = mockMvc.perform(put("/api/shipping/SHIP-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\": 7, \"carrier\": \"DHL\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        pendingReplies.get("SHIP-1").complete(NatsMessage.builder()
+                .subject("_INBOX.test")
+                .data("{\"success\":true,\"data\":{\"shipmentId\":\"SHIP-1\",\"trackingNumber\":\"LP-1\"}}"
+                        .getBytes(StandardCharsets.UTF_8))
+                .build());
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+
+        // neither is trusted any more: both are asked again
+        AtomicInteger asked = new AtomicInteger();
+        Supplier<CompletableFuture<String>> current = () -> {
+            asked.incrementAndGet();
+            return CompletableFuture.completedFuture("\"r2\"");
+        };
+        validators.confirm(ValidatorCache.shipmentKey("SHIP-1"), "\"r1\"", current);
+        validators.confirm(ValidatorCache.trackingKey("LP-1"), "\"r1\"", current);
+        assertThat(asked).hasValue(2);
+    }
+
+    private static Message reply(String shipmentId) {
+        return NatsMessage.builder()
+                .subject("_INBOX.test")
+                .headers(new Headers()
+                        .put("Shipping-Status", "success")
+                        .put("Shipping-ETag", "r1"))
+                .data(("{\"shipmentId\":\"" + shipmentId + "\"}").getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.gateway.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cost of JwtAuthenticationFilter per request: a token seen for the first time (signature
+ * verified and claims parsed) against one already in VerifiedTokenCache.
+ * JMH is not available to this build: warm-up then timed rounds, average ns/op printed.
+ * <pre>
+ *   mvn test -Dtest=JwtAuthenticationFilterBenchmark -Dbenchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JwtAuthenticationFilterBenchmark {
+
+    private static final int WARM_UP = 20_000;
+    private static final int OPERATIONS = 20_000;
+
+    @Test
+    void coldParseAgainstCacheHit() throws Exception {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "test-secret-key-long-enough-for-hmac-sha-256-signatures");
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpirationMs", 3_600_000L);
+        jwtUtil.init();
+
+        // every token distinct: each one is a cache miss the first time it is filtered
+        List<String> tokens = new ArrayList<>(WARM_UP + OPERATIONS);
+        for (int i = 0; i < WARM_UP + OPERATIONS; i++) {
+            tokens.add(jwtUtil.generateToken("user" + i + "@example.com", "USER", (long) i));
+        }
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, new VerifiedTokenCache(WARM_UP + OPERATIONS));
+
+        for (int i = 0; i < WARM_UP; i++) {
+            filter(filter, tokens.get(i));
+        }
+        double cold = nanosPerOperation(filter, tokens.subList(WARM_UP, WARM_UP + OPERATIONS));
+        // the same tokens again: all cached now
+        double hit = nanosPerOperation(filter, tokens.subList(WARM_UP, WARM_UP + OPERATIONS));
+
+        System.out.printf("JwtAuthenticationFilter  cold parse: %,.0f ns/op  cache hit: %,.0f ns/op  (x%.1f)%n",
+                cold, hit, cold / hit);
+        assertThat(hit).isLessThan(cold);
+    }
+
+    private static double nanosPerOperation(JwtAuthenticationFilter filter, List<String> tokens) throws Exception {
+        long start = System.nanoTime();
+        for (String token : tokens) {
+            filter(filter, token);
+        }
+        return (double) (System.nanoTime() - start) / tokens.size();
+    }
+
+    private static void filter(JwtAuthenticationFilter filter, String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/shipping/SHIP-1");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        if (response.getStatus() != 200) {
+            throw new IllegalStateException("token rejected: " + response.getStatus());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.gateway.security;
+
+import com.example.gateway.dtos.UserDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class JwtAuthenticationFilterTest {
+
+    private JwtUtil jwtUtil;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        JwtUtil util = new JwtUtil();
+        ReflectionTestUtils.setField(util, "secret", "test-secret-key-long-enough-for-hmac-sha-256-signatures");
+        ReflectionTestUtils.setField(util, "jwtExpirationMs", 60_000L);
+        util.init();
+        jwtUtil = spy(util);
+        filter = new JwtAuthenticationFilter(jwtUtil, new VerifiedTokenCache(100));
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void cachedTokenGivesTheSamePrincipalWithoutVerifyingItAgain() throws Exception {
+        String token = jwtUtil.generateToken("alice@example.com", "USER", 7L);
+
+        Authentication first = authenticate(token);
+        Authentication second = authenticate(token);
+
+        verify(jwtUtil, times(1)).parseToken(anyString());
+        assertThat(second.getPrincipal()).isEqualTo(first.getPrincipal());
+        assertThat(second.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_USER");
+        UserDto principal = (UserDto) second.getPrincipal();
+        assertThat(principal.getUserId()).isEqualTo(7L);
+        assertThat(principal.getEmail()).isEqualTo("alice@example.com");
+    }
+
+    @Test
+    void changesMadeByOneRequestDoNotReachTheNext() throws Exception {
+        String token = jwtUtil.generateToken("alice@example.com", "USER", 7L);
+
+        Authentication first = authenticate(token);
+        ((UserDto) first.getPrincipal()).setUserId(99L);
+        first.setAuthenticated(false);
+
+        Authentication second = authenticate(token);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.isAuthenticated()).isTrue();
+        assertThat(((UserDto) second.getPrincipal()).getUserId()).isEqualTo(7L);
+    }
+
+    @Test
+    void tamperedTokenIsRejectedEvenOnceTheOriginalIsCached() throws Exception {
+        String token = jwtUtil.generateToken("alice@example.com", "USER", 7L);
+        authenticate(token);
+        SecurityContextHolder.clearContext();
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(tampered), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(token), response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(200);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/shipping/SHIP-1");
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
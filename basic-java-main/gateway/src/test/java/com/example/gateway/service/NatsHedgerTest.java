@@ -0,0 +1,143 @@
+package com.example.gateway.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class NatsHedgerTest {
+
+    private static final String SUBJECT = "shipping.getByShipmentId";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    /* the copies sent, in order, each answered by the test */
+    private final List<CompletableFuture<Message>> copies = new ArrayList<>();
+    private NatsHedger hedger;
+
+    @BeforeEach
+    void setUp() {
+        hedger = new NatsHedger(meterRegistry);
+        ReflectionTestUtils.setField(hedger, "enabled", true);
+        ReflectionTestUtils.setField(hedger, "subjects", List.of(SUBJECT));
+        ReflectionTestUtils.setField(hedger, "budget", 0.05);
+        ReflectionTestUtils.setField(hedger, "minDelay", 20L);
+    }
+
+    @Test
+    void noHedgeWhileThePrimaryP95IsUnknown() throws Exception {
+        CompletableFuture<Message> reply = hedger.send(SUBJECT, send());
+        Thread.sleep(100);
+
+        assertThat(copies).hasSize(1);
+        Message message = message("primary");
+        copies.get(0).complete(message);
+        assertThat(reply.get(1, TimeUnit.SECONDS)).isSameAs(message);
+    }
+
+    @Test
+    void firstReplyWinsAndTheLateOneIsDiscarded() throws Exception {
+        knownP95();
+        CompletableFuture<Message> reply = hedger.send(SUBJECT, send());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> copies.size() == 2);
+
+        Message hedge = message("hedge");
+        copies.get(1).complete(hedge);
+        copies.get(0).complete(message("late primary"));
+
+        assertThat(reply.get(1, TimeUnit.SECONDS)).isSameAs(hedge);
+        assertThat(hedges("sent")).isEqualTo(1.0);
+        assertThat(hedges("won")).isEqualTo(1.0);
+    }
+
+    @Test
+    void failsOnlyOnceEveryCopyHasFailed() {
+        knownP95();
+        CompletableFuture<Message> reply = hedger.send(SUBJECT, send());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> copies.size() == 2);
+
+        copies.get(0).completeExceptionally(new IllegalStateException("primary: no responders"));
+        assertThat(reply).isNotDone();
+
+        copies.get(1).completeExceptionally(new IllegalStateException("hedge: no responders"));
+        assertThatThrownBy(() -> reply.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("hedge");
+    }
+
+    @Test
+    void overBudgetTheRequestWaitsForThePrimaryAlone() throws Exception {
+        knownP95();
+        ((AtomicLong) ReflectionTestUtils.getField(hedger, "tokens")).set(0);
+        ReflectionTestUtils.setField(hedger, "budget", 0.0);
+
+        CompletableFuture<Message> reply = hedger.send(SUBJECT, send());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> hedges("over_budget") == 1.0);
+
+        assertThat(copies).hasSize(1);
+        Message primary = message("primary");
+        copies.get(0).complete(primary);
+        assertThat(reply.get(1, TimeUnit.SECONDS)).isSameAs(primary);
+    }
+
+    @Test
+    void delayFollowsTheLatencyOfTheFirstCopies() throws Exception {
+        // first copies answered in ~100 ms: p95 >= 100 ms, well above min-delay
+        for (int i = 0; i < 20; i++) {
+            hedger.send(SUBJECT, () -> CompletableFuture.supplyAsync(() -> message("slow"),
+                    CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS)));
+        }
+        await().atMost(2, TimeUnit.SECONDS).until(() -> primaryReplies() == 20);
+
+        hedger.send(SUBJECT, send());
+        Thread.sleep(40);
+        assertThat(copies).hasSize(1);
+        await().atMost(2, TimeUnit.SECONDS).until(() -> copies.size() == 2);
+    }
+
+    // ==== HELPERS ====
+
+    /** 20 instant first-copy replies: p95 = 0, hedges go after min-delay */
+    private void knownP95() {
+        for (int i = 0; i < 20; i++) {
+            hedger.send(SUBJECT, () -> CompletableFuture.completedFuture(message("warm-up")));
+        }
+    }
+
+    private Supplier<CompletableFuture<Message>> send() {
+        return () -> {
+            CompletableFuture<Message> copy = new CompletableFuture<>();
+            synchronized (copies) {
+                copies.add(copy);
+            }
+            return copy;
+        };
+    }
+
+    private long primaryReplies() {
+        var timer = meterRegistry.find("gateway.nats.hedging.primary").timer();
+        return timer != null ? timer.count() : 0;
+    }
+
+    private double hedges(String result) {
+        var counter = meterRegistry.find("gateway.nats.hedges").tag("result", result).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static Message message(String body) {
+        return NatsMessage.builder().subject("_INBOX.test").data(body.getBytes(StandardCharsets.UTF_8)).build();
+    }
+}
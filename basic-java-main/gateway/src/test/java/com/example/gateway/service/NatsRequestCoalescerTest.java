@@ -0,0 +1,121 @@
+package com.example.gateway.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class NatsRequestCoalescerTest {
+
+    private static final String SUBJECT = "shipping.getByShipmentId";
+    private static final byte[] BODY = "{\"shipmentId\":\"SHIP-1\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger sent = new AtomicInteger();
+    private CompletableFuture<Message> reply = new CompletableFuture<>();
+
+    @Test
+    void identicalConcurrentReadsShareOneRequest() throws Exception {
+        NatsRequestCoalescer coalescer = coalescer(0);
+
+        CompletableFuture<Message> first = coalescer.request(SUBJECT, false, BODY, send());
+        CompletableFuture<Message> second = coalescer.request(SUBJECT, false, BODY.clone(), send());
+        // another reply mode is another request
+        coalescer.request(SUBJECT, true, BODY, send());
+
+        assertThat(sent).hasValue(2);
+        reply.complete(message());
+        assertThat(first.get(1, TimeUnit.SECONDS)).isSameAs(second.get(1, TimeUnit.SECONDS));
+        assertThat(meterRegistry.get("gateway.nats.requests").tag("coalesced", "true").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void cancellingOneCopyLeavesTheOthersWaiting() throws Exception {
+        NatsRequestCoalescer coalescer = coalescer(0);
+        CompletableFuture<Message> first = coalescer.request(SUBJECT, false, BODY, send());
+        CompletableFuture<Message> second = coalescer.request(SUBJECT, false, BODY, send());
+
+        first.cancel(true);
+        assertThat(reply).isNotDone();
+
+        Message message = message();
+        reply.complete(message);
+        assertThat(second.get(1, TimeUnit.SECONDS)).isSameAs(message);
+    }
+
+    @Test
+    void aFailureIsNeverReused() {
+        NatsRequestCoalescer coalescer = coalescer(10_000);
+        CompletableFuture<Message> failed = coalescer.request(SUBJECT, false, BODY, send());
+        reply.completeExceptionally(new IllegalStateException("no responders"));
+        assertThat(failed).isCompletedExceptionally();
+
+        reply = new CompletableFuture<>();
+        coalescer.request(SUBJECT, false, BODY, send());
+
+        assertThat(sent).hasValue(2);
+    }
+
+    @Test
+    void aReplyIsSharedWithinTheWindowOnly() {
+        NatsRequestCoalescer coalescer = coalescer(100);
+        coalescer.request(SUBJECT, false, BODY, send());
+        reply.complete(message());
+
+        assertThat(coalescer.request(SUBJECT, false, BODY, send())).isCompleted();
+        assertThat(sent).hasValue(1);
+
+        reply = new CompletableFuture<>();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> {
+            coalescer.request(SUBJECT, false, BODY, send());
+            return sent.get() == 2;
+        });
+    }
+
+    @Test
+    void evictionDropsTheRepliesOfTheWrittenServiceOnly() {
+        NatsRequestCoalescer coalescer = coalescer(10_000);
+        coalescer.request(SUBJECT, false, BODY, send());
+        coalescer.request("user.get", false, BODY, send());
+        reply.complete(message());
+
+        coalescer.evict("shipping.");
+        coalescer.request(SUBJECT, false, BODY, send());
+        coalescer.request("user.get", false, BODY, send());
+
+        assertThat(sent).hasValue(3);
+    }
+
+    // ==== HELPERS ====
+
+    private NatsRequestCoalescer coalescer(long window) {
+        NatsRequestCoalescer coalescer = new NatsRequestCoalescer(meterRegistry);
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+        ReflectionTestUtils.setField(coalescer, "window", window);
+        return coalescer;
+    }
+
+    /** Counts the requests actually sent; they all answer with the current {@code reply} */
+    private Supplier<CompletableFuture<Message>> send() {
+        CompletableFuture<Message> current = reply;
+        return () -> {
+            sent.incrementAndGet();
+            return current;
+        };
+    }
+
+    private static Message message() {
+        return NatsMessage.builder().subject("_INBOX.test").data("{}".getBytes(StandardCharsets.UTF_8)).build();
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.gateway.service;
+
+import com.example.gateway.exception.NatsUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SubjectGuardTest {
+
+    private static final String SUBJECT = "shipping.getByShipmentId";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @Test
+    void opensAtTheFailureThresholdOnceMinimumCallsAreSeen() {
+        SubjectGuard guard = guard(10, 60_000);
+
+        // 3 failures out of 3: below minimum-calls, the circuit stays closed
+        for (int i = 0; i < 3; i++) {
+            assertThat(guard.call(timeout -> failed())).isCompletedExceptionally();
+        }
+        assertThat(sent).hasValue(3);
+        assertThat(state()).isEqualTo(SubjectGuard.State.CLOSED.ordinal());
+
+        // 4th call: 3 failures out of 4 >= 50%
+        guard.call(timeout -> replied());
+        assertThat(state()).isEqualTo(SubjectGuard.State.OPEN.ordinal());
+    }
+
+    @Test
+    void failsFastWhileOpen() {
+        SubjectGuard guard = openGuard(60_000);
+        int before = sent.get();
+
+        CompletableFuture<Message> refused = guard.call(timeout -> replied());
+
+        assertThat(sent).hasValue(before);
+        assertThatThrownBy(refused::get).hasCauseInstanceOf(NatsUnavailableException.class);
+        assertThat(rejected("circuit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void halfOpenLetsOneProbeThroughAtATime() throws Exception {
+        SubjectGuard guard = openGuard(1);
+        Thread.sleep(5);
+
+        CompletableFuture<Message> reply = new CompletableFuture<>();
+        CompletableFuture<Message> probe = guard.call(timeout -> count(reply));
+        CompletableFuture<Message> second = guard.call(timeout -> replied());
+
+        assertThat(state()).isEqualTo(SubjectGuard.State.HALF_OPEN.ordinal());
+        assertThat(probe).isNotDone();
+        assertThatThrownBy(second::get).hasCauseInstanceOf(NatsUnavailableException.class);
+    }
+
+    @Test
+    void successfulProbeClosesTheCircuit() throws Exception {
+        SubjectGuard guard = openGuard(1);
+        Thread.sleep(5);
+
+        guard.call(timeout -> replied());
+
+        assertThat(state()).isEqualTo(SubjectGuard.State.CLOSED.ordinal());
+        // a fresh window: one more failure does not open it again
+        guard.call(timeout -> failed());
+        assertThat(state()).isEqualTo(SubjectGuard.State.CLOSED.ordinal());
+    }
+
+    @Test
+    void failedProbeOpensTheCircuitAgain() throws Exception {
+        SubjectGuard guard = openGuard(50);
+        Thread.sleep(60);
+
+        guard.call(timeout -> failed());
+
+        assertThat(state()).isEqualTo(SubjectGuard.State.OPEN.ordinal());
+        int before = sent.get();
+        assertThat(guard.call(timeout -> replied())).isCompletedExceptionally();
+        assertThat(sent).hasValue(before);
+    }
+
+    @Test
+    void bulkheadRefusesCallsBeyondMaxConcurrent() throws Exception {
+        SubjectGuard guard = guard(2, 60_000);
+        CompletableFuture<Message> first = new CompletableFuture<>();
+        guard.call(timeout -> count(first));
+        guard.call(timeout -> count(new CompletableFuture<>()));
+
+        CompletableFuture<Message> third = guard.call(timeout -> replied());
+        assertThatThrownBy(third::get).hasCauseInstanceOf(NatsUnavailableException.class);
+        assertThat(rejected("bulkhead")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("gateway.nats.inflight").gauge().value()).isEqualTo(2.0);
+
+        // a reply gives its permit back
+        first.complete(message());
+        assertThat(guard.call(timeout -> replied()).get()).isNotNull();
+    }
+
+    @Test
+    void timeoutFollowsTheObservedLatency() throws ExecutionException, InterruptedException {
+        SubjectGuard guard = guard(10, 60_000);
+        Duration[] timeouts = new Duration[1];
+
+        guard.call(timeout -> {
+            timeouts[0] = timeout;
+            return replied();
+        }).get();
+        // not enough samples yet: the max timeout
+        assertThat(timeouts[0]).isEqualTo(Duration.ofMillis(1000));
+
+        // instant replies: refreshed after 16 calls, down to min-timeout
+        for (int i = 1; i < 16; i++) {
+            guard.call(timeout -> replied()).get();
+        }
+        guard.call(timeout -> {
+            timeouts[0] = timeout;
+            return replied();
+        }).get();
+
+        assertThat(timeouts[0]).isEqualTo(Duration.ofMillis(20));
+        assertThat(meterRegistry.get("gateway.nats.timeout").gauge().value()).isEqualTo(20.0);
+    }
+
+    @Test
+    void anErrorThrownBySendIsAFailureAndGivesItsPermitBack() {
+        SubjectGuard guard = guard(1, 60_000);
+
+        CompletableFuture<Message> thrown = guard.call(timeout -> {
+            throw new CancellationException("connection closed");
+        });
+
+        assertThat(thrown).isCompletedExceptionally();
+        assertThat(meterRegistry.get("gateway.nats.latency").tag("outcome", "failure").timer().count()).isEqualTo(1);
+        assertThat(guard.call(timeout -> replied())).isCompleted();
+    }
+
+    // ==== HELPERS ====
+
+    /** threshold 50%, minimum-calls 4, window 10, timeout = p99 x 3 within [20, 1000] ms */
+    private SubjectGuard guard(int maxConcurrent, long openDurationMillis) {
+        return new SubjectGuard(SUBJECT, new SubjectGuard.Settings(
+                maxConcurrent, 0.5, 4, 10, openDurationMillis, 0.99, 3.0, 20, 1000), meterRegistry);
+    }
+
+    private SubjectGuard openGuard(long openDurationMillis) {
+        SubjectGuard guard = guard(10, openDurationMillis);
+        for (int i = 0; i < 4; i++) {
+            guard.call(timeout -> failed());
+        }
+        assertThat(state()).isEqualTo(SubjectGuard.State.OPEN.ordinal());
+        return guard;
+    }
+
+    private CompletableFuture<Message> count(CompletableFuture<Message> reply) {
+        sent.incrementAndGet();
+        return reply;
+    }
+
+    private CompletableFuture<Message> replied() {
+        return count(CompletableFuture.completedFuture(message()));
+    }
+
+    private CompletableFuture<Message> failed() {
+        return count(CompletableFuture.failedFuture(new CancellationException("timeout")));
+    }
+
+    private double state() {
+        return meterRegistry.get("gateway.nats.circuit.state").gauge().value();
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("gateway.nats.rejected").tag("reason", reason).counter().count();
+    }
+
+    private static Message message() {
+        return NatsMessage.builder().subject("_INBOX.test").data(new byte[0]).build();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.gateway.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValidatorCacheTest {
+
+    private static final String KEY = ValidatorCache.shipmentKey("SHIP-1");
+
+    private final AtomicInteger asked = new AtomicInteger();
+
+    @Test
+    void freshEntryAnswersWithoutAskingTheService() throws Exception {
+        ValidatorCache validators = new ValidatorCache(100, 60_000);
+        validators.put(KEY, "\"r1\"");
+
+        assertThat(validators.confirm(KEY, "\"r1\"", current("\"r2\"")).get()).isEqualTo("\"r1\"");
+        assertThat(validators.confirm(KEY, "\"r0\"", current("\"r2\"")).get()).isNull();
+        assertThat(validators.confirm(KEY, "*", current("\"r2\"")).get()).isEqualTo("\"r1\"");
+        assertThat(asked).hasValue(0);
+    }
+
+    @Test
+    void expiredEntryIsAskedAgainAndReplaced() throws Exception {
+        ValidatorCache validators = new ValidatorCache(100, 20);
+        validators.put(KEY, "\"r1\"");
+        Thread.sleep(40);
+
+        // the service moved on: r1 no longer matches
+        assertThat(validators.confirm(KEY, "\"r1\"", current("\"r2\"")).get()).isNull();
+        assertThat(asked).hasValue(1);
+
+        // what it answered is the fresh entry now
+        assertThat(validators.confirm(KEY, "\"r2\"", current("\"r3\"")).get()).isEqualTo("\"r2\"");
+        assertThat(asked).hasValue(1);
+    }
+
+    @Test
+    void unknownVersionMeansTheFullRequestAndIsNotKept() throws Exception {
+        ValidatorCache validators = new ValidatorCache(100, 60_000);
+
+        Supplier<CompletableFuture<String>> failing = () -> {
+            asked.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException("no responders"));
+        };
+        assertThat(validators.confirm(KEY, "\"r1\"", failing).get()).isNull();
+        assertThat(validators.confirm(KEY, "\"r1\"", current(null)).get()).isNull();
+        assertThat(asked).hasValue(2);
+    }
+
+    @Test
+    void writeEvictsTheShipmentAndItsTracking() throws Exception {
+        ValidatorCache validators = new ValidatorCache(100, 60_000);
+        String tracking = ValidatorCache.trackingKey("LP-1");
+        validators.put(KEY, "\"r1\"");
+        validators.put(tracking, "\"r1\"");
+
+        validators.evictShipment("SHIP-1", "LP-1");
+
+        validators.confirm(KEY, "\"r1\"", current("\"r2\"")).get();
+        validators.confirm(tracking, "\"r1\"", current("\"r2\"")).get();
+        assertThat(asked).hasValue(2);
+    }
+
+    @Test
+    void leastRecentlyUsedGoesFirstOverMaxEntries() throws Exception {
+        ValidatorCache validators = new ValidatorCache(2, 60_000);
+        validators.put("a", "\"r1\"");
+        validators.put("b", "\"r1\"");
+        validators.confirm("a", "\"r1\"", current("\"r1\"")).get();
+        validators.put("c", "\"r1\"");
+
+        validators.confirm("a", "\"r1\"", current("\"r1\"")).get();
+        assertThat(asked).hasValue(0);
+        validators.confirm("b", "\"r1\"", current("\"r1\"")).get();
+        assertThat(asked).hasValue(1);
+    }
+
+    private Supplier<CompletableFuture<String>> current(String etag) {
+        return () -> {
+            asked.incrementAndGet();
+            return CompletableFuture.completedFuture(etag);
+        };
+    }
+}
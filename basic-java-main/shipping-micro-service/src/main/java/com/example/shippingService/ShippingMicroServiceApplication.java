@@ -61,6 +61,8 @@ public class ShippingMicroServiceApplication {
 			}
 		}
 
+		// Sample data in the pre-GridFS format: served by the legacy fallback, moved out by StoredFileMigrator
+		@SuppressWarnings("deprecation")
 		private StoredFile createFile(
 				String shipmentId,
 				String type,
@@ -0,0 +1,68 @@
+package com.example.shippingService.cache;
+
+import com.example.shippingService.config.ServiceInstance;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Redis pub/sub channel telling the other replicas to drop an L1 entry.
+ * Messages: {"origin": instanceId, "cache": name, "key": key or null for "clear"}.
+ * A replica ignores its own messages. A lost message is bounded by the L1 TTL.
+ */
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String channel;
+    private final String instanceId;
+
+    private volatile BiConsumer<String, String> remoteInvalidationHandler = (cache, key) -> {};
+
+    public CacheInvalidationBus(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                                String channel, ServiceInstance serviceInstance) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.channel = channel;
+        this.instanceId = serviceInstance.getId();
+    }
+
+    public void publish(String cacheName, Object key) {
+        try {
+            Map<String, String> message = new HashMap<>();
+            message.put("origin", instanceId);
+            message.put("cache", cacheName);
+            message.put("key", key != null ? key.toString() : null);
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            // The write itself succeeded; other replicas catch up when their L1 entry expires
+            log.warn("Could not publish cache invalidation for {}:{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    void onRemoteInvalidation(BiConsumer<String, String> handler) {
+        this.remoteInvalidationHandler = handler;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Map<?, ?> payload = objectMapper.readValue(message.getBody(), Map.class);
+            if (instanceId.equals(payload.get("origin"))) {
+                return;
+            }
+            Object key = payload.get("key");
+            remoteInvalidationHandler.accept((String) payload.get("cache"), key != null ? key.toString() : null);
+        } catch (IOException e) {
+            log.warn("Ignoring malformed cache invalidation message: {}", e.getMessage());
+        }
+    }
+}
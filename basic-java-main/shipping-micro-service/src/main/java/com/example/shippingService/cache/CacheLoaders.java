@@ -0,0 +1,30 @@
+package com.example.shippingService.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Uncached loader of each cache, registered by the service owning it.
+ * Early refreshes (TwoLevelCache) go through these, on their own thread, instead of replaying
+ * the valueLoader Spring passed to a @Cacheable call that has already returned.
+ */
+@Component
+public class CacheLoaders {
+
+    private final Map<String, Function<Object, Object>> loaders = new ConcurrentHashMap<>();
+
+    public void register(String cacheName, Function<Object, Object> loader) {
+        loaders.put(cacheName, loader);
+    }
+
+    /**
+     * @return the current value of the key, null if no loader is registered for the cache
+     */
+    public Object load(String cacheName, Object key) {
+        Function<Object, Object> loader = loaders.get(cacheName);
+        return loader != null ? loader.apply(key) : null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.shippingService.cache;
+
+import com.example.shippingService.dtos.ShipmentResponse;
+import com.example.shippingService.dtos.TrackingResponse;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Redis TTL of a cache entry.
+ * A shipment (or its tracking) in a terminal status no longer changes on its own, and every
+ * mutation goes through ShipmentCacheInvalidator: it can stay cached much longer.
+ */
+public class CacheTtlPolicy implements RedisCacheWriter.TtlFunction {
+
+    private final Duration defaultTtl;
+    private final Duration terminalTtl;
+    private final Set<String> terminalStatuses;
+
+    public CacheTtlPolicy(Duration defaultTtl, Duration terminalTtl, Set<String> terminalStatuses) {
+        this.defaultTtl = defaultTtl;
+        this.terminalTtl = terminalTtl;
+        this.terminalStatuses = terminalStatuses.stream()
+                .map(String::toUpperCase)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public Duration getTimeToLive(Object key, Object value) {
+        return ttlFor(value);
+    }
+
+    public Duration ttlFor(Object value) {
+        String status = null;
+        if (value instanceof ShipmentResponse shipment) {
+            status = shipment.getStatus();
+        } else if (value instanceof TrackingResponse tracking) {
+            status = tracking.getCurrentStatus();
+        }
+        return status != null && terminalStatuses.contains(status.toUpperCase()) ? terminalTtl : defaultTtl;
+    }
+}
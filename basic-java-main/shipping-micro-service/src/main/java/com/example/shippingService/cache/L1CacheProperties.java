@@ -0,0 +1,32 @@
+package com.example.shippingService.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process L1 in front of the Redis caches.
+ * Only the caches listed here get an L1; the others (e.g. storedFiles, large payloads) go straight to Redis.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "shipping.cache.l1")
+public class L1CacheProperties {
+
+    private boolean enabled = true;
+
+    /** Redis pub/sub channel used to drop L1 entries on the other replicas */
+    private String invalidationChannel = "shipping:cache:invalidate";
+
+    private Map<String, Spec> caches = new LinkedHashMap<>();
+
+    @Data
+    public static class Spec {
+        private long maxSize = 10_000;
+        private Duration ttl = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.shippingService.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only byte store on memory-mapped segment files.
+ * Values are appended to the current segment; when the total goes over the budget, the oldest
+ * segment is deleted with every entry it holds (FIFO by segment, no compaction).
+ * Reads copy from the mapping: the page cache does the caching, the heap only sees the copy handed out.
+ * The index lives in memory only; the directory is wiped when the store is opened.
+ */
+@Slf4j
+class MappedSegmentStore implements AutoCloseable {
+
+    private record Location(Segment segment, int offset, int length) {}
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int position;
+
+        Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSegmentId;
+
+    MappedSegmentStore(Path directory, long totalSize, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(1, totalSize / segmentSize);
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> old = Files.list(directory)) {
+                old.filter(p -> p.getFileName().toString().endsWith(".seg")).forEach(this::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open proof cache directory " + directory, e);
+        }
+    }
+
+    byte[] get(String key) {
+        Location location = index.get(key);
+        if (location == null) return null;
+        byte[] value = new byte[location.length()];
+        synchronized (this) {
+            // the segment may have been dropped since the lookup
+            if (index.get(key) != location) return null;
+            location.segment().buffer.get(location.offset(), value);
+        }
+        return value;
+    }
+
+    synchronized void put(String key, byte[] value) {
+        if (value.length > segmentSize || index.containsKey(key)) return;
+
+        Segment current = segments.peekLast();
+        if (current == null || current.position + value.length > segmentSize) {
+            current = roll();
+        }
+        current.buffer.put(current.position, value);
+        index.put(key, new Location(current, current.position, value.length));
+        current.position += value.length;
+    }
+
+    void remove(String key) {
+        index.remove(key);
+    }
+
+    /** Bytes written in the live segments (removed entries included until their segment goes) */
+    synchronized long usedBytes() {
+        return segments.stream().mapToLong(s -> s.position).sum();
+    }
+
+    int entries() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        index.clear();
+        while (!segments.isEmpty()) {
+            deleteQuietly(segments.removeFirst().path);
+        }
+    }
+
+    // ==== INTERNAL ====
+
+    private Segment roll() {
+        while (segments.size() >= maxSegments) {
+            Segment oldest = segments.removeFirst();
+            index.values().removeIf(location -> location.segment() == oldest);
+            deleteQuietly(oldest.path);
+        }
+
+        long id = nextSegmentId++;
+        Path path = directory.resolve(String.format("%012d.seg", id));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            Segment segment = new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create proof cache segment " + path, e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete proof cache segment {}: {}", path, e.getMessage());
+        }
+    }
+}
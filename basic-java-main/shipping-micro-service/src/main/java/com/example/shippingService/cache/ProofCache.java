@@ -0,0 +1,148 @@
+package com.example.shippingService.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of proof contents, keyed by GridFS id (a content never changes under its id, so there is
+ * nothing to invalidate on update; evict only frees room).
+ * <p>
+ * Kept out of Redis on purpose: large photos there compete with the shipment / tracking entries
+ * under maxmemory. Instead, per instance:
+ * - admission by size: files over max-entry-size are never cached;
+ * - memory tier bounded by total bytes (Caffeine weigher, so W-TinyLFU rather than plain LRU);
+ * - entries pushed out of memory go to a disk tier of memory-mapped segments, promoted back on hit.
+ */
+@Slf4j
+@Component
+public class ProofCache {
+
+    private final boolean enabled;
+    private final long maxEntryBytes;
+    private final Cache<String, byte[]> memory;
+    private final MappedSegmentStore disk;   // null = no disk tier
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter rejected;
+
+    public ProofCache(ProofCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.maxEntryBytes = properties.getMaxEntrySize().toBytes();
+
+        ProofCacheProperties.Disk diskProperties = properties.getDisk();
+        this.disk = enabled && diskProperties.isEnabled()
+                ? new MappedSegmentStore(
+                        diskProperties.getDirectory(),
+                        diskProperties.getSize().toBytes(),
+                        (int) Math.max(maxEntryBytes, diskProperties.getSegmentSize().toBytes()))
+                : null;
+
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(properties.getMemorySize().toBytes())
+                // evict on the writing thread: the byte budget is never overshot by pending maintenance
+                .executor(Runnable::run)
+                .weigher((String key, byte[] value) -> value.length)
+                .evictionListener((String key, byte[] value, RemovalCause cause) -> {
+                    // warm but pushed out of memory: keep it one tier down
+                    if (disk != null && key != null && value != null && cause == RemovalCause.SIZE) {
+                        disk.put(key, value);
+                    }
+                })
+                .build();
+
+        this.memoryHits = requests(meterRegistry, "memory", "hit");
+        this.diskHits = requests(meterRegistry, "disk", "hit");
+        this.misses = requests(meterRegistry, "all", "miss");
+        this.rejected = Counter.builder("shipping.proof.cache.rejected")
+                .description("Proofs not cached because of their size")
+                .register(meterRegistry);
+
+        Gauge.builder("shipping.proof.cache.bytes", this,
+                        c -> c.memory.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L))
+                .tag("tier", "memory")
+                .register(meterRegistry);
+        Gauge.builder("shipping.proof.cache.entries", memory, Cache::estimatedSize)
+                .tag("tier", "memory")
+                .register(meterRegistry);
+        if (disk != null) {
+            Gauge.builder("shipping.proof.cache.bytes", disk, MappedSegmentStore::usedBytes)
+                    .tag("tier", "disk")
+                    .register(meterRegistry);
+            Gauge.builder("shipping.proof.cache.entries", disk, MappedSegmentStore::entries)
+                    .tag("tier", "disk")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * @return the content, or null if this instance does not have it
+     */
+    public byte[] get(String storageId) {
+        if (!enabled || storageId == null) return null;
+
+        byte[] value = memory.getIfPresent(storageId);
+        if (value != null) {
+            memoryHits.increment();
+            return value;
+        }
+
+        if (disk != null) {
+            value = disk.get(storageId);
+            if (value != null) {
+                diskHits.increment();
+                disk.remove(storageId);
+                memory.put(storageId, value);
+                return value;
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @return true if a content of this size would be kept (enabled, not above max-entry-size)
+     */
+    public boolean admits(long size) {
+        return enabled && size <= maxEntryBytes;
+    }
+
+    public void put(String storageId, byte[] content) {
+        if (!enabled || storageId == null || content == null) return;
+        if (content.length > maxEntryBytes) {
+            rejected.increment();
+            return;
+        }
+        memory.put(storageId, content);
+    }
+
+    public void evict(String storageId) {
+        if (storageId == null) return;
+        memory.invalidate(storageId);
+        if (disk != null) disk.remove(storageId);
+    }
+
+    @PreDestroy
+    public void close() {
+        memory.invalidateAll();
+        if (disk != null) disk.close();
+    }
+
+    // ==== INTERNAL ====
+
+    private static Counter requests(MeterRegistry registry, String tier, String result) {
+        return Counter.builder("shipping.proof.cache.requests")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+}
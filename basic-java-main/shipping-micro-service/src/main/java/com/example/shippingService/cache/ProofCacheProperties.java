@@ -0,0 +1,41 @@
+package com.example.shippingService.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Local proof content cache (see ProofCache): memory tier bounded in bytes, then memory-mapped segments on disk.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "shipping.cache.proofs")
+public class ProofCacheProperties {
+
+    private boolean enabled = true;
+
+    /** Larger files are never cached: one big photo must not push out hundreds of small proofs */
+    private DataSize maxEntrySize = DataSize.ofMegabytes(4);
+
+    /** Total bytes held on heap */
+    private DataSize memorySize = DataSize.ofMegabytes(64);
+
+    private Disk disk = new Disk();
+
+    @Data
+    public static class Disk {
+        private boolean enabled = true;
+
+        /** Wiped at startup: the tier only holds copies of GridFS content */
+        private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "shipping-proof-cache");
+
+        /** Total bytes on disk; the oldest segment is dropped when over */
+        private DataSize size = DataSize.ofGigabytes(1);
+
+        /** Size of one segment file; must hold max-entry-size */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+    }
+}
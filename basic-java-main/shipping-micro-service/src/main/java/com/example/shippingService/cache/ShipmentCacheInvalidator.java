@@ -0,0 +1,96 @@
+package com.example.shippingService.cache;
+
+import com.example.shippingService.dtos.ShipmentResponse;
+import com.example.shippingService.dtos.TrackingResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Single place that knows every cache entry derived from a shipment:
+ * - shipments[shipmentId]     -> ShipmentResponse
+ * - tracking[trackingNumber]  -> TrackingResponse (latest events)
+ * Every mutation of a shipment goes through here, after the write, so both entries move together.
+ * Fresh values are put when the caller has the full view, otherwise the entry is evicted.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShipmentCacheInvalidator {
+
+    public static final String SHIPMENTS = "shipments";
+    public static final String TRACKING = "tracking";
+
+    private final CacheManager cacheManager;
+
+    /**
+     * Shipment created or updated. Its tracking view (owner, status) may have changed too,
+     * and a new tracking number leaves the old entry behind: both are evicted.
+     */
+    public void shipmentSaved(ShipmentResponse shipment, String previousTrackingNumber) {
+        put(SHIPMENTS, shipment.getShipmentId(), shipment);
+        evict(TRACKING, shipment.getTrackingNumber());
+        if (!Objects.equals(previousTrackingNumber, shipment.getTrackingNumber())) {
+            evict(TRACKING, previousTrackingNumber);
+        }
+    }
+
+    /**
+     * Tracking event added: the tracking view is fresh, the shipment one has a stale status/history.
+     */
+    public void trackingChanged(String shipmentId, String trackingNumber, TrackingResponse tracking) {
+        put(TRACKING, trackingNumber, tracking);
+        evict(SHIPMENTS, shipmentId);
+    }
+
+    /**
+     * Pre-bucket history moved out of the shipment: same content, new revision.
+     * The tracking view is the one being read, and cached, by the caller.
+     */
+    public void historyMoved(String shipmentId) {
+        evict(SHIPMENTS, shipmentId);
+    }
+
+    public void shipmentDeleted(String shipmentId, String trackingNumber) {
+        evict(SHIPMENTS, shipmentId);
+        evict(TRACKING, trackingNumber);
+    }
+
+    /**
+     * Revision of a cached shipment or tracking view (from its ETag), -1 if unknown.
+     */
+    public static long revisionOf(Object value) {
+        String etag = null;
+        if (value instanceof ShipmentResponse shipment) {
+            etag = shipment.getEtag();
+        } else if (value instanceof TrackingResponse tracking) {
+            etag = tracking.getEtag();
+        }
+        if (etag == null || !etag.startsWith("r")) return -1;
+        try {
+            return Long.parseLong(etag.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ==== INTERNAL ====
+
+    private void put(String cacheName, String key, Object value) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null && value != null) {
+            cache.put(key, value);
+        }
+    }
+
+    private void evict(String cacheName, String key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            cache.evict(key);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.example.shippingService.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caffeine L1 (this JVM) in front of a Redis L2 (shared).
+ * Reads try L1, then L2 (filling L1). Writes and evictions go to both levels and are announced
+ * to the other replicas, which drop their L1 copy.
+ * <p>
+ * Loads ({@code @Cacheable(sync = true)}) are single-flight per key: concurrent misses wait for
+ * the one running loader. Keys loaded here are also refreshed in the background shortly before
+ * their Redis TTL runs out, with probabilistic early expiration ("XFetch"): the closer to expiry
+ * and the slower the load, the more likely a read triggers the refresh. Refreshes use the cache's
+ * own loader (see CacheLoaders).
+ * <p>
+ * A load or refresh never overwrites a newer value: it stores nothing if this replica wrote or was
+ * told about a write of the key while it ran, nor if Redis already holds a higher revision.
+ */
+@Slf4j
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> l1;
+    private final Cache l2;
+    private final Consumer<Object> invalidationPublisher;   // key, null = clear
+
+    private final Function<Object, Duration> l2Ttl;          // Redis TTL of a value, ZERO = unknown
+    private final double earlyRefreshBeta;                  // 0 = no early refresh
+    private final Function<Object, Object> reloader;         // null = no early refresh
+    private final Executor refreshExecutor;
+    private final ToLongFunction<Object> revision;          // of a value, -1 = unknown
+
+    /* every write or invalidation seen here takes the next number; a load only stores if none happened since it started */
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Long> lastWrites;
+    private volatile long lastClear;
+
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final com.github.benmanes.caffeine.cache.Cache<Object, LoadStats> loadStats;
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private final Counter loads;
+    private final Counter sharedLoads;
+    private final Counter earlyRefreshes;
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<Object, Object> l1,
+                         Cache l2,
+                         Consumer<Object> invalidationPublisher,
+                         MeterRegistry meterRegistry) {
+        this(name, l1, l2, invalidationPublisher, meterRegistry, value -> Duration.ZERO, 0, null, Runnable::run,
+                value -> -1);
+    }
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<Object, Object> l1,
+                         Cache l2,
+                         Consumer<Object> invalidationPublisher,
+                         MeterRegistry meterRegistry,
+                         Function<Object, Duration> l2Ttl,
+                         double earlyRefreshBeta,
+                         Function<Object, Object> reloader,
+                         Executor refreshExecutor,
+                         ToLongFunction<Object> revision) {
+        this.name = name;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.invalidationPublisher = invalidationPublisher;
+        this.l2Ttl = l2Ttl;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.reloader = reloader;
+        this.refreshExecutor = refreshExecutor;
+        this.revision = revision;
+        // far longer than any load
+        this.lastWrites = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build();
+
+        // Only needed until the Redis entry expires
+        this.loadStats = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfter(new Expiry<Object, LoadStats>() {
+                    @Override
+                    public long expireAfterCreate(Object key, LoadStats stats, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, stats.expiresAtMillis() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Object key, LoadStats stats, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, stats, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Object key, LoadStats stats, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+
+        this.l1Hits = counter(meterRegistry, "l1", "hit");
+        this.l1Misses = counter(meterRegistry, "l1", "miss");
+        this.l2Hits = counter(meterRegistry, "l2", "hit");
+        this.l2Misses = counter(meterRegistry, "l2", "miss");
+        this.loads = loadCounter(meterRegistry, "load");
+        this.sharedLoads = loadCounter(meterRegistry, "shared");
+        this.earlyRefreshes = loadCounter(meterRegistry, "early-refresh");
+
+        Gauge.builder("shipping.cache.hit.ratio", this, c -> ratio(c.l1Hits, c.l1Misses))
+                .tag("cache", name).tag("level", "l1")
+                .register(meterRegistry);
+        Gauge.builder("shipping.cache.hit.ratio", this, c -> ratio(c.l2Hits, c.l2Misses))
+                .tag("cache", name).tag("level", "l2")
+                .register(meterRegistry);
+        Gauge.builder("shipping.cache.l1.size", l1, com.github.benmanes.caffeine.cache.Cache::estimatedSize)
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object local = l1.getIfPresent(key);
+        if (local != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(local);
+        }
+        l1Misses.increment();
+
+        ValueWrapper remote = l2.get(key);
+        if (remote == null || remote.get() == null) {
+            l2Misses.increment();
+            return remote;
+        }
+        l2Hits.increment();
+        l1.put(key, remote.get());
+        return remote;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            if (shouldRefreshEarly(key)) {
+                refreshExecutor.execute(() -> refresh(key));
+            }
+            return (T) wrapper.get();
+        }
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // Another thread is already loading this key: wait for its result
+            sharedLoads.increment();
+            try {
+                return (T) running.join();
+            } catch (CompletionException e) {
+                throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            }
+        }
+
+        try {
+            // The previous loader may have finished between our miss and putIfAbsent
+            ValueWrapper loaded = get(key);
+            Object value = loaded != null && loaded.get() != null ? loaded.get() : load(key, valueLoader);
+            mine.complete(value);
+            return (T) value;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        written(key);
+        loadStats.invalidate(key);
+        l2.put(key, value);
+        if (value != null) {
+            l1.put(key, value);
+        } else {
+            l1.invalidate(key);
+        }
+        invalidationPublisher.accept(key);
+    }
+
+    @Override
+    public void evict(Object key) {
+        written(key);
+        loadStats.invalidate(key);
+        l2.evict(key);
+        l1.invalidate(key);
+        invalidationPublisher.accept(key);
+    }
+
+    @Override
+    public void clear() {
+        written(null);
+        loadStats.invalidateAll();
+        l2.clear();
+        l1.invalidateAll();
+        invalidationPublisher.accept(null);
+    }
+
+    /**
+     * Another replica changed this key: drop the local copy, the next read goes to Redis.
+     */
+    public void invalidateLocal(Object key) {
+        written(key);
+        if (key == null) {
+            l1.invalidateAll();
+        } else {
+            l1.invalidate(key);
+        }
+    }
+
+    // ==== INTERNAL ====
+
+    /** When this replica loaded the key and how long the load took */
+    private record LoadStats(long expiresAtMillis, long loadMillis) {}
+
+    private Object load(Object key, Callable<?> valueLoader) throws Exception {
+        loads.increment();
+        long startedAfter = writeSequence.get();
+        long start = System.currentTimeMillis();
+        Object value = valueLoader.call();
+        long end = System.currentTimeMillis();
+        if (value != null) {
+            store(key, value, startedAfter, Math.max(1, end - start));
+        }
+        return value;
+    }
+
+    /**
+     * Loaded, not changed: no need to invalidate the other replicas.
+     *
+     * @return false if a newer value was there, in which case nothing is stored
+     */
+    private boolean store(Object key, Object value, long startedAfter, long loadMillis) {
+        if (writtenSince(key, startedAfter)) {
+            return false;
+        }
+        ValueWrapper current = l2.get(key);
+        if (current != null && current.get() != null && revision.applyAsLong(current.get()) > revision.applyAsLong(value)) {
+            return false;
+        }
+        l2.put(key, value);
+        l1.put(key, value);
+        Duration ttl = l2Ttl.apply(value);
+        if (earlyRefreshBeta > 0 && !ttl.isZero()) {
+            loadStats.put(key, new LoadStats(System.currentTimeMillis() + ttl.toMillis(), loadMillis));
+        }
+        return true;
+    }
+
+    private void written(Object key) {
+        long sequence = writeSequence.incrementAndGet();
+        if (key == null) {
+            lastClear = sequence;
+        } else {
+            lastWrites.put(key, sequence);
+        }
+    }
+
+    private boolean writtenSince(Object key, long sequence) {
+        if (lastClear > sequence) return true;
+        Long lastWrite = lastWrites.getIfPresent(key);
+        return lastWrite != null && lastWrite > sequence;
+    }
+
+    /**
+     * XFetch: refresh when now - loadTime * beta * ln(rand) >= expiry.
+     * Keys this replica did not load (or that were written by a put) have no stats and are left alone.
+     */
+    private boolean shouldRefreshEarly(Object key) {
+        if (earlyRefreshBeta <= 0 || reloader == null) {
+            return false;
+        }
+        LoadStats stats = loadStats.getIfPresent(key);
+        if (stats == null) {
+            return false;
+        }
+        double gap = -stats.loadMillis() * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= stats.expiresAtMillis();
+    }
+
+    private void refresh(Object key) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, mine) != null) {
+            return;   // already being loaded
+        }
+        try {
+            earlyRefreshes.increment();
+            long startedAfter = writeSequence.get();
+            long start = System.currentTimeMillis();
+            Object value = reloader.apply(key);
+            mine.complete(value);
+            if (value != null && store(key, value, startedAfter, Math.max(1, System.currentTimeMillis() - start))) {
+                // the value may have changed since the other replicas cached it
+                invalidationPublisher.accept(key);
+            }
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            log.warn("Early refresh of {}:{} failed: {}", name, key, e.getMessage());
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Counter counter(MeterRegistry registry, String level, String result) {
+        return Counter.builder("shipping.cache.requests")
+                .tag("cache", name)
+                .tag("level", level)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private Counter loadCounter(MeterRegistry registry, String result) {
+        return Counter.builder("shipping.cache.loads")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static double ratio(Counter hits, Counter misses) {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+}
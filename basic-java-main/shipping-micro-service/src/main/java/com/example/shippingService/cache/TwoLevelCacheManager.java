@@ -0,0 +1,111 @@
+package com.example.shippingService.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CacheManager used by @Cacheable / @CachePut / @CacheEvict.
+ * Caches configured under shipping.cache.l1 get a TwoLevelCache; every other cache is the Redis one as-is.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager redisCacheManager;
+    private final L1CacheProperties properties;
+    private final CacheInvalidationBus invalidationBus;
+    private final MeterRegistry meterRegistry;
+    private final CacheTtlPolicy ttlPolicy;
+    private final double earlyRefreshBeta;
+    private final CacheLoaders cacheLoaders;
+
+    private final Map<String, TwoLevelCache> twoLevelCaches = new ConcurrentHashMap<>();
+
+    /** Background early refreshes; when it is busy a refresh is simply skipped (the entry is still valid) */
+    private final ThreadPoolExecutor refreshExecutor;
+
+    public TwoLevelCacheManager(CacheManager redisCacheManager,
+                                L1CacheProperties properties,
+                                CacheInvalidationBus invalidationBus,
+                                MeterRegistry meterRegistry,
+                                CacheTtlPolicy ttlPolicy,
+                                double earlyRefreshBeta,
+                                CacheLoaders cacheLoaders) {
+        this.redisCacheManager = redisCacheManager;
+        this.properties = properties;
+        this.invalidationBus = invalidationBus;
+        this.meterRegistry = meterRegistry;
+        this.ttlPolicy = ttlPolicy;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.cacheLoaders = cacheLoaders;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(
+                2, 2, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1_000),
+                r -> {
+                    Thread t = new Thread(r, "cache-refresh-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.DiscardPolicy()
+        );
+
+        invalidationBus.onRemoteInvalidation((cacheName, key) -> {
+            TwoLevelCache cache = twoLevelCaches.get(cacheName);
+            if (cache != null) {
+                cache.invalidateLocal(key);
+            }
+        });
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache redisCache = redisCacheManager.getCache(name);
+        L1CacheProperties.Spec spec = properties.getCaches().get(name);
+        if (!properties.isEnabled() || spec == null || redisCache == null) {
+            return redisCache;
+        }
+        return twoLevelCaches.computeIfAbsent(name, n -> createCache(n, spec, redisCache));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+
+    private TwoLevelCache createCache(String name, L1CacheProperties.Spec spec, Cache redisCache) {
+        log.info("Cache '{}': L1 in-process (maxSize={}, ttl={}) in front of Redis", name, spec.getMaxSize(), spec.getTtl());
+        return new TwoLevelCache(
+                name,
+                Caffeine.newBuilder()
+                        .maximumSize(spec.getMaxSize())
+                        .expireAfterWrite(spec.getTtl())
+                        .build(),
+                redisCache,
+                key -> invalidationBus.publish(name, key),
+                meterRegistry,
+                ttlPolicy::ttlFor,
+                earlyRefreshBeta,
+                key -> cacheLoaders.load(name, key),
+                refreshExecutor,
+                ShipmentCacheInvalidator::revisionOf
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
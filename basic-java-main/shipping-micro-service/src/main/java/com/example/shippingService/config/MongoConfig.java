@@ -1,10 +1,71 @@
 package com.example.shippingService.config;
 
+import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.entities.TrackingBucket;
+import com.example.shippingService.mappers.TrackingEventReadConverter;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
+import java.util.List;
+
+@Slf4j
 @Configuration
+@RequiredArgsConstructor
 @EnableMongoRepositories(basePackages = "com.example.shippingservice.repository")
 public class MongoConfig {
     // Optionnel : Spring Boot se charge souvent de tout si ton application.yml contient la bonne URI.
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Tracking events are read through a converter so that documents still holding
+     * the old map entries keep loading (see TrackingEvent.fromLegacy).
+     */
+    @Bean
+    public static MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(new TrackingEventReadConverter()));
+    }
+
+    /**
+     * Same default "fs" bucket as GridFsTemplate, used where files are streamed in pieces
+     * (GridFsTemplate only stores whole InputStreams).
+     */
+    @Bean
+    public GridFSBucket gridFSBucket(MongoDatabaseFactory mongoDatabaseFactory) {
+        return GridFSBuckets.create(mongoDatabaseFactory.getMongoDatabase());
+    }
+
+    /**
+     * Indexes backing the keyset pagination of shipping.getAll and the tracking buckets.
+     * Created explicitly: auto-index-creation is off, and turning it on would also build every other @Indexed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(Shipment.class).ensureIndex(
+                new Index()
+                        .on("createdAt", Sort.Direction.ASC)
+                        .on("_id", Sort.Direction.ASC)
+                        .named("createdAt_shipmentId")
+        );
+        mongoTemplate.indexOps(TrackingBucket.class).ensureIndex(
+                new Index()
+                        .on("shipmentId", Sort.Direction.ASC)
+                        .on("bucket", Sort.Direction.ASC)
+                        .unique()
+                        .named("shipmentId_bucket")
+        );
+        log.info("✅ Mongo indexes 'createdAt_shipmentId', 'shipmentId_bucket' ready");
+    }
 }
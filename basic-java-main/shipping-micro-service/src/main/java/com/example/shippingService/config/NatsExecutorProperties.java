@@ -0,0 +1,52 @@
+package com.example.shippingService.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Worker pools used by the NATS listeners.
+ * Each group owns a bounded pool; subjects not listed in any group run on the "default" group.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "nats.executors")
+public class NatsExecutorProperties {
+
+    public static final String DEFAULT_GROUP = "default";
+
+    /** Values used by the default group and by any group leaving a setting empty */
+    private Pool defaults = new Pool();
+
+    /** Named groups of subjects sharing one pool */
+    private Map<String, Group> groups = new LinkedHashMap<>();
+
+    public enum RejectionPolicy {
+        /** Reply immediately with a SERVICE_OVERLOADED error */
+        REJECT,
+        /** Try to queue again a few times, off the dispatcher thread, then reject */
+        RETRY,
+        /** Reject the oldest queued request and queue the new one */
+        DISCARD_OLDEST
+    }
+
+    @Data
+    public static class Pool {
+        private Integer concurrency = 4;
+        private Integer queueCapacity = 200;
+        private RejectionPolicy rejectionPolicy = RejectionPolicy.REJECT;
+    }
+
+    @Data
+    public static class Group {
+        private List<String> subjects = new ArrayList<>();
+        private Integer concurrency;
+        private Integer queueCapacity;
+        private RejectionPolicy rejectionPolicy;
+    }
+}
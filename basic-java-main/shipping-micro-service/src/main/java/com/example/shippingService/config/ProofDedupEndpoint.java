@@ -0,0 +1,24 @@
+package com.example.shippingService.config;
+
+import com.example.shippingService.dtos.ProofDedupReport;
+import com.example.shippingService.services.ProofContentStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * GET /actuator/proofs: deduplication ratio and bytes saved by the content-addressed proof storage.
+ */
+@Component
+@Endpoint(id = "proofs")
+@RequiredArgsConstructor
+public class ProofDedupEndpoint {
+
+    private final ProofContentStore proofContentStore;
+
+    @ReadOperation
+    public ProofDedupReport report() {
+        return proofContentStore.report();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.shippingService.config;
+
+import com.example.shippingService.entities.ProofContent;
+import com.example.shippingService.entities.StoredFile;
+import com.example.shippingService.storage.ProofStore;
+import com.example.shippingService.storage.ProofStores;
+import com.example.shippingService.storage.ProofWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Background copy of the proof contents to the configured backend (shipping.storage.backend),
+ * e.g. from GridFS to the file system or back.
+ * For each content stored elsewhere: copy, repoint proof_contents then stored_files, delete the source blob.
+ * Readers are never broken: until a content is repointed its old blob is still there, and storageIds tell
+ * their backend apart. Runs once per start on its own thread; idempotent (already moved contents are skipped).
+ * Files not hashed yet are left to StoredFileMigrator.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "shipping.migration.proof-store", havingValue = "true")
+public class ProofStoreMigrator {
+
+    private final MongoTemplate mongoTemplate;
+    private final ProofStores proofStores;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::migrate, "proof-store-migrator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void migrate() {
+        ProofStore target = proofStores.primary();
+        Query query = new Query();
+        query.cursorBatchSize(50);
+
+        int moved = 0;
+        int skipped = 0;
+        try (Stream<ProofContent> contents = mongoTemplate.stream(query, ProofContent.class)) {
+            for (ProofContent content : (Iterable<ProofContent>) contents::iterator) {
+                if (target.owns(content.getStorageId())) continue;
+                try {
+                    if (move(content, target)) moved++;
+                    else skipped++;
+                } catch (Exception e) {
+                    skipped++;
+                    log.warn("Could not move proof content {}: {}", content.getSha256(), e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Proof store migration stopped: {}", e.getMessage(), e);
+            return;
+        }
+
+        log.info("✅ Proof store migration to '{}' done: {} moved, {} skipped", target.name(), moved, skipped);
+    }
+
+    private boolean move(ProofContent content, ProofStore target) {
+        String from = content.getStorageId();
+        ProofStore source = proofStores.forId(from);
+
+        ProofWriter writer = target.create(content.getSha256(), Map.of("sha256", content.getSha256()));
+        String to;
+        try {
+            long copied = source.transferTo(from, 0, Long.MAX_VALUE, Channels.newChannel(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    writer.write(new byte[]{(byte) b});
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    writer.write(Arrays.copyOfRange(b, off, off + len));
+                }
+            }));
+            if (copied != content.getSize()) {
+                throw new IllegalStateException("copied " + copied + " bytes out of " + content.getSize());
+            }
+            to = writer.commit();
+        } catch (RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        // Only if the content is still there and still points to what we copied
+        boolean repointed = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(content.getSha256()).and("storageId").is(from)),
+                new Update().set("storageId", to),
+                ProofContent.class
+        ).getModifiedCount() > 0;
+        if (!repointed) {
+            target.delete(to);
+            return false;
+        }
+
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("storageId").is(from)),
+                new Update().set("storageId", to),
+                StoredFile.class
+        );
+        source.delete(from);
+        return true;
+    }
+}
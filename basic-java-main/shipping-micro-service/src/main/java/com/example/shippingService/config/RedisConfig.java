@@ -1,24 +1,95 @@
 package com.example.shippingService.config;
 
+import com.example.shippingService.cache.CacheInvalidationBus;
+import com.example.shippingService.cache.CacheLoaders;
+import com.example.shippingService.cache.CacheTtlPolicy;
+import com.example.shippingService.cache.L1CacheProperties;
+import com.example.shippingService.cache.TwoLevelCacheManager;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.*;
 
 import java.time.Duration;
+import java.util.Set;
 
 @Configuration
 public class RedisConfig {
 
+    @Value("${shipping.cache.ttl:15m}")
+    private Duration cacheTtl;
+
+    /** TTL of shipments / tracking in a terminal status (safe: every mutation invalidates them) */
+    @Value("${shipping.cache.terminal-ttl:6h}")
+    private Duration terminalCacheTtl;
+
+    @Value("${shipping.cache.terminal-statuses:DELIVERED}")
+    private Set<String> terminalStatuses;
+
+    /** XFetch beta: higher = hot entries are refreshed earlier before their Redis TTL, 0 = never */
+    @Value("${shipping.cache.early-refresh-beta:1.0}")
+    private double earlyRefreshBeta;
+
+    /**
+     * Cache manager used by the services: Caffeine L1 + Redis L2 for the caches listed
+     * under shipping.cache.l1, plain Redis for the others.
+     */
+    @Bean
+    @Primary
+    public CacheManager cacheManager(RedisCacheManager redisCacheManager,
+                                     L1CacheProperties l1Properties,
+                                     CacheInvalidationBus cacheInvalidationBus,
+                                     MeterRegistry meterRegistry,
+                                     CacheTtlPolicy cacheTtlPolicy,
+                                     CacheLoaders cacheLoaders) {
+        if (!l1Properties.isEnabled()) {
+            return redisCacheManager;
+        }
+        return new TwoLevelCacheManager(redisCacheManager, l1Properties, cacheInvalidationBus, meterRegistry,
+                cacheTtlPolicy, earlyRefreshBeta, cacheLoaders);
+    }
+
+    @Bean
+    public CacheTtlPolicy cacheTtlPolicy() {
+        return new CacheTtlPolicy(cacheTtl, terminalCacheTtl, terminalStatuses);
+    }
+
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus(StringRedisTemplate stringRedisTemplate,
+                                                     ObjectMapper objectMapper,
+                                                     L1CacheProperties l1Properties,
+                                                     ServiceInstance serviceInstance) {
+        return new CacheInvalidationBus(stringRedisTemplate, objectMapper,
+                l1Properties.getInvalidationChannel(), serviceInstance);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory redisConnectionFactory,
+                                                                   CacheInvalidationBus cacheInvalidationBus,
+                                                                   L1CacheProperties l1Properties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheInvalidationBus, new ChannelTopic(l1Properties.getInvalidationChannel()));
+        return container;
+    }
+
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+    public RedisCacheManager redisCacheManager(RedisConnectionFactory redisConnectionFactory,
+                                               CacheTtlPolicy cacheTtlPolicy) {
 
         // 1️ Create ObjectMapper for JSON serialization + Java 8 date/time support
         ObjectMapper objectMapper = new ObjectMapper();
@@ -44,7 +115,7 @@ public class RedisConfig {
         RedisCacheConfiguration cacheConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(keySerializer)          // Use string keys
                 .serializeValuesWith(valueSerializer)      // Use JSON values
-                .entryTtl(Duration.ofMinutes(15))         // Default TTL: 15 minutes
+                .entryTtl(cacheTtlPolicy)                 // 15 minutes, hours once delivered
                 .disableCachingNullValues();               // Avoid caching nulls
 
         // 6️ Build RedisCacheManager
@@ -3,6 +3,7 @@ package com.example.shippingService.config;
 import com.example.shippingService.dtos.ContactInfo;
 import com.example.shippingService.dtos.ShipmentRequest;
 import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.entities.TrackingEvent;
 import com.example.shippingService.repositories.ShipmentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -174,7 +175,9 @@ public class ShipmentDataLoader implements CommandLineRunner {
         shipment.setReceiver(request.getReceiver());
 
         if (request.getStatusHistory() instanceof List<?> list) {
-            shipment.setStatusHistory((List<Map<String, Object>>) list);
+            shipment.setStatusHistory(((List<Map<String, Object>>) list).stream()
+                    .map(TrackingEvent::fromLegacy)
+                    .toList());
         } else {
             shipment.setStatusHistory(new ArrayList<>());
         }
@@ -0,0 +1,127 @@
+package com.example.shippingService.config;
+
+import com.example.shippingService.entities.ProofContent;
+import com.example.shippingService.entities.StoredFile;
+import com.example.shippingService.services.FileStorageService;
+import com.example.shippingService.services.ProofContentStore;
+import com.example.shippingService.storage.ProofStores;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.model.Filters;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Base64;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.stream.Stream;
+
+/**
+ * Background migration of stored_files to the content-addressed storage:
+ * - documents of the old triple-write storage: the Base64 content moves to the proof store and is stripped from the document
+ * - documents pointing to a blob of their own: the content is hashed and shared with identical files
+ * Either way the document ends up with storageId + contentHash and a reference in proof_contents.
+ * Runs once per start on its own thread; idempotent, and safe with concurrent uploads
+ * (a document replaced meanwhile is left alone and the reference taken given back).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "shipping.migration.stored-files", havingValue = "true")
+public class StoredFileMigrator {
+
+    private final MongoTemplate mongoTemplate;
+    private final GridFSBucket gridFSBucket;
+    private final ProofContentStore proofContentStore;
+    private final ProofStores proofStores;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::migrate, "stored-file-migrator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void migrate() {
+        Query query = Query.query(Criteria.where("contentHash").exists(false));
+        query.cursorBatchSize(50);
+
+        int migrated = 0;
+        int skipped = 0;
+        try (Stream<StoredFile> files = mongoTemplate.stream(query, StoredFile.class)) {
+            for (StoredFile file : (Iterable<StoredFile>) files::iterator) {
+                try {
+                    if (migrate(file)) migrated++;
+                    else skipped++;
+                } catch (Exception e) {
+                    skipped++;
+                    log.warn("Could not migrate stored file {}: {}", file.getId(), e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Stored file migration stopped: {}", e.getMessage(), e);
+            return;
+        }
+
+        log.info("✅ Stored file migration done: {} migrated, {} skipped", migrated, skipped);
+    }
+
+    @SuppressWarnings("deprecation")
+    private boolean migrate(StoredFile file) {
+        String filename = FileStorageService.storageName(file.getShipmentId(), file.getType());
+        boolean legacy = file.getFileBase64() != null;
+
+        byte[] content;
+        Criteria unchanged;
+        if (legacy) {
+            content = Base64.decodeBase64(file.getFileBase64());
+            unchanged = Criteria.where("_id").is(file.getId()).and("fileBase64").is(file.getFileBase64());
+        } else if (file.getStorageId() != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            proofStores.forId(file.getStorageId()).transferTo(file.getStorageId(), 0, Long.MAX_VALUE, Channels.newChannel(out));
+            content = out.toByteArray();
+            unchanged = Criteria.where("_id").is(file.getId()).and("storageId").is(file.getStorageId())
+                    .and("contentHash").exists(false);
+        } else {
+            content = new byte[0];
+            unchanged = Criteria.where("_id").is(file.getId()).and("contentHash").exists(false);
+        }
+
+        ProofContent stored = proofContentStore.store(content, filename,
+                FileStorageService.storageMetadata(file.getShipmentId(), file.getType(),
+                        file.getFilename(), file.getContentType()));
+
+        // Only if the document still holds the content we copied
+        boolean updated = mongoTemplate.updateFirst(
+                Query.query(unchanged),
+                new Update()
+                        .set("storageId", stored.getStorageId())
+                        .set("contentHash", stored.getSha256())
+                        .set("size", (long) content.length)
+                        .unset("fileBase64"),
+                StoredFile.class
+        ).getModifiedCount() > 0;
+
+        if (!updated) {
+            proofContentStore.release(stored.getSha256());
+            return false;
+        }
+
+        if (legacy) {
+            // The copy the old storage also wrote to GridFS (through GridFsTemplate, without our metadata) is now a duplicate
+            gridFSBucket.find(Filters.and(Filters.eq("filename", filename), Filters.exists("metadata.shipmentId", false)))
+                    .forEach(duplicate -> gridFSBucket.delete(duplicate.getObjectId()));
+        } else if (file.getStorageId() != null && !file.getStorageId().equals(stored.getStorageId())) {
+            // Same content already stored for another file: this copy is no longer used
+            proofContentStore.deleteUnshared(file.getStorageId());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.shippingService.config;
+
+import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.services.TrackingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+/**
+ * Offline bulk migration of old shipments: history moved to tracking_buckets, compact TrackingEvent format.
+ * Reads are already migrated lazily; this one catches the documents nobody reads.
+ * Run once with shipping.migration.tracking-history=true.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "shipping.migration.tracking-history", havingValue = "true")
+public class TrackingHistoryMigrator implements CommandLineRunner {
+
+    private final MongoTemplate mongoTemplate;
+    private final TrackingService trackingService;
+
+    @Override
+    public void run(String... args) {
+        // History not bucketed yet, or old map entries (the only ones with a long "status" key)
+        Query query = Query.query(new Criteria().orOperator(
+                Criteria.where("trackingEventCount").exists(false).and("trackingHistory.0").exists(true),
+                Criteria.where("statusHistory.status").exists(true)
+        ));
+        query.fields().include("_id", "trackingHistory", "trackingEventCount", "statusHistory");
+        query.cursorBatchSize(200);
+
+        int migrated = 0;
+        try (Stream<Shipment> shipments = mongoTemplate.stream(query, Shipment.class)) {
+            for (Shipment shipment : (Iterable<Shipment>) shipments::iterator) {
+                trackingService.migrateLegacyHistory(shipment);
+                migrated++;
+            }
+        }
+
+        log.info("✅ Tracking history migration done: {} shipment(s) processed", migrated);
+    }
+}
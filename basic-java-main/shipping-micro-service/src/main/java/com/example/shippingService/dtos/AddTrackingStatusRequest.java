@@ -1,8 +1,13 @@
 package com.example.shippingService.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Data
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class AddTrackingStatusRequest {
     private String status;
     private String location;
@@ -10,4 +15,35 @@ public class AddTrackingStatusRequest {
     private String trackingNumber;
     private String timestamp;
     private Long userId;
+
+    /**
+     * NATS payload is either flat or wrapped in "data".
+     * When wrapped, userId is only taken from the root (the gateway puts the caller there).
+     */
+    @JsonProperty("data")
+    private void unpackData(AddTrackingStatusRequest data) {
+        if (data == null) return;
+        this.status = data.getStatus();
+        this.location = data.getLocation();
+        this.note = data.getNote();
+        this.trackingNumber = data.getTrackingNumber();
+        this.timestamp = data.getTimestamp();
+    }
+
+    /**
+     * userId arrives as a number, a string, "" or "null": anything unparsable is treated as anonymous.
+     */
+    @JsonProperty("userId")
+    private void unpackUserId(Object value) {
+        this.userId = null;
+        if (value == null) return;
+
+        String userIdStr = value.toString();
+        if (userIdStr.isBlank() || "null".equalsIgnoreCase(userIdStr)) return;
+        try {
+            this.userId = Long.parseLong(userIdStr);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid userId received in tracking.add: {}", userIdStr);
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package com.example.shippingService.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Deduplication of the proof contents (actuator endpoint "proofs").
+ * Files not hashed yet by StoredFileMigrator are not counted.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProofDedupReport {
+    private long files;          // StoredFile documents referencing a content
+    private long contents;       // unique contents, i.e. stored blobs
+    private long logicalBytes;   // what would be stored without deduplication
+    private long storedBytes;    // what is actually stored
+    private long bytesSaved;
+    private double dedupRatio;   // logicalBytes / storedBytes, 1.0 = no duplicate
+}
@@ -0,0 +1,25 @@
+package com.example.shippingService.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of shipping.file.list: {"shipmentId": ...} or {"shipmentIds": [...]}.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProofListRequest {
+
+    private String shipmentId;
+    private List<String> shipmentIds;
+
+    public List<String> allShipmentIds() {
+        List<String> ids = new ArrayList<>();
+        if (shipmentId != null) ids.add(shipmentId);
+        if (shipmentIds != null) ids.addAll(shipmentIds);
+        return ids;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.shippingService.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * Payload of shipping.file.get and shipping.file.head.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProofLookupRequest {
+
+    private String shipmentId;
+    private String type;
+
+    /** "thumb" or "full" (default) */
+    private String variant;
+}
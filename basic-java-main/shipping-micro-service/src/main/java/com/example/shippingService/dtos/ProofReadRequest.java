@@ -0,0 +1,20 @@
+package com.example.shippingService.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * Payload of shipping.file.read: one slice of a proof content, replied as raw bytes.
+ * The content is designated by the storageId returned by shipping.file.head; shipmentId/type are only
+ * used for documents not migrated to GridFS yet (no storageId).
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProofReadRequest {
+
+    private String storageId;
+    private String shipmentId;
+    private String type;
+    private long offset;
+    private int length;
+}
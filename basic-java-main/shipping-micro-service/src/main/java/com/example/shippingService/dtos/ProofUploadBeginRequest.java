@@ -0,0 +1,20 @@
+package com.example.shippingService.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * Payload of shipping.file.upload.begin: file metadata only, the bytes follow as chunks.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProofUploadBeginRequest {
+
+    private String shipmentId;
+    private String type;
+    private String filename;
+    private String contentType;
+
+    /** Announced size, checked up front against the limit (optional) */
+    private Long size;
+}
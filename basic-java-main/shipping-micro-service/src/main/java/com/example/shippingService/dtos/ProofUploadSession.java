@@ -0,0 +1,25 @@
+package com.example.shippingService.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reply of shipping.file.upload.begin: where and how to send the chunks.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProofUploadSession {
+
+    private String uploadId;
+
+    /** Subject of this upload, served by the instance that accepted it */
+    private String subject;
+
+    /** Maximum bytes per chunk */
+    private int chunkSize;
+
+    /** Maximum chunks in flight without an ack */
+    private int window;
+}
@@ -0,0 +1,23 @@
+package com.example.shippingService.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Payload of shipping.getByShipmentId and shipping.delete.
+ * Accepts both {"shipmentId": ...} and {"data": {"shipmentId": ...}}.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ShipmentIdRequest {
+
+    private String shipmentId;
+
+    @JsonProperty("data")
+    private void unpackData(ShipmentIdRequest data) {
+        if (data != null && data.getShipmentId() != null) {
+            this.shipmentId = data.getShipmentId();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.shippingService.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of shipments ordered by (createdAt, shipmentId).
+ * nextCursor is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShipmentPage {
+
+    private List<ShipmentResponse> items;
+    private String nextCursor;
+    private int limit;
+}
@@ -0,0 +1,27 @@
+package com.example.shippingService.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Payload of shipping.getAll.
+ * - cursor/limit : one page, the reply carries the cursor of the next one
+ * - stream=true  : the whole collection as a sequence of bounded reply chunks
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ShipmentPageRequest {
+
+    private String cursor;
+    private Integer limit;
+    private boolean stream;
+
+    @JsonProperty("data")
+    private void unpackData(ShipmentPageRequest data) {
+        if (data == null) return;
+        this.cursor = data.getCursor();
+        this.limit = data.getLimit();
+        this.stream = data.isStream();
+    }
+}
@@ -32,5 +32,8 @@ public class ShipmentResponse {
     private Instant createdAt;
     private Instant updatedAt;
 
+    /** See Shipment.etag() */
+    private String etag;
+
     public ShipmentResponse() {}
 }
@@ -0,0 +1,27 @@
+package com.example.shippingService.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Payload of shipping.version: one of shipmentId or trackingNumber.
+ * Accepts both the flat form and {"data": {...}}.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ShipmentVersionRequest {
+
+    private String shipmentId;
+    private String trackingNumber;
+
+    @JsonProperty("data")
+    private void unpackData(ShipmentVersionRequest data) {
+        if (data != null && data.getShipmentId() != null) {
+            this.shipmentId = data.getShipmentId();
+        }
+        if (data != null && data.getTrackingNumber() != null) {
+            this.trackingNumber = data.getTrackingNumber();
+        }
+    }
+}
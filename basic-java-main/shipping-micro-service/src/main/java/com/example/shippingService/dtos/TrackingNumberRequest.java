@@ -0,0 +1,29 @@
+package com.example.shippingService.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Payload of shipping.tracking.get.
+ * Accepts both {"trackingNumber": ..., "bucket": ...} and {"data": {...}}.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TrackingNumberRequest {
+
+    private String trackingNumber;
+
+    /** Older events: bucket index taken from TrackingResponse.previousBucket. Null = latest events */
+    private Integer bucket;
+
+    @JsonProperty("data")
+    private void unpackData(TrackingNumberRequest data) {
+        if (data != null && data.getTrackingNumber() != null) {
+            this.trackingNumber = data.getTrackingNumber();
+        }
+        if (data != null && data.getBucket() != null) {
+            this.bucket = data.getBucket();
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.util.List;
 @Data
 @Builder
 @NoArgsConstructor
+@AllArgsConstructor
 public class TrackingResponse {
 
     private String shipmentId;
@@ -21,6 +22,18 @@ public class TrackingResponse {
     private List<StatusEntry> history;
     private Long userId;
 
+    /** Number of events ever recorded for the shipment */
+    private Long totalEvents;
+
+    /** Bucket returned in history, null for the latest events */
+    private Integer bucket;
+
+    /** Bucket to ask for to page back through older events, null when there is none */
+    private Integer previousBucket;
+
+    /** Validator of the shipment the events belong to (see Shipment.etag()) */
+    private String etag;
+
     /**
      * Base constructor used inside the class after conversion.
      */
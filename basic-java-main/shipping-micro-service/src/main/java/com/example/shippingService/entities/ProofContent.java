@@ -0,0 +1,35 @@
+package com.example.shippingService.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One unique proof content, shared by every StoredFile with the same SHA-256.
+ * The GridFS file is deleted when the last StoredFile referencing it goes away.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "proof_contents")
+public class ProofContent {
+
+    @Id
+    private String sha256;      // lowercase hex
+
+    /** GridFS id of the bytes */
+    private String storageId;
+
+    private long size;
+
+    /** Number of StoredFile documents pointing to this content */
+    private long refCount;
+
+    private Instant createdAt;
+}
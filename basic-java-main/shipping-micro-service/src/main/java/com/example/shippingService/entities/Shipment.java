@@ -11,7 +11,6 @@ import org.springframework.data.redis.core.RedisHash;
 
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -43,7 +42,7 @@ public class Shipment {
     @JsonAlias({"weightkg", "weight"})
     private Double weight_kg;
 
-    private List<Map<String, Object>> statusHistory;
+    private List<TrackingEvent> statusHistory;
 
     private Map<String, Object> metadata; //(weight)
 
@@ -52,6 +51,11 @@ public class Shipment {
     private Instant createdAt;
     private Instant updatedAt;
 
+    /**
+     * Bumped on every change of the shipment or of its tracking; null on documents that predate it.
+     */
+    private Long revision;
+
     public void setUserId(Object userId) {
         if (userId == null || "null".equals(userId.toString())) {
             this.userId = null;
@@ -62,28 +66,47 @@ public class Shipment {
 
 
     /**
-     * List of tracking events (status updates over time).
-     * Each entry contains: status, timestamp, location, note...
+     * Latest tracking events (status updates over time), oldest first.
+     * The full history lives in tracking_buckets (see TrackingBucket).
      */
     @Builder.Default
-    private List<Map<String, Object>> trackingHistory = new ArrayList<>();
+    private List<TrackingEvent> trackingHistory = new ArrayList<>();
+
+    /**
+     * Number of tracking events ever recorded; null on documents whose history predates the buckets.
+     */
+    private Long trackingEventCount;
+
+    /**
+     * Events already in trackingHistory whose copy to tracking_buckets is not confirmed yet.
+     * Written in the same update as the event itself, cleared once the bucket holds it.
+     */
+    private List<TrackingEvent> pendingEvents;
 
     /**
      * Adds a new tracking status entry.
      */
     public void addTrackingStatus(String status, String location, String note) {
 
-        Map<String, Object> entry = new HashMap<>();
-        entry.put("status", status);
-        entry.put("timestamp", Instant.now());
-        if (location != null) entry.put("location", location);
-        if (note != null) entry.put("note", note);
-
-        this.trackingHistory.add(entry);
+        this.trackingHistory.add(TrackingEvent.builder()
+                .status(status)
+                .timestamp(Instant.now().toEpochMilli())
+                .location(location)
+                .note(note)
+                .build());
 
         // ✅ Update main shipment status
         this.currentStatus = status;
 
         this.updatedAt = Instant.now();
     }
+
+    /**
+     * Validator of the shipment and tracking views (HTTP ETag, unquoted).
+     * Every write increments revision atomically, so each version has its own.
+     * The caches read the revision back from it (ShipmentCacheInvalidator.revisionOf).
+     */
+    public String etag() {
+        return "r" + (revision != null ? revision : 0);
+    }
 }
@@ -27,7 +27,27 @@ public class StoredFile {
 
     private String contentType;
 
-    private String fileBase64;   // Base64 content
+    /** GridFS id of the content: the bytes live there only */
+    private String storageId;
+
+    private Long size;
+
+    /** SHA-256 of the content, key of its ProofContent (null until StoredFileMigrator hashed it) */
+    private String contentHash;
+
+    /** Thumbnail variant of an image, set in the background once generated (see ProofThumbnailer) */
+    private String thumbnailStorageId;
+
+    private String thumbnailHash;
+
+    private Long thumbnailSize;
+
+    /**
+     * Content of documents written before the GridFS-only storage.
+     * Read as a fallback, stripped by StoredFileMigrator; never written any more.
+     */
+    @Deprecated
+    private String fileBase64;
 
     private Instant uploadedAt;
 }
@@ -0,0 +1,40 @@
+package com.example.shippingService.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Full tracking history of a shipment, split into fixed-size buckets:
+ * event number k (0-based, in arrival order) lives in bucket k / bucketSize.
+ * The shipment document itself only keeps the latest events.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "tracking_buckets")
+@CompoundIndex(name = "shipmentId_bucket", def = "{'shipmentId': 1, 'bucket': 1}", unique = true)
+public class TrackingBucket {
+
+    @Id
+    private String id;          // "<shipmentId>:<bucket>"
+
+    private String shipmentId;
+
+    private int bucket;
+
+    @Builder.Default
+    private List<TrackingEvent> events = new ArrayList<>();
+
+    public static String idOf(String shipmentId, int bucket) {
+        return shipmentId + ":" + bucket;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.shippingService.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One entry of Shipment.trackingHistory / statusHistory.
+ * Stored with one-letter keys and normalized types: epoch-millis timestamp, numeric userId.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrackingEvent {
+
+    @Field("s")
+    private String status;
+
+    @Field("t")
+    private Long timestamp;   // epoch millis
+
+    @Field("u")
+    private Long userId;      // null = shipment owner
+
+    @Field("l")
+    private String location;
+
+    @Field("n")
+    private String note;
+
+    /** Position in the full history (0-based), hence the bucket; null on events recorded before it was kept */
+    @Field("q")
+    private Long sequence;
+
+    /** Read from an old loosely typed map entry, the document still needs a rewrite */
+    @Transient
+    @JsonIgnore
+    private boolean legacy;
+
+    public Instant timestampAsInstant() {
+        return timestamp != null ? Instant.ofEpochMilli(timestamp) : null;
+    }
+
+    public static boolean anyLegacy(List<TrackingEvent> events) {
+        return events != null && events.stream().anyMatch(TrackingEvent::isLegacy);
+    }
+
+    /**
+     * Old format: {status, timestamp, userId, location, note} where userId may be a String, Integer or Long
+     * and timestamp a Date, Instant, Long or ISO String. Type dispatch happens once here, not on every read.
+     */
+    public static TrackingEvent fromLegacy(Map<String, ?> entry) {
+        return TrackingEvent.builder()
+                .status(asString(entry.get("status")))
+                .timestamp(toEpochMillis(entry.get("timestamp")))
+                .userId(toUserId(entry.get("userId")))
+                .location(asString(entry.get("location")))
+                .note(asString(entry.get("note")))
+                .legacy(true)
+                .build();
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static Long toEpochMillis(Object value) {
+        if (value == null) return null;
+        if (value instanceof Date date) return date.getTime();
+        if (value instanceof Instant instant) return instant.toEpochMilli();
+        if (value instanceof Number number) return number.longValue();
+        if (value instanceof String str && !str.isBlank()) return Instant.parse(str).toEpochMilli();
+        return null;
+    }
+
+    private static Long toUserId(Object value) {
+        if (value instanceof Number number) return number.longValue();
+        if (value instanceof String str && !str.isBlank() && !"null".equals(str)) {
+            try {
+                return Long.parseLong(str);
+            } catch (NumberFormatException ignored) {}
+        }
+        return null;
+    }
+}
@@ -31,6 +31,23 @@ public final class ErrorMessages {
     public static final String UNSUPPORTED_TIMESTAMP_FORMAT =
             "Unsupported timestamp format: %s";
 
+    public static final String TRACKING_HISTORY_NOT_MIGRATED =
+            "Tracking history of shipment %s could not be moved to buckets, event not recorded";
 
-}
 
+    // ----------- Proof upload -----------
+    public static final String UPLOAD_NOT_FOUND =
+            "No upload in progress with id: %s (expired or handled by another instance)";
+
+    public static final String UPLOAD_CHUNK_OUT_OF_ORDER =
+            "Upload %s: expected chunk %d, got %d";
+
+    public static final String UPLOAD_CHUNK_CHECKSUM_MISMATCH =
+            "Upload %s: CRC32 mismatch on chunk %d";
+
+    public static final String UPLOAD_TOO_LARGE =
+            "Upload %s: file exceeds the maximum size of %d bytes";
+
+    public static final String UPLOAD_CONTENT_MISMATCH =
+            "Upload %s: received %d bytes (SHA-256 %s), client sent %d bytes (SHA-256 %s)";
+}
@@ -17,6 +17,24 @@ public final class ExceptionMapper {
             );
         }
 
+        if (ex instanceof ServiceOverloadedException) {
+            return new ErrorDescriptor(
+                    HttpStatus.SERVICE_UNAVAILABLE.value(),
+                    HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase(),
+                    ex.getMessage(),
+                    "SERVICE_OVERLOADED"
+            );
+        }
+
+        if (ex instanceof UploadRejectedException) {
+            return new ErrorDescriptor(
+                    HttpStatus.BAD_REQUEST.value(),
+                    HttpStatus.BAD_REQUEST.getReasonPhrase(),
+                    ex.getMessage(),
+                    "UPLOAD_REJECTED"
+            );
+        }
+
         return new ErrorDescriptor(
                 HttpStatus.INTERNAL_SERVER_ERROR.value(),
                 HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase(),
@@ -0,0 +1,14 @@
+package com.example.shippingService.exception;
+
+/**
+ * Exception raised when the worker pool of a NATS subject cannot accept more requests.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    private static final String DEFAULT_MESSAGE =
+            "Shipping-service is overloaded on subject: %s";
+
+    public ServiceOverloadedException(String subject) {
+        super(String.format(DEFAULT_MESSAGE, subject));
+    }
+}
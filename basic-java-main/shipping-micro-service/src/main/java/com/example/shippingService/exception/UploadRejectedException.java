@@ -0,0 +1,13 @@
+package com.example.shippingService.exception;
+
+/**
+ * Exception raised when a chunked proof upload cannot go on:
+ * unknown or expired session, chunk out of order, checksum or size mismatch.
+ * The upload is aborted; the client has to start over.
+ */
+public class UploadRejectedException extends RuntimeException {
+
+    public UploadRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.shippingService.images;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Image work on proofs, with the JDK ImageIO only.
+ * Re-encoded images lose their metadata, so the EXIF orientation of phone photos is applied to the pixels.
+ * Anything that is not a decodable JPEG/PNG, or too large to decode safely, is left untouched.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProofImageProcessor {
+
+    public static final String JPEG = "image/jpeg";
+    public static final String PNG = "image/png";
+    private static final Set<String> IMAGE_TYPES = Set.of(JPEG, "image/jpg", "image/pjpeg", PNG);
+
+    private final ProofImageProperties properties;
+
+    public record Image(byte[] content, String contentType) {}
+
+    public boolean isImage(String contentType) {
+        return properties.isEnabled() && contentType != null && IMAGE_TYPES.contains(contentType.toLowerCase());
+    }
+
+    /**
+     * Downscales an image larger than max-dimension. The original comes back when there is nothing to do,
+     * or when the re-encoded image would not be smaller.
+     */
+    public Image optimize(byte[] content, String contentType) {
+        Image original = new Image(content, contentType);
+        if (!isImage(contentType)) return original;
+        try {
+            boolean png = PNG.equalsIgnoreCase(contentType);
+            BufferedImage image = decode(content, properties.getMaxDimension(), !png, true);
+            if (image == null) return original;
+
+            byte[] encoded = png ? encodePng(image) : encodeJpeg(image, properties.getQuality());
+            if (encoded.length >= content.length) return original;
+
+            log.debug("Proof image re-encoded: {} -> {} bytes ({}x{})",
+                    content.length, encoded.length, image.getWidth(), image.getHeight());
+            return new Image(encoded, png ? PNG : JPEG);
+
+        } catch (IOException | RuntimeException e) {
+            log.warn("Proof image kept as is, could not process it: {}", e.getMessage());
+            return original;
+        }
+    }
+
+    /**
+     * @return a JPEG no larger than thumbnail-dimension, or null if the content is not a usable image
+     */
+    public byte[] thumbnail(byte[] content, String contentType) {
+        if (!isImage(contentType)) return null;
+        try {
+            BufferedImage image = decode(content, properties.getThumbnailDimension(), true, false);
+            return image != null ? encodeJpeg(image, properties.getThumbnailQuality()) : null;
+        } catch (IOException | RuntimeException e) {
+            log.warn("No thumbnail, could not process the image: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // ==== INTERNAL ====
+
+    /**
+     * Decodes, orients and scales down to maxDimension in one pass.
+     * @param onlyIfLarger return null for an image already within maxDimension (nothing to do)
+     * @return null as well if the content cannot be handled
+     */
+    private BufferedImage decode(byte[] content, int maxDimension, boolean opaque, boolean onlyIfLarger) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > properties.getMaxPixels()) {
+                    log.info("Proof image {}x{} over shipping.images.max-pixels, left as is", width, height);
+                    return null;
+                }
+                if (onlyIfLarger && Math.max(width, height) <= maxDimension) {
+                    return null;
+                }
+
+                int orientation = "jpeg".equalsIgnoreCase(reader.getFormatName())
+                        ? exifOrientation(reader.getImageMetadata(0))
+                        : 1;
+
+                // Let the decoder skip pixels: no need to hold the full resolution for a small target
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / (maxDimension * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                return render(reader.read(0, param), orientation, maxDimension, opaque);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage render(BufferedImage source, int orientation, int maxDimension, boolean opaque) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        boolean swap = orientation >= 5 && orientation <= 8;
+        int orientedWidth = swap ? h : w;
+        int orientedHeight = swap ? w : h;
+
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(orientedWidth, orientedHeight));
+        int targetWidth = Math.max(1, (int) Math.round(orientedWidth * scale));
+        int targetHeight = Math.max(1, (int) Math.round(orientedHeight * scale));
+
+        AffineTransform transform = AffineTransform.getScaleInstance(scale, scale);
+        transform.concatenate(orientationTransform(orientation, w, h));
+
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (opaque) {
+                // JPEG has no alpha: transparent areas become white, not black
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, targetWidth, targetHeight);
+            }
+            g.drawImage(source, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /** EXIF orientation 1..8 -> transform of the stored pixels (w x h) into the displayed image */
+    private static AffineTransform orientationTransform(int orientation, int w, int h) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);     // mirror horizontal
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);    // rotate 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);     // mirror vertical
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);      // transpose
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);     // rotate 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);    // transverse
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);     // rotate 270 clockwise
+            default -> new AffineTransform();
+        };
+    }
+
+    /**
+     * Orientation tag (0x0112) of the first IFD of the EXIF APP1 segment, 1 if there is none.
+     */
+    private static int exifOrientation(IIOMetadata metadata) {
+        try {
+            Element root = (Element) metadata.getAsTree("javax_imageio_jpeg_image_1.0");
+            NodeList markers = root.getElementsByTagName("unknown");
+            for (int i = 0; i < markers.getLength(); i++) {
+                IIOMetadataNode marker = (IIOMetadataNode) markers.item(i);
+                if ("225".equals(marker.getAttribute("MarkerTag")) && marker.getUserObject() instanceof byte[] app1) {
+                    int orientation = tiffOrientation(app1);
+                    if (orientation > 0) return orientation;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.debug("Unreadable EXIF: {}", e.getMessage());
+        }
+        return 1;
+    }
+
+    private static int tiffOrientation(byte[] app1) {
+        // "Exif\0\0" then a TIFF header
+        if (app1.length < 14 || app1[0] != 'E' || app1[1] != 'x' || app1[2] != 'i' || app1[3] != 'f') return 0;
+        ByteBuffer tiff = ByteBuffer.wrap(app1, 6, app1.length - 6).slice();
+        tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+        int ifd = tiff.getInt(4);
+        int entries = tiff.getShort(ifd) & 0xffff;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xffff) == 0x0112) {
+                int orientation = tiff.getShort(entry + 8) & 0xffff;
+                return orientation >= 1 && orientation <= 8 ? orientation : 0;
+            }
+        }
+        return 0;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.shippingService.images;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Processing of image proofs (see ProofImageProcessor): downscaling of oversized photos on upload,
+ * and a small thumbnail variant generated in the background.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "shipping.images")
+public class ProofImageProperties {
+
+    private boolean enabled = true;
+
+    /** Longest side of a stored image; larger ones are re-encoded */
+    private int maxDimension = 2048;
+
+    /** JPEG quality of re-encoded images, 0..1 */
+    private float quality = 0.85f;
+
+    /** Longest side of the thumbnail variant */
+    private int thumbnailDimension = 320;
+
+    private float thumbnailQuality = 0.75f;
+
+    /** Images with more pixels are left alone (decoding them would take width x height x 4 bytes) */
+    private long maxPixels = 50_000_000L;
+
+    /** Larger files are never read back for a thumbnail */
+    private DataSize maxSourceSize = DataSize.ofMegabytes(20);
+
+    /** Thumbnail pool: threads, and pending jobs before new ones are dropped */
+    private int threads = 2;
+    private int queueCapacity = 100;
+}
@@ -0,0 +1,154 @@
+package com.example.shippingService.images;
+
+import com.example.shippingService.entities.ProofContent;
+import com.example.shippingService.entities.StoredFile;
+import com.example.shippingService.services.ProofContentStore;
+import com.example.shippingService.storage.ProofStores;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thumbnail variant of image proofs, generated off the request path.
+ * A job reads the stored content back (nothing is held while it waits in the queue), stores the
+ * thumbnail as a reference-counted content of its own and attaches it to the StoredFile, only if that
+ * file is still the one the job was for. When the pool is full the job is dropped: the full image is
+ * served in place of the thumbnail.
+ */
+@Slf4j
+@Component
+public class ProofThumbnailer {
+
+    private final ProofImageProcessor processor;
+    private final ProofImageProperties properties;
+    private final ProofStores proofStores;
+    private final ProofContentStore proofContentStore;
+    private final MongoTemplate mongoTemplate;
+
+    private final ThreadPoolExecutor executor;
+    private final Counter created;
+    private final Counter reused;
+    private final Counter dropped;
+    private final Counter failed;
+
+    public ProofThumbnailer(ProofImageProcessor processor,
+                            ProofImageProperties properties,
+                            ProofStores proofStores,
+                            ProofContentStore proofContentStore,
+                            MongoTemplate mongoTemplate,
+                            MeterRegistry meterRegistry) {
+        this.processor = processor;
+        this.properties = properties;
+        this.proofStores = proofStores;
+        this.proofContentStore = proofContentStore;
+        this.mongoTemplate = mongoTemplate;
+
+        this.created = thumbnails(meterRegistry, "created");
+        this.reused = thumbnails(meterRegistry, "reused");
+        this.dropped = thumbnails(meterRegistry, "dropped");
+        this.failed = thumbnails(meterRegistry, "failed");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                properties.getThreads(), properties.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "proof-thumbnail-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (job, pool) -> {
+                    dropped.increment();
+                    log.debug("Thumbnail pool full, job dropped");
+                }
+        );
+    }
+
+    /**
+     * Queues the thumbnail of a newly stored proof, if it is an image.
+     */
+    public void schedule(StoredFile file) {
+        if (!processor.isImage(file.getContentType()) || file.getStorageId() == null
+                || file.getSize() == null || file.getSize() > properties.getMaxSourceSize().toBytes()) {
+            return;
+        }
+        executor.execute(() -> generate(file));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ==== INTERNAL ====
+
+    void generate(StoredFile file) {
+        try {
+            ProofContent thumbnail = existingThumbnail(file);
+            if (thumbnail != null) {
+                reused.increment();
+            } else {
+                byte[] image = processor.thumbnail(read(file.getStorageId()), file.getContentType());
+                if (image == null) return;
+                thumbnail = proofContentStore.store(image, file.getShipmentId() + "_" + file.getType() + "_thumb",
+                        Map.of("shipmentId", file.getShipmentId(), "type", file.getType(), "variant", "thumb"));
+                created.increment();
+            }
+
+            boolean attached = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(file.getId()).and("storageId").is(file.getStorageId())),
+                    new Update()
+                            .set("thumbnailStorageId", thumbnail.getStorageId())
+                            .set("thumbnailHash", thumbnail.getSha256())
+                            .set("thumbnailSize", thumbnail.getSize()),
+                    StoredFile.class
+            ).getModifiedCount() > 0;
+
+            if (!attached) {
+                // replaced or deleted meanwhile
+                proofContentStore.release(thumbnail.getSha256());
+            }
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Thumbnail of {} ({}) failed: {}", file.getShipmentId(), file.getType(), e.getMessage());
+        }
+    }
+
+    /**
+     * Same content already uploaded for another shipment: its thumbnail is shared, not computed again.
+     */
+    private ProofContent existingThumbnail(StoredFile file) {
+        if (file.getContentHash() == null) return null;
+        StoredFile sibling = mongoTemplate.findOne(
+                Query.query(Criteria.where("contentHash").is(file.getContentHash()).and("thumbnailHash").ne(null)),
+                StoredFile.class
+        );
+        return sibling != null ? proofContentStore.retain(sibling.getThumbnailHash()) : null;
+    }
+
+    private byte[] read(String storageId) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        proofStores.forId(storageId).transferTo(storageId, 0, Long.MAX_VALUE, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static Counter thumbnails(MeterRegistry registry, String result) {
+        return Counter.builder("shipping.proof.thumbnails")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.shippingService.listener;
+
+import com.example.shippingService.config.ServiceInstance;
+import com.example.shippingService.dtos.ProofUploadBeginRequest;
+import com.example.shippingService.dtos.ProofUploadSession;
+import com.example.shippingService.services.ProofUploadService;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NATS side of the chunked proof upload.
+ * <pre>
+ *   shipping.file.upload.begin  (queue group)  -> {uploadId, subject, chunkSize, window}
+ *   &lt;subject&gt;  chunk: raw bytes + Upload-Seq / Upload-Crc32     -> empty reply with Upload-Ack
+ *   &lt;subject&gt;  commit: Upload-Commit + Upload-Size / Upload-Sha256 -> NatsReply with the stored file
+ *   &lt;subject&gt;  abort: Upload-Abort                                -> no reply
+ * </pre>
+ * The session subject is subscribed without queue group by the instance that accepted the upload,
+ * on a dispatcher of its own: chunks are written in order, and a slow GridFS write only holds back
+ * this upload. The client keeps at most {@code window} chunks without ack in flight.
+ * Any error is replied as the usual error envelope (no Upload-Ack header) and ends the upload.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChunkedUploadHandler {
+
+    public static final String SUBJECT_BEGIN = "shipping.file.upload.begin";
+    public static final String SESSION_SUBJECT_PREFIX = "shipping.file.upload.session.";
+
+    public static final String HEADER_SEQ = "Upload-Seq";
+    public static final String HEADER_CRC32 = "Upload-Crc32";
+    public static final String HEADER_COMMIT = "Upload-Commit";
+    public static final String HEADER_ABORT = "Upload-Abort";
+    public static final String HEADER_SIZE = "Upload-Size";
+    public static final String HEADER_SHA256 = "Upload-Sha256";
+    public static final String HEADER_ACK = "Upload-Ack";
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Connection natsConnection;
+    private final ProofUploadService uploadService;
+    private final NatsCodec codec;
+    private final ServiceInstance serviceInstance;
+
+    @Value("${shipping.upload.idle-timeout:30s}")
+    private Duration idleTimeout;
+
+    private final Map<String, Dispatcher> sessions = new ConcurrentHashMap<>();
+
+    /** Idle sweep, and closing of the session dispatchers (never from their own thread) */
+    private final ScheduledExecutorService housekeeping = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "upload-housekeeping");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void init() {
+        long period = Math.max(1, idleTimeout.toSeconds() / 2);
+        housekeeping.scheduleAtFixedRate(this::closeIdleSessions, period, period, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        housekeeping.shutdownNow();
+        sessions.keySet().forEach(uploadId -> uploadService.abort(uploadId, "instance shutting down"));
+        sessions.values().forEach(natsConnection::closeDispatcher);
+        sessions.clear();
+    }
+
+    /**
+     * shipping.file.upload.begin: opens the upload and starts listening on its own subject.
+     */
+    public NatsReply<ProofUploadSession> begin(Message msg) {
+        ProofUploadBeginRequest request = codec.decode(msg, ProofUploadBeginRequest.class,
+                "Invalid payload for " + SUBJECT_BEGIN + ": %s");
+        String uploadId = uploadService.begin(request).getUploadId();
+        String subject = SESSION_SUBJECT_PREFIX + uploadId;
+
+        Dispatcher dispatcher = natsConnection.createDispatcher(chunk -> onSessionMessage(uploadId, chunk));
+        dispatcher.subscribe(subject);
+        sessions.put(uploadId, dispatcher);
+
+        int chunkSize = (int) Math.min(uploadService.getChunkSize(), natsConnection.getMaxPayload() - 1024);
+        return NatsReply.success("Upload started",
+                new ProofUploadSession(uploadId, subject, chunkSize, uploadService.getWindow()));
+    }
+
+    // ==== INTERNAL ====
+
+    private void onSessionMessage(String uploadId, Message msg) {
+        Headers headers = msg.getHeaders();
+        try {
+            if (headers != null && headers.containsKey(HEADER_ABORT)) {
+                uploadService.abort(uploadId, "aborted by the client");
+                closeSession(uploadId);
+                return;
+            }
+
+            if (headers != null && headers.containsKey(HEADER_COMMIT)) {
+                Map<String, Object> stored = uploadService.commit(
+                        uploadId,
+                        Long.parseLong(headers.getFirst(HEADER_SIZE)),
+                        headers.getFirst(HEADER_SHA256)
+                );
+                closeSession(uploadId);
+                reply(msg, NatsReply.success("File stored successfully", stored));
+                return;
+            }
+
+            long seq = Long.parseLong(required(headers, HEADER_SEQ));
+            uploadService.write(uploadId, seq, Long.parseLong(required(headers, HEADER_CRC32)), msg.getData());
+            if (msg.getReplyTo() != null) {
+                natsConnection.publish(msg.getReplyTo(), new Headers().put(HEADER_ACK, String.valueOf(seq)), EMPTY);
+            }
+
+        } catch (Exception e) {
+            uploadService.abort(uploadId, e.getMessage());
+            closeSession(uploadId);
+            reply(msg, NatsErrorResponseFactory.build(e));
+        }
+    }
+
+    private static String required(Headers headers, String name) {
+        String value = headers != null ? headers.getFirst(name) : null;
+        if (value == null) {
+            throw new IllegalArgumentException("Upload chunk without " + name + " header");
+        }
+        return value;
+    }
+
+    private void reply(Message msg, NatsReply<?> reply) {
+        if (msg.getReplyTo() == null) return;
+        try {
+            reply.setInstanceId(serviceInstance.getId());
+            natsConnection.publish(msg.getReplyTo(), codec.encode(reply));
+        } catch (Exception e) {
+            log.warn("Could not reply on upload session: {}", e.getMessage());
+        }
+    }
+
+    private void closeSession(String uploadId) {
+        Dispatcher dispatcher = sessions.remove(uploadId);
+        if (dispatcher != null) {
+            housekeeping.execute(() -> natsConnection.closeDispatcher(dispatcher));
+        }
+    }
+
+    private void closeIdleSessions() {
+        try {
+            uploadService.abortIdle(idleTimeout).forEach(this::closeSession);
+        } catch (Exception e) {
+            log.warn("Upload idle sweep failed: {}", e.getMessage());
+        }
+    }
+}
@@ -4,25 +4,13 @@ import com.example.shippingService.exception.ErrorDescriptor;
 import com.example.shippingService.exception.ExceptionMapper;
 import lombok.experimental.UtilityClass;
 
-import java.util.HashMap;
-import java.util.Map;
-
 @UtilityClass
 public class NatsErrorResponseFactory {
 
-    public static Map<String, Object> build(Exception ex) {
+    public static NatsReply<Void> build(Exception ex) {
 
         ErrorDescriptor err = ExceptionMapper.map(ex);
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", false);
-        response.put("status", "error");
-        response.put("source", "Shipping-service");
-        response.put("message", err.message());
-        response.put("code", err.code());
-        response.put("data", null);
-
-        return response;
+        return NatsReply.error(err.message(), err.code());
     }
 }
-
@@ -0,0 +1,56 @@
+package com.example.shippingService.listener;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reply envelope published on every shipping.* subject.
+ * Same JSON shape the listener used to build by hand in a HashMap.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({"success", "status", "source", "message", "code", "data", "instanceId"})
+public class NatsReply<T> {
+
+    public static final String SOURCE = "Shipping-service";
+
+    private boolean success;
+    private String status;
+    private String source;
+    private String message;
+
+    /** Only set on errors (see ExceptionMapper) */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String code;
+
+    private T data;
+
+    /** Replica of the queue group that produced this reply */
+    private String instanceId;
+
+    public static <T> NatsReply<T> success(String message, T data) {
+        return NatsReply.<T>builder()
+                .success(true)
+                .status("success")
+                .source(SOURCE)
+                .message(message)
+                .data(data)
+                .build();
+    }
+
+    public static <T> NatsReply<T> error(String message, String code) {
+        return NatsReply.<T>builder()
+                .success(false)
+                .status("error")
+                .source(SOURCE)
+                .message(message)
+                .code(code)
+                .build();
+    }
+}
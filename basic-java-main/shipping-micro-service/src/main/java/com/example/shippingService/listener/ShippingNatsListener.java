@@ -1,284 +1,410 @@
 package com.example.shippingService.listener;
 
+import com.example.shippingService.config.ServiceInstance;
 import com.example.shippingService.dtos.*;
-import com.example.shippingService.entities.Shipment;
 import com.example.shippingService.exception.ErrorMessages;
+import com.example.shippingService.exception.ServiceOverloadedException;
 import com.example.shippingService.mappers.ShipmentMapper; // <-- ajout
 import com.example.shippingService.services.FileStorageService;
 import com.example.shippingService.services.ShipmentService;
 import com.example.shippingService.services.TrackingService;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+import io.nats.client.impl.Headers;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class ShippingNatsListener {
 
+    /* Headers of a streamed reply (shipping.getAll with stream=true) */
+    public static final String HEADER_CHUNK_SEQ = "Shipping-Chunk-Seq";
+    public static final String HEADER_CHUNK_LAST = "Shipping-Chunk-Last";
+    public static final String HEADER_INSTANCE_ID = "Shipping-Instance-Id";
+
+    /* Headers of every reply: outcome readable without parsing the body */
+    public static final String HEADER_STATUS = "Shipping-Status";
+    public static final String HEADER_CODE = "Shipping-Code";
+    public static final String HEADER_ETAG = "Shipping-ETag";
+
+    /* Request header: "data" = on success, the body is the data alone, not the envelope */
+    public static final String HEADER_REPLY = "Shipping-Reply";
+    public static final String REPLY_DATA = "data";
+
+    /* Header of a shipping.file.read reply: raw bytes of the content from that offset */
+    public static final String HEADER_PROOF_OFFSET = "Proof-Offset";
+    private static final int CHUNK_HEADERS_RESERVE = 256;
+    private static final byte[] EMPTY_ARRAY = "[]".getBytes(StandardCharsets.UTF_8);
+
     private final Connection natsConnection;
     private final ShipmentService shipmentService;
     private final TrackingService trackingService;
     private final FileStorageService fileStorageService;
-    private final ObjectMapper objectMapper;
+    private final NatsCodec codec;
     private final ShipmentMapper shipmentMapper;
+    private final SubjectExecutorRegistry subjectExecutors;
+    private final ServiceInstance serviceInstance;
+    private final ChunkedUploadHandler chunkedUploadHandler;
 
+    @Value("${nats.spring.queue-group:shipping-service}")
+    private String queueGroup;
 
-    private Map<String, Object> responseToMap(ShipmentResponse shipment) {
-        return objectMapper.convertValue(shipment, Map.class);
-    }
+    @Value("${nats.spring.drain-timeout:10000}")
+    private long drainTimeout;
+
+    private Dispatcher dispatcher;
 
     @PostConstruct
     public void init() {
 
-                Dispatcher dispatcher = natsConnection.createDispatcher(msg -> {
-            try {
-                String subject = msg.getSubject();
-                String requestJson = new String(msg.getData(), StandardCharsets.UTF_8);
-                log.info("Received NATS message on '{}': {}", subject, requestJson);
+        // The dispatcher thread only routes: each subject runs on the pool of its group
+        dispatcher = natsConnection.createDispatcher(msg ->
+                subjectExecutors.execute(
+                        msg.getSubject(),
+                        () -> handle(msg),
+                        () -> replyError(msg, new ServiceOverloadedException(msg.getSubject()))
+                )
+        );
+
+        subscribe("shipping.create");
+        subscribe("shipping.getAll");
+        subscribe("shipping.getByShipmentId");
+        subscribe("shipping.update");
+        subscribe("shipping.delete");
+        subscribe("shipping.tracking.get");
+        subscribe("shipping.tracking.add");
+        subscribe("shipping.version");
+        subscribe("shipping.file.upload");
+        subscribe(ChunkedUploadHandler.SUBJECT_BEGIN);
+        subscribe("shipping.file.get");
+        subscribe("shipping.file.head");
+        subscribe("shipping.file.list");
+        subscribe("shipping.file.read");
+
+        log.info("NATS listeners initialized (instance={}, queueGroup={})",
+                serviceInstance.getId(), queueGroup.isBlank() ? "<none>" : queueGroup);
+     }
+
+    /**
+     * With a queue group, N replicas share the subjects: each request is delivered to one replica only.
+     */
+    private void subscribe(String subject) {
+        if (queueGroup.isBlank()) {
+            dispatcher.subscribe(subject);
+        } else {
+            dispatcher.subscribe(subject, queueGroup);
+        }
+    }
 
-                Map<String, Object> responseMap = new HashMap<>();
+    /**
+     * Stop receiving, let the dispatcher hand over what it already has, then let the workers finish
+     * before the NATS connection is closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (dispatcher == null) return;
+        try {
+            dispatcher.drain(Duration.ofMillis(drainTimeout)).get(drainTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("NATS dispatcher drain did not complete cleanly: {}", e.getMessage());
+        }
+        subjectExecutors.shutdown();
+        log.info("NATS listeners drained (instance={})", serviceInstance.getId());
+    }
 
-                switch (subject) {
+    private void handle(Message msg) {
+        try {
+            String subject = msg.getSubject();
+            log.info("Received NATS message on '{}' ({} bytes)", subject, msg.getData().length);
+            if (log.isDebugEnabled()) {
+                log.debug("Payload on '{}': {}", subject, new String(msg.getData(), StandardCharsets.UTF_8));
+            }
 
-                    case "shipping.create" -> {
-                        Map<String, Object> requestMap = objectMapper.readValue(msg.getData(), Map.class);
-                        ShipmentRequest shipmentRequest = objectMapper.convertValue(requestMap, ShipmentRequest.class);
-                        shipmentRequest.validate();
+            NatsReply<?> reply = switch (subject) {
 
-                        ShipmentResponse shipment = shipmentService.createShipment(shipmentRequest);
-                        responseMap.put("success", true);
-                        responseMap.put("status", "success");
-                        responseMap.put("source", "Shipping-service");
-                        responseMap.put("message", "Shipment successfully created");
-                        responseMap.put("data", responseToMap(shipment));
-                    }
+                case "shipping.create" -> {
+                    ShipmentRequest shipmentRequest = codec.decode(msg, ShipmentRequest.class);
+                    shipmentRequest.validate();
 
-                    case "shipping.getAll" -> {
-                        List<ShipmentResponse> shipments =
-                                shipmentService.getAllShipments();
+                    ShipmentResponse shipment = shipmentService.createShipment(shipmentRequest);
+                    yield NatsReply.success("Shipment successfully created", shipment);
+                }
 
-                        List<Map<String, Object>> shipmentsData = shipments.stream()
-                                .map(this::responseToMap)
-                                .toList();
+                case "shipping.getAll" -> {
+                    ShipmentPageRequest request = codec.decode(msg, ShipmentPageRequest.class);
 
-                        responseMap.put("success", true);
-                        responseMap.put("status", "success");
-                        responseMap.put("source", "Shipping-service");
-                        responseMap.put("message", "All shipments retrieved successfully");
-                        responseMap.put("data", shipmentsData);
+                    if (request.isStream()) {
+                        streamShipments(msg);
+                        yield null; // chunks already published
                     }
 
-                    case "shipping.getByShipmentId" -> {
-                        Map<String, Object> request = objectMapper.readValue(requestJson, Map.class);
+                    ShipmentPage page = shipmentService.getShipmentsPage(request.getCursor(), request.getLimit());
+                    yield NatsReply.success("Shipments page retrieved successfully", page);
+                }
+
+                case "shipping.getByShipmentId" -> {
+                    ShipmentIdRequest request = codec.decode(
+                            msg, ShipmentIdRequest.class, ErrorMessages.INVALID_GET_BY_ID_PAYLOAD);
+
+                    if (request.getShipmentId() == null) {
+                        throw new IllegalArgumentException(
+                                String.format(
+                                        ErrorMessages.MISSING_SHIPMENT_ID_IN_PAYLOAD,
+                                        new String(msg.getData(), StandardCharsets.UTF_8)
+                                )
+                        );
+                    }
 
-                        Object dataObj = request.get("data");
-                        if (dataObj == null) {
-                            dataObj = request;
-                        }
+                    ShipmentResponse shipment =
+                            shipmentService.getByShipmentId(request.getShipmentId());
 
-                        if (!(dataObj instanceof Map)) {
-                            throw new IllegalArgumentException(
-                                    String.format(
-                                            ErrorMessages.INVALID_GET_BY_ID_PAYLOAD,
-                                            request
-                                    )
-                            );
-                        }
+                    yield NatsReply.success(null, shipment);
+                }
 
-                        Object shipmentIdObj =
-                                ((Map<String, Object>) dataObj).get("shipmentId");
+                case "shipping.update" -> {
+                    ShipmentRequest shipmentRequest = codec.decode(msg, ShipmentRequest.class);
+                    ShipmentResponse updated = shipmentService.updateShipment(shipmentRequest);
+                    yield NatsReply.success("Shipment successfully updated", updated);
+                }
 
-                        if (shipmentIdObj == null) {
-                            throw new IllegalArgumentException(
-                                    String.format(
-                                            ErrorMessages.MISSING_SHIPMENT_ID_IN_PAYLOAD,
-                                            request
-                                    )
-                            );
-                        }
+                case "shipping.delete" -> {
+                    ShipmentIdRequest request = codec.decode(msg, ShipmentIdRequest.class);
+                    if (request.getShipmentId() == null) {
+                        throw new IllegalArgumentException(
+                                ErrorMessages.INVALID_SHIPMENT_ID
+                        );
+                    }
 
-                        String shipmentId = shipmentIdObj.toString();
+                    String shipmentId = request.getShipmentId();
 
-                        ShipmentResponse shipment =
-                                shipmentService.getByShipmentId(shipmentId);
+                    shipmentService.deleteShipment(shipmentId);
+                    yield NatsReply.success("Shipment deleted successfully (ID: " + shipmentId + ")", null);
+                }
 
-                        responseMap.put("success", true);
-                        responseMap.put("status", "success");
-                        responseMap.put("source", "Shipping-service");
-                        responseMap.put("data", responseToMap(shipment));
+                case "shipping.tracking.get" -> {
+                    TrackingNumberRequest request = codec.decode(msg, TrackingNumberRequest.class);
+                    if (request.getTrackingNumber() == null) {
+                        throw new IllegalArgumentException("trackingNumber is missing in NATS message");
                     }
+                    TrackingResponse tr = request.getBucket() == null
+                            ? trackingService.getTrackingInfoByTrackingNumber(request.getTrackingNumber())
+                            : trackingService.getTrackingBucket(request.getTrackingNumber(), request.getBucket());
+                    yield NatsReply.success("Tracking info retrieved successfully", tr);
+                }
 
-                    case "shipping.update" -> {
-                        ShipmentRequest shipmentRequest = objectMapper.readValue(requestJson, ShipmentRequest.class);
-                        ShipmentResponse updated = shipmentService.updateShipment(shipmentRequest);
-                        responseMap.put("success", true);
-                        responseMap.put("status", "success");
-                        responseMap.put("source", "Shipping-service");
-                        responseMap.put("message", "Shipment successfully updated");
-                        responseMap.put("data", responseToMap(updated));
+                case "shipping.version" -> {
+                    ShipmentVersionRequest request = codec.decode(msg, ShipmentVersionRequest.class);
+                    if (request.getShipmentId() == null && request.getTrackingNumber() == null) {
+                        throw new IllegalArgumentException("shipmentId or trackingNumber is missing in NATS message");
                     }
+                    // same cached views as getByShipmentId / tracking.get, without their payload
+                    String etag = request.getShipmentId() != null
+                            ? shipmentService.getByShipmentId(request.getShipmentId()).getEtag()
+                            : trackingService.getTrackingInfoByTrackingNumber(request.getTrackingNumber()).getEtag();
+
+                    Map<String, Object> version = new HashMap<>();
+                    version.put("etag", etag);
+                    yield NatsReply.success(null, version);
+                }
+
+                case "shipping.tracking.add" -> {
 
-                    case "shipping.delete" -> {
-                        Map<String, Object> requestMap =
-                                objectMapper.readValue(requestJson, Map.class);
-                        Object shipmentIdObj = requestMap.get("shipmentId");
-                        if (shipmentIdObj == null) {
-                            throw new IllegalArgumentException(
-                                    ErrorMessages.INVALID_SHIPMENT_ID
+                    /* =========================
+                       Decode (flat or wrapped in "data", lenient userId)
+                       ========================= */
+                    AddTrackingStatusRequest addReq = codec.decode(
+                            msg, AddTrackingStatusRequest.class, ErrorMessages.INVALID_TRACKING_ADD_PAYLOAD);
+
+                    Long userId = addReq.getUserId();
+
+                    /* =========================
+                       service call
+                       ========================= */
+                    TrackingResponse tr =
+                            trackingService.addTrackingStatusByTrackingNumber(
+                                    addReq.getTrackingNumber(),
+                                    addReq,
+                                    userId != null ? userId.toString() : null
                             );
-                        }
 
-                        String shipmentId = shipmentIdObj.toString();
+                    yield NatsReply.success("Tracking status added successfully", tr);
+                }
+
+                case "shipping.file.upload" -> {
+                    ProofUploadRequest req = codec.decode(msg, ProofUploadRequest.class);
+                    Map<String, Object> saved = fileStorageService.storeFile(req);
 
-                        shipmentService.deleteShipment(shipmentId);
-                        responseMap.put("success", true);
-                        responseMap.put("status", "success");
-                        responseMap.put("source", "Shipping-service");
-                        responseMap.put("message", "Shipment deleted successfully (ID: " + shipmentId + ")");
-                        responseMap.put("data", null);
-                    }
+                    yield NatsReply.success("File stored successfully", saved);
+                }
 
-                    case "shipping.tracking.get" -> {
-                        Map<String, Object> requestMap = objectMapper.readValue(requestJson, Map.class);
-                        String trackingNumber = requestMap.get("trackingNumber") != null
-                                ? requestMap.get("trackingNumber").toString()
-                                : ((Map<String, Object>) requestMap.get("data")).get("trackingNumber").toString();
-                        TrackingResponse tr = trackingService.getTrackingInfoByTrackingNumber(trackingNumber);
-                        responseMap.put("success", true);
-                        responseMap.put("status", "success");
-                        responseMap.put("source", "Shipping-service");
-                        responseMap.put("message", "Tracking info retrieved successfully");
-                        responseMap.put("data", tr);
-                    }
+                case ChunkedUploadHandler.SUBJECT_BEGIN -> chunkedUploadHandler.begin(msg);
 
-                    case "shipping.tracking.add" -> {
-
-                        Map<String, Object> request =
-                                objectMapper.readValue(requestJson, Map.class);
-
-                        /* =========================
-                           Extract userId
-                           ========================= */
-                        Long userId = null;
-                        Object userIdObj = request.get("userId");
-
-                        if (userIdObj != null) {
-                            String userIdStr = userIdObj.toString();
-                            if (!userIdStr.isBlank() && !"null".equalsIgnoreCase(userIdStr)) {
-                                try {
-                                    userId = Long.parseLong(userIdStr);
-                                } catch (NumberFormatException e) {
-                                    log.warn("Invalid userId received in tracking.add: {}", userIdStr);
-                                }
-                            }
-                        }
-
-                        /* =========================
-                           Extract data
-                           ========================= */
-                        Object dataObj = request.get("data");
-
-                        if (dataObj == null) {
-                            // fallback : payload plat
-                            dataObj = request;
-                        }
-
-                        if (!(dataObj instanceof Map)) {
-                            throw new IllegalArgumentException(
-                                    String.format(
-                                            ErrorMessages.INVALID_TRACKING_ADD_PAYLOAD,
-                                            request
-                                    )
-                            );
-                        }
-
-                        AddTrackingStatusRequest addReq =
-                                objectMapper.convertValue(dataObj, AddTrackingStatusRequest.class);
-
-                        addReq.setUserId(userId);
-
-                        /* =========================
-                           service call
-                           ========================= */
-                        TrackingResponse tr =
-                                trackingService.addTrackingStatusByTrackingNumber(
-                                        addReq.getTrackingNumber(),
-                                        addReq,
-                                        userId != null ? userId.toString() : null
-                                );
-
-                        /* =========================
-                           Response
-                           ========================= */
-                        responseMap.put("success", true);
-                        responseMap.put("status", "success");
-                        responseMap.put("source", "Shipping-service");
-                        responseMap.put("message", "Tracking status added successfully");
-                        responseMap.put("data", tr);
-                    }
+                case "shipping.file.get" -> {
+                    ProofLookupRequest req = codec.decode(msg, ProofLookupRequest.class);
+                    Map<String, Object> fileData = fileStorageService.getProof(req.getShipmentId(), req.getType(), req.getVariant());
 
-                    case "shipping.file.upload" -> {
-                        Map<String, Object> body = objectMapper.readValue(requestJson, Map.class);
-                        ProofUploadRequest req = objectMapper.convertValue(body, ProofUploadRequest.class);
-                        Map<String, Object> saved = fileStorageService.storeFile(req);
+                    yield fileData != null
+                            ? NatsReply.success("File retrieved successfully", fileData)
+                            : NatsReply.builder()
+                                    .success(false)
+                                    .status("error")
+                                    .source(NatsReply.SOURCE)
+                                    .message("No file found for shipment: " + req.getShipmentId())
+                                    .build();
+                }
 
-                        responseMap.put("success", true);
-                        responseMap.put("status", "success");
-                        responseMap.put("source", "Shipping-service");
-                        responseMap.put("message", "File stored successfully");
-                        responseMap.put("data", saved);
-                    }
+                case "shipping.file.head" -> {
+                    ProofLookupRequest req = codec.decode(msg, ProofLookupRequest.class);
+                    Map<String, Object> info = fileStorageService.getProofInfo(req.getShipmentId(), req.getType(), req.getVariant());
+
+                    yield info != null
+                            ? NatsReply.success("File found", info)
+                            : NatsReply.builder()
+                                    .success(false)
+                                    .status("error")
+                                    .source(NatsReply.SOURCE)
+                                    .message("No file found for shipment: " + req.getShipmentId())
+                                    .build();
+                }
 
-                    case "shipping.file.get" -> {
-                        Map<String, Object> body = objectMapper.readValue(requestJson, Map.class);
-                        String shipmentId = body.get("shipmentId").toString();
-                        String type = body.get("type").toString();
-                        Map<String, Object> fileData = fileStorageService.getProof(shipmentId, type);
-
-                        responseMap.put("success", fileData != null);
-                        responseMap.put("status", fileData != null ? "success" : "error");
-                        responseMap.put("source", "Shipping-service");
-                        responseMap.put("message", fileData != null ? "File retrieved successfully" : "No file found for shipment: " + shipmentId);
-                        responseMap.put("data", fileData);
+                case "shipping.file.list" -> {
+                    ProofListRequest req = codec.decode(msg, ProofListRequest.class);
+                    List<String> shipmentIds = req.allShipmentIds();
+                    if (shipmentIds.isEmpty()) {
+                        throw new IllegalArgumentException("shipmentId or shipmentIds is required in NATS message");
                     }
+                    yield NatsReply.success("Files listed successfully", fileStorageService.listProofs(shipmentIds));
                 }
 
-                String responseJson = objectMapper.writeValueAsString(responseMap);
-                natsConnection.publish(msg.getReplyTo(), responseJson.getBytes(StandardCharsets.UTF_8));
+                case "shipping.file.read" -> {
+                    ProofReadRequest req = codec.decode(msg, ProofReadRequest.class);
+                    // a slice always fits in one message
+                    req.setLength((int) Math.min(req.getLength(), natsConnection.getMaxPayload() - CHUNK_HEADERS_RESERVE));
+                    byte[] slice = fileStorageService.readProof(req);
+
+                    Headers headers = new Headers()
+                            .put(HEADER_PROOF_OFFSET, String.valueOf(req.getOffset()))
+                            .put(HEADER_INSTANCE_ID, serviceInstance.getId());
+                    natsConnection.publish(msg.getReplyTo(), headers, slice);
+                    yield null; // raw bytes already published
+                }
 
-            } catch (Exception e) {
-                try {
-                    Map<String, Object> errorResponse =
-                            NatsErrorResponseFactory.build(e);
+                default -> throw new IllegalArgumentException("Unsupported subject: " + subject);
+            };
 
-                    String errorJson = objectMapper.writeValueAsString(errorResponse);
-                    natsConnection.publish(
-                            msg.getReplyTo(),
-                            errorJson.getBytes(StandardCharsets.UTF_8)
-                    );
-                } catch (Exception ignored) {}
+            if (reply != null) {
+                publish(msg, reply);
             }
-      });
-
-        dispatcher.subscribe("shipping.create");
-        dispatcher.subscribe("shipping.getAll");
-        dispatcher.subscribe("shipping.getByShipmentId");
-        dispatcher.subscribe("shipping.update");
-        dispatcher.subscribe("shipping.delete");
-        dispatcher.subscribe("shipping.tracking.get");
-        dispatcher.subscribe("shipping.tracking.add");
-        dispatcher.subscribe("shipping.file.upload");
-        dispatcher.subscribe("shipping.file.get");
 
-     }
+        } catch (Exception e) {
+            replyError(msg, e);
+        }
+    }
+
+    /**
+     * Streamed getAll: every page is published to the reply inbox as a raw JSON array,
+     * split further if needed so that no chunk goes over the server max payload.
+     * The requester reads until it gets the chunk flagged as last.
+     * If anything fails, the usual error envelope (no chunk headers) ends the stream.
+     */
+    private void streamShipments(Message msg) {
+        long maxPayload = natsConnection.getMaxPayload();
+        AtomicInteger seq = new AtomicInteger();
+        List<ShipmentResponse> pending = new ArrayList<>();
+
+        shipmentService.streamAllShipments(page -> {
+            // Hold one page back so that the last chunk can be flagged
+            if (!pending.isEmpty()) {
+                publishChunks(msg, pending, seq, maxPayload, false);
+            }
+            pending.clear();
+            pending.addAll(page);
+        });
+        publishChunks(msg, pending, seq, maxPayload, true);
+    }
+
+    private void publishChunks(Message msg, List<ShipmentResponse> items, AtomicInteger seq,
+                               long maxPayload, boolean last) {
+        try {
+            byte[] body = codec.encodeValue(items);
+            if (body.length > maxPayload - CHUNK_HEADERS_RESERVE && items.size() > 1) {
+                int half = items.size() / 2;
+                publishChunks(msg, items.subList(0, half), seq, maxPayload, false);
+                publishChunks(msg, items.subList(half, items.size()), seq, maxPayload, last);
+                return;
+            }
+            if (body.length > maxPayload - CHUNK_HEADERS_RESERVE) {
+                // one shipment alone over the limit: left out, the chunk keeps its seq (and last flag)
+                log.warn("Shipment {} ({} bytes) left out of the stream: over the NATS max payload",
+                        items.get(0).getShipmentId(), body.length);
+                body = EMPTY_ARRAY;
+            }
+
+            Headers headers = new Headers()
+                    .put(HEADER_CHUNK_SEQ, String.valueOf(seq.getAndIncrement()))
+                    .put(HEADER_CHUNK_LAST, String.valueOf(last))
+                    .put(HEADER_INSTANCE_ID, serviceInstance.getId());
+            natsConnection.publish(msg.getReplyTo(), headers, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void replyError(Message msg, Exception e) {
+        try {
+            publish(msg, NatsErrorResponseFactory.build(e));
+        } catch (Exception ignored) {}
+    }
+
+    private void publish(Message msg, NatsReply<?> reply) throws IOException {
+        reply.setInstanceId(serviceInstance.getId());
+
+        Headers headers = new Headers()
+                .put(HEADER_STATUS, reply.getStatus())
+                .put(HEADER_INSTANCE_ID, serviceInstance.getId());
+        if (reply.getCode() != null) {
+            headers.put(HEADER_CODE, reply.getCode());
+        }
+        String etag = etagOf(reply.getData());
+        if (etag != null) {
+            headers.put(HEADER_ETAG, etag);
+        }
+
+        // the gateway copies these bytes to its HTTP response as they are
+        if (reply.isSuccess() && wantsDataOnly(msg)) {
+            natsConnection.publish(msg.getReplyTo(), headers, codec.encodeValue(reply.getData()));
+        } else {
+            natsConnection.publish(msg.getReplyTo(), headers, codec.encode(reply));
+        }
+    }
+
+    private static String etagOf(Object data) {
+        if (data instanceof ShipmentResponse shipment) return shipment.getEtag();
+        if (data instanceof TrackingResponse tracking) return tracking.getEtag();
+        return null;
+    }
+
+    private static boolean wantsDataOnly(Message msg) {
+        return msg.hasHeaders() && REPLY_DATA.equals(msg.getHeaders().getFirst(HEADER_REPLY));
+    }
 }
@@ -0,0 +1,231 @@
+package com.example.shippingService.listener;
+
+import com.example.shippingService.config.NatsExecutorProperties;
+import com.example.shippingService.config.NatsExecutorProperties.RejectionPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution layer for NATS handlers.
+ * The dispatcher thread only routes messages; the work runs on a bounded pool per subject group,
+ * so a slow subject (file upload, getAll) no longer blocks the cheap ones queued behind it.
+ */
+@Slf4j
+@Component
+public class SubjectExecutorRegistry {
+
+    /* RETRY policy: attempts to queue again, the delay doubles from RETRY_DELAY_MILLIS */
+    private static final int RETRY_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 5;
+
+    private final NatsExecutorProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, ThreadPoolExecutor> executorsByGroup = new LinkedHashMap<>();
+    private final Map<String, String> groupBySubject = new HashMap<>();
+    private final Map<String, SubjectMetrics> metricsBySubject = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "nats-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SubjectExecutorRegistry(NatsExecutorProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        NatsExecutorProperties.Pool defaults = properties.getDefaults();
+        executorsByGroup.put(
+                NatsExecutorProperties.DEFAULT_GROUP,
+                createExecutor(NatsExecutorProperties.DEFAULT_GROUP,
+                        defaults.getConcurrency(), defaults.getQueueCapacity(), defaults.getRejectionPolicy())
+        );
+
+        properties.getGroups().forEach((name, group) -> {
+            executorsByGroup.put(name, createExecutor(
+                    name,
+                    group.getConcurrency() != null ? group.getConcurrency() : defaults.getConcurrency(),
+                    group.getQueueCapacity() != null ? group.getQueueCapacity() : defaults.getQueueCapacity(),
+                    group.getRejectionPolicy() != null ? group.getRejectionPolicy() : defaults.getRejectionPolicy()
+            ));
+            group.getSubjects().forEach(subject -> groupBySubject.put(subject, name));
+        });
+    }
+
+    /**
+     * Queue a handler on the pool of its subject.
+     *
+     * @param onRejected called when the pool refuses the work (on the caller thread, or on the
+     *                   retry thread with the RETRY policy), so the requester gets an error reply
+     *                   instead of a timeout
+     */
+    public void execute(String subject, Runnable task, Runnable onRejected) {
+        ThreadPoolExecutor executor = executorsByGroup.get(groupOf(subject));
+        SubjectMetrics metrics = metrics(subject);
+
+        metrics.queued.incrementAndGet();
+        executor.execute(new QueuedTask(task, onRejected, metrics, System.nanoTime()));
+    }
+
+    public String groupOf(String subject) {
+        return groupBySubject.getOrDefault(subject, NatsExecutorProperties.DEFAULT_GROUP);
+    }
+
+    /**
+     * Current number of messages waiting for a worker on the given subject.
+     */
+    public int queueDepth(String subject) {
+        return metrics(subject).queued.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        executorsByGroup.values().forEach(ExecutorService::shutdown);
+        executorsByGroup.forEach((group, executor) -> {
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("NATS executor '{}' did not finish in time, {} task(s) dropped",
+                            group, executor.shutdownNow().size());
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    // ==== INTERNAL ====
+
+    private ThreadPoolExecutor createExecutor(String group, int concurrency, int queueCapacity, RejectionPolicy policy) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "nats-" + group + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                concurrency,
+                concurrency,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                rejectionHandler(policy)
+        );
+
+        Gauge.builder("shipping.nats.executor.active", executor, ThreadPoolExecutor::getActiveCount)
+                .tag("group", group)
+                .register(meterRegistry);
+        Gauge.builder("shipping.nats.executor.queue.size", executor, e -> e.getQueue().size())
+                .tag("group", group)
+                .register(meterRegistry);
+
+        log.info("NATS executor '{}' ready (concurrency={}, queue={}, rejection={})",
+                group, concurrency, queueCapacity, policy);
+        return executor;
+    }
+
+    private RejectedExecutionHandler rejectionHandler(RejectionPolicy policy) {
+        return switch (policy) {
+            // never runs the handler inline: the dispatcher thread keeps routing the other subjects
+            case RETRY -> (runnable, executor) -> retryLater(runnable, executor, 1);
+            case DISCARD_OLDEST -> (runnable, executor) -> {
+                Runnable oldest = executor.getQueue().poll();
+                if (oldest != null) {
+                    reject(oldest);
+                }
+                if (executor.isShutdown() || !executor.getQueue().offer(runnable)) {
+                    reject(runnable);
+                }
+            };
+            case REJECT -> (runnable, executor) -> reject(runnable);
+        };
+    }
+
+    private void retryLater(Runnable runnable, ThreadPoolExecutor executor, int attempt) {
+        if (attempt > RETRY_ATTEMPTS || executor.isShutdown() || retryScheduler.isShutdown()) {
+            reject(runnable);
+            return;
+        }
+        try {
+            retryScheduler.schedule(() -> {
+                if (executor.isShutdown() || !executor.getQueue().offer(runnable)) {
+                    retryLater(runnable, executor, attempt + 1);
+                }
+            }, RETRY_DELAY_MILLIS << (attempt - 1), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            reject(runnable);
+        }
+    }
+
+    private void reject(Runnable runnable) {
+        if (runnable instanceof QueuedTask task) {
+            task.reject();
+        }
+    }
+
+    private SubjectMetrics metrics(String subject) {
+        return metricsBySubject.computeIfAbsent(subject, s -> new SubjectMetrics(s, groupOf(s), meterRegistry));
+    }
+
+    private static final class SubjectMetrics {
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Timer waitTimer;
+        private final Counter rejected;
+
+        private SubjectMetrics(String subject, String group, MeterRegistry registry) {
+            Gauge.builder("shipping.nats.queue.depth", queued, AtomicInteger::get)
+                    .tag("subject", subject)
+                    .tag("group", group)
+                    .register(registry);
+            this.waitTimer = Timer.builder("shipping.nats.queue.wait")
+                    .tag("subject", subject)
+                    .tag("group", group)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+            this.rejected = Counter.builder("shipping.nats.rejected")
+                    .tag("subject", subject)
+                    .tag("group", group)
+                    .register(registry);
+        }
+    }
+
+    private static final class QueuedTask implements Runnable {
+        private final Runnable task;
+        private final Runnable onRejected;
+        private final SubjectMetrics metrics;
+        private final long enqueuedAt;
+
+        private QueuedTask(Runnable task, Runnable onRejected, SubjectMetrics metrics, long enqueuedAt) {
+            this.task = task;
+            this.onRejected = onRejected;
+            this.metrics = metrics;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        @Override
+        public void run() {
+            metrics.queued.decrementAndGet();
+            metrics.waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            task.run();
+        }
+
+        private void reject() {
+            metrics.queued.decrementAndGet();
+            metrics.rejected.increment();
+            onRejected.run();
+        }
+    }
+}
@@ -3,8 +3,12 @@ package com.example.shippingService.mappers;
 import com.example.shippingService.dtos.ContactInfo;
 import com.example.shippingService.dtos.ShipmentResponse;
 import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.entities.TrackingEvent;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Component
 public class ShipmentMapper {
 
@@ -23,14 +27,27 @@ public class ShipmentMapper {
         res.setWeight(shipment.getWeight_kg());
         res.setStatus(shipment.getCurrentStatus());
 
-        res.setStatusHistory(shipment.getStatusHistory());
+        res.setStatusHistory(shipment.getStatusHistory() == null ? null
+                : shipment.getStatusHistory().stream().map(this::toStatusMap).toList());
         res.setFiles(shipment.getFiles());
         res.setCreatedAt(shipment.getCreatedAt());
         res.setUpdatedAt(shipment.getUpdatedAt());
+        res.setEtag(shipment.etag());
 
         return res;
     }
 
+    // API keeps the long field names; compact keys are a storage detail
+    private Map<String, Object> toStatusMap(TrackingEvent event) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("status", event.getStatus());
+        entry.put("timestamp", event.timestampAsInstant());
+        entry.put("userId", event.getUserId());
+        entry.put("location", event.getLocation());
+        entry.put("note", event.getNote());
+        return entry;
+    }
+
     private ContactInfo toContactInfo(ContactInfo src) {
         return src == null ? null : new ContactInfo(src.getName(), src.getAddress());
     }
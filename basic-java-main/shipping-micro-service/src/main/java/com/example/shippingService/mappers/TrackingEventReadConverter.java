@@ -0,0 +1,33 @@
+package com.example.shippingService.mappers;
+
+import com.example.shippingService.entities.TrackingEvent;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+/**
+ * Reads both the compact format ({s, t, u, l, n}) and the old map format ({status, timestamp, ...}).
+ * Old entries come back flagged as legacy so that the caller can rewrite the document.
+ */
+@ReadingConverter
+public class TrackingEventReadConverter implements Converter<Document, TrackingEvent> {
+
+    @Override
+    public TrackingEvent convert(Document source) {
+        if (!source.containsKey("s") && source.containsKey("status")) {
+            return TrackingEvent.fromLegacy(source);
+        }
+
+        return TrackingEvent.builder()
+                .status(source.getString("s"))
+                .timestamp(asLong(source.get("t")))
+                .userId(asLong(source.get("u")))
+                .location(source.getString("l"))
+                .note(source.getString("n"))
+                .build();
+    }
+
+    private static Long asLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+}
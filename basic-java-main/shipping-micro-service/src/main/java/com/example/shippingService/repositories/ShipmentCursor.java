@@ -0,0 +1,34 @@
+package com.example.shippingService.repositories;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Keyset position over (createdAt, shipmentId).
+ * Sent to clients as an opaque base64url token of "createdAtMillis|shipmentId" ("-" when createdAt is missing).
+ */
+public record ShipmentCursor(Instant createdAt, String shipmentId) {
+
+    private static final String NO_DATE = "-";
+
+    public String encode() {
+        String date = createdAt != null ? String.valueOf(createdAt.toEpochMilli()) : NO_DATE;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((date + "|" + shipmentId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ShipmentCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            String date = raw.substring(0, separator);
+            return new ShipmentCursor(
+                    NO_DATE.equals(date) ? null : Instant.ofEpochMilli(Long.parseLong(date)),
+                    raw.substring(separator + 1)
+            );
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
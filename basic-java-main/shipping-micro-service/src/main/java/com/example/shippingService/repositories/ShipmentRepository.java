@@ -4,7 +4,7 @@ import com.example.shippingService.entities.Shipment;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.Optional;
 
-public interface ShipmentRepository extends MongoRepository<Shipment, String> {
+public interface ShipmentRepository extends MongoRepository<Shipment, String>, ShipmentRepositoryCustom {
     Optional<Shipment> findByShipmentId(String shipmentId);
     Optional<Shipment> findByTrackingNumber(String trackingNumber);
 }
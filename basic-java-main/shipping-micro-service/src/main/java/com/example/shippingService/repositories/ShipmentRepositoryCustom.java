@@ -0,0 +1,53 @@
+package com.example.shippingService.repositories;
+
+import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.entities.TrackingEvent;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface ShipmentRepositoryCustom {
+
+    /**
+     * Next {@code limit} shipments after the given position, ordered by (createdAt, shipmentId).
+     * A null cursor starts from the beginning.
+     */
+    List<Shipment> findPageAfter(ShipmentCursor cursor, int limit);
+
+    /**
+     * Appends a tracking event and moves currentStatus in one atomic server-side update.
+     * Only the latest {@code keepRecent} events stay in the shipment; the event gets the next sequence number
+     * (hence its bucket) and is also added to pendingEvents until its bucket holds it (see clearPendingEvent).
+     * Returns the updated shipment (tracking fields only), empty if the tracking number is unknown
+     * or if the shipment still holds a history that has not been moved to buckets yet.
+     */
+    Optional<Shipment> appendTrackingEvent(String trackingNumber, TrackingEvent event,
+                                           String status, Instant updatedAt, int keepRecent);
+
+    /**
+     * Drops the event with the given sequence number from pendingEvents: its bucket holds it.
+     */
+    void clearPendingEvent(String shipmentId, long sequence);
+
+    /**
+     * Sets the given fields (Mongo field name -> value) and updatedAt, and increments revision, in one atomic
+     * update: the tracking fields written concurrently by appendTrackingEvent are left untouched.
+     * Returns the shipment as it was just before this update, empty if the id is unknown.
+     */
+    Optional<Shipment> updateDetails(String shipmentId, Map<String, Object> changes, Instant updatedAt);
+
+    /**
+     * Last step of moving a pre-bucket history out of the shipment: sets trackingEventCount and keeps
+     * only the latest events, and increments revision. Skipped (returns false) if the history changed
+     * since it was read.
+     */
+    boolean markHistoryBucketed(String shipmentId, int historySize, List<TrackingEvent> recentEvents);
+
+    /**
+     * Rewrites a statusHistory read from the old map format in the compact format.
+     * Skipped (returns false) if the array changed size since it was read.
+     */
+    boolean rewriteStatusHistory(String shipmentId, List<TrackingEvent> statusHistory);
+}
@@ -0,0 +1,163 @@
+package com.example.shippingService.repositories;
+
+import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.entities.TrackingEvent;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * MongoTemplate-backed queries that derived repository methods cannot express.
+ */
+@RequiredArgsConstructor
+public class ShipmentRepositoryImpl implements ShipmentRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Keyset pagination: each page is an index range scan on (createdAt, _id),
+     * whatever the depth, instead of skip/limit or findAll.
+     */
+    @Override
+    public List<Shipment> findPageAfter(ShipmentCursor cursor, int limit) {
+        Query query = new Query()
+                .with(Sort.by(Sort.Order.asc("createdAt"), Sort.Order.asc("_id")))
+                .limit(limit);
+
+        if (cursor != null) {
+            query.addCriteria(after(cursor));
+        }
+
+        return mongoTemplate.find(query, Shipment.class);
+    }
+
+    /**
+     * One findAndModify with an update pipeline: the document is never read into the service, so concurrent
+     * scans of the same parcel cannot overwrite each other's event, and the event gets its sequence number
+     * (the counter before the increment) in the same write that records it in trackingHistory and pendingEvents.
+     */
+    @Override
+    public Optional<Shipment> appendTrackingEvent(String trackingNumber, TrackingEvent event,
+                                                  String status, Instant updatedAt, int keepRecent) {
+        Query query = Query.query(Criteria.where("trackingNumber").is(trackingNumber)
+                .orOperator(
+                        Criteria.where("trackingEventCount").exists(true),
+                        Criteria.where("trackingHistory.0").exists(false)
+                ));
+
+        Document eventDocument = (Document) mongoTemplate.getConverter().convertToMongoType(event);
+        eventDocument.remove("_class");
+        Document count = ifNull("$trackingEventCount", 0L);
+        // $literal: user text starting with '$' must not be read as a field path
+        Document sequenced = new Document("$mergeObjects",
+                List.of(new Document("$literal", eventDocument), new Document("q", count)));
+
+        Document set = new Document()
+                .append("trackingEventCount", new Document("$add", List.of(count, 1L)))
+                .append("revision", new Document("$add", List.of(ifNull("$revision", 0L), 1L)))
+                .append("currentStatus", new Document("$literal", status))
+                .append("updatedAt", Date.from(updatedAt))
+                .append("trackingHistory", new Document("$slice", List.of(
+                        new Document("$concatArrays", List.of(ifNull("$trackingHistory", List.of()), List.of(sequenced))),
+                        -keepRecent)))
+                .append("pendingEvents", new Document("$concatArrays",
+                        List.of(ifNull("$pendingEvents", List.of()), List.of(sequenced))));
+
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
+                .returnDocument(ReturnDocument.AFTER)
+                .projection(new Document()
+                        .append("userId", 1).append("currentStatus", 1).append("trackingHistory", 1)
+                        .append("trackingEventCount", 1).append("pendingEvents", 1)
+                        .append("revision", 1).append("updatedAt", 1));
+
+        Document updated = mongoTemplate.execute(Shipment.class, collection -> collection.findOneAndUpdate(
+                query.getQueryObject(), List.of(new Document("$set", set)), options));
+        return Optional.ofNullable(updated).map(document -> mongoTemplate.getConverter().read(Shipment.class, document));
+    }
+
+    @Override
+    public void clearPendingEvent(String shipmentId, long sequence) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(shipmentId)),
+                new Update().pull("pendingEvents", new Document("q", sequence)),
+                Shipment.class
+        );
+    }
+
+    /**
+     * Same idea as appendTrackingEvent: no load-and-save, so an update of the details cannot roll back
+     * a tracking event appended between its read and its write.
+     */
+    @Override
+    public Optional<Shipment> updateDetails(String shipmentId, Map<String, Object> changes, Instant updatedAt) {
+        Update update = new Update()
+                .set("updatedAt", updatedAt)
+                .inc("revision", 1);
+        changes.forEach(update::set);
+
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(shipmentId)),
+                update,
+                FindAndModifyOptions.options().returnNew(false),
+                Shipment.class
+        ));
+    }
+
+    /**
+     * Guarded by "no counter yet" and $size: a concurrent migration or append makes it a no-op.
+     */
+    @Override
+    public boolean markHistoryBucketed(String shipmentId, int historySize, List<TrackingEvent> recentEvents) {
+        Query query = Query.query(Criteria.where("_id").is(shipmentId)
+                .and("trackingEventCount").exists(false)
+                .and("trackingHistory").size(historySize));
+
+        // the tracking view served from it changes: a new ETag
+        Update update = new Update()
+                .set("trackingEventCount", (long) historySize)
+                .set("trackingHistory", recentEvents)
+                .inc("revision", 1);
+
+        return mongoTemplate.updateFirst(query, update, Shipment.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public boolean rewriteStatusHistory(String shipmentId, List<TrackingEvent> statusHistory) {
+        Query query = Query.query(Criteria.where("_id").is(shipmentId)
+                .and("statusHistory").size(statusHistory.size()));
+
+        return mongoTemplate.updateFirst(query, new Update().set("statusHistory", statusHistory), Shipment.class)
+                .getModifiedCount() > 0;
+    }
+
+    private static Document ifNull(String field, Object fallback) {
+        return new Document("$ifNull", List.of(field, fallback));
+    }
+
+    // Legacy documents without createdAt sort first (null < any date)
+    private Criteria after(ShipmentCursor cursor) {
+        if (cursor.createdAt() == null) {
+            return new Criteria().orOperator(
+                    Criteria.where("createdAt").is(null).and("_id").gt(cursor.shipmentId()),
+                    Criteria.where("createdAt").ne(null)
+            );
+        }
+        return new Criteria().orOperator(
+                Criteria.where("createdAt").gt(cursor.createdAt()),
+                Criteria.where("createdAt").is(cursor.createdAt()).and("_id").gt(cursor.shipmentId())
+        );
+    }
+}
@@ -2,8 +2,10 @@ package com.example.shippingService.repositories;
 
 import com.example.shippingService.entities.StoredFile;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,5 +13,15 @@ public interface StoredFileRepository extends MongoRepository<StoredFile, String
 
     StoredFile findByShipmentIdAndType(String shipmentId, String type);
 
+    /** Current proof: the latest one, should a replacement be half done */
+    StoredFile findFirstByShipmentIdAndTypeOrderByUploadedAtDesc(String shipmentId, String type);
+
     List<StoredFile> findByShipmentId(String shipmentId);
+
+    /** Metadata of the files of several shipments, without any legacy Base64 content */
+    @Query(value = "{ 'shipmentId': { $in: ?0 } }",
+            fields = "{ 'shipmentId': 1, 'type': 1, 'filename': 1, 'contentType': 1, 'size': 1, 'storageId': 1, "
+                    + "'contentHash': 1, 'thumbnailStorageId': 1, 'uploadedAt': 1 }",
+            sort = "{ 'shipmentId': 1, 'type': 1, 'uploadedAt': -1 }")
+    List<StoredFile> findMetadataByShipmentIdIn(Collection<String> shipmentIds);
 }
@@ -0,0 +1,13 @@
+package com.example.shippingService.repositories;
+
+import com.example.shippingService.entities.TrackingBucket;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Optional;
+
+public interface TrackingBucketRepository extends MongoRepository<TrackingBucket, String>, TrackingBucketRepositoryCustom {
+
+    Optional<TrackingBucket> findByShipmentIdAndBucket(String shipmentId, int bucket);
+
+    void deleteByShipmentId(String shipmentId);
+}
@@ -0,0 +1,19 @@
+package com.example.shippingService.repositories;
+
+import com.example.shippingService.entities.TrackingEvent;
+
+import java.util.List;
+
+public interface TrackingBucketRepositoryCustom {
+
+    /**
+     * Appends one event to a bucket, creating the bucket on first use.
+     * Idempotent for an event carrying a sequence number: a bucket already holding it is left as is.
+     */
+    void appendEvent(String shipmentId, int bucket, TrackingEvent event);
+
+    /**
+     * Sets the whole content of a bucket (idempotent, used by the migration).
+     */
+    void replaceBucket(String shipmentId, int bucket, List<TrackingEvent> events);
+}
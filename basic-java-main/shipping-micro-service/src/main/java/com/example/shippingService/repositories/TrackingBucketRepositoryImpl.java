@@ -0,0 +1,49 @@
+package com.example.shippingService.repositories;
+
+import com.example.shippingService.entities.TrackingBucket;
+import com.example.shippingService.entities.TrackingEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class TrackingBucketRepositoryImpl implements TrackingBucketRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void appendEvent(String shipmentId, int bucket, TrackingEvent event) {
+        Update update = new Update()
+                .push("events", event)
+                .setOnInsert("shipmentId", shipmentId)
+                .setOnInsert("bucket", bucket);
+        Query query = byId(shipmentId, bucket);
+        if (event.getSequence() != null) {
+            query.addCriteria(Criteria.where("events.q").ne(event.getSequence()));
+        }
+        try {
+            mongoTemplate.upsert(query, update, TrackingBucket.class);
+        } catch (DuplicateKeyException e) {
+            // the bucket exists: another first event raced on the insert, or it already holds this one
+            mongoTemplate.updateFirst(query, update, TrackingBucket.class);
+        }
+    }
+
+    @Override
+    public void replaceBucket(String shipmentId, int bucket, List<TrackingEvent> events) {
+        Update update = new Update()
+                .set("events", events)
+                .setOnInsert("shipmentId", shipmentId)
+                .setOnInsert("bucket", bucket);
+        mongoTemplate.upsert(byId(shipmentId, bucket), update, TrackingBucket.class);
+    }
+
+    private static Query byId(String shipmentId, int bucket) {
+        return Query.query(Criteria.where("_id").is(TrackingBucket.idOf(shipmentId, bucket)));
+    }
+}
@@ -1,141 +1,317 @@
 package com.example.shippingService.services;
 
+import com.example.shippingService.cache.ProofCache;
+import com.example.shippingService.dtos.ProofReadRequest;
 import com.example.shippingService.dtos.ProofUploadRequest;
+import com.example.shippingService.entities.ProofContent;
 import com.example.shippingService.entities.StoredFile;
 import com.example.shippingService.exception.ShipmentNotFoundException;
+import com.example.shippingService.images.ProofImageProcessor;
+import com.example.shippingService.images.ProofThumbnailer;
 import com.example.shippingService.repositories.ShipmentRepository;
 import com.example.shippingService.repositories.StoredFileRepository;
+import com.example.shippingService.storage.ProofStores;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.binary.Base64;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Proof / label files.
+ * - ProofStore (GridFS or file system) = the bytes, one blob per unique content (see ProofContentStore)
+ * - stored_files = metadata only, pointing to the blob (storageId) and its content (contentHash)
+ * - ProofCache = local cache of the bytes (memory, then disk), filled on read
+ * - images: oversized ones downscaled on upload, thumbnail variant generated in the background
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FileStorageService {
 
+    public static final String VARIANT_THUMB = "thumb";
+
     private final ShipmentRepository shipmentRepository;
     private final StoredFileRepository storedFileRepository;
-    private final CacheManager cacheManager;
-    private final GridFsTemplate gridFsTemplate; // For optional persistent storage
+    private final ProofCache proofCache;
+    private final ProofStores proofStores;
+    private final ProofContentStore proofContentStore;
+    private final ProofImageProcessor imageProcessor;
+    private final ProofThumbnailer thumbnailer;
+
+    @Value("${shipping.files.max-listed-shipments:100}")
+    private int maxListedShipments;
 
     /**
-     * Store proof/label file
-     * - Redis = cache
-     * - Mongo = lasting persistence
+     * Store proof/label file sent in one message (Base64).
+     * Large files go through the chunked upload (ProofUploadService) instead.
      */
-    @CachePut(value = "storedFiles", key = "#request.shipmentId + ':' + #request.type")
     public Map<String, Object> storeFile(ProofUploadRequest request) throws IOException {
 
         // Check if shipment exists
         shipmentRepository.findById(request.getShipmentId())
                 .orElseThrow(() -> new ShipmentNotFoundException(request.getShipmentId()));
 
-        // 1- Save in Mongo (metadata + Base64)
-        StoredFile file = StoredFile.builder()
+        // 1- Bytes in the proof store (decoded once, oversized images downscaled), unless the same content is already there
+        ProofImageProcessor.Image image = imageProcessor.optimize(
+                Base64.decodeBase64(request.getFileBase64()), request.getContentType());
+        byte[] fileBytes = image.content();
+        ProofContent content = proofContentStore.store(
+                fileBytes,
+                storageName(request.getShipmentId(), request.getType()),
+                storageMetadata(request.getShipmentId(), request.getType(), request.getFilename(), image.contentType())
+        );
+
+        // 2- Metadata in Mongo, previous version replaced
+        StoredFile saved = replaceProof(StoredFile.builder()
                 .shipmentId(request.getShipmentId())
                 .type(request.getType())
                 .filename(request.getFilename())
-                .contentType(request.getContentType())
-                .fileBase64(request.getFileBase64())
+                .contentType(image.contentType())
+                .storageId(content.getStorageId())
+                .contentHash(content.getSha256())
+                .size((long) fileBytes.length)
                 .uploadedAt(Instant.now())
-                .build();
+                .build());
+
+        log.info("File stored (id={}, {} bytes) as {}", saved.getId(), fileBytes.length, content.getStorageId());
+        return toMetadata(saved);
+    }
+
+    /**
+     * Makes a stored content the proof of its shipment/type. The file must already hold a reference
+     * on its content (ProofContentStore); the previous metadata are removed and their references given back.
+     * The thumbnail of an image is queued.
+     */
+    public StoredFile replaceProof(StoredFile file) {
+        List<StoredFile> previousFiles = storedFileRepository.findByShipmentId(file.getShipmentId()).stream()
+                .filter(f -> file.getType().equals(f.getType()))
+                .toList();
 
         StoredFile saved = storedFileRepository.save(file);
+        storedFileRepository.deleteAll(previousFiles);
+        previousFiles.forEach(this::releaseContent);
+        thumbnailer.schedule(saved);
 
-        // 2️- Store in Redis (cache)
-        byte[] fileBytes = Base64.decodeBase64(request.getFileBase64());
-        cacheManager.getCache("storedFiles")
-                .put(request.getShipmentId() + ":" + request.getType(), fileBytes);
+        return saved;
+    }
 
-        // 3️- Optional persistent storage via GridFS
-        gridFsTemplate.store(
-                new ByteArrayInputStream(fileBytes),
-                request.getShipmentId() + "_" + request.getType(),
-                request.getContentType()
-        );
+    /**
+     * Retrieve file: metadata from Mongo, bytes from the proof cache, fallback the proof store
+     * (or the Base64 of a legacy document)
+     * @param variant "thumb" for the thumbnail of an image, the full file otherwise (or while there is no thumbnail)
+     */
+    public Map<String, Object> getProof(String shipmentId, String type, String variant) throws IOException {
 
-        // 4- Reply to the frontend
-        Map<String, Object> response = new HashMap<>();
-        response.put("id", saved.getId());
-        response.put("shipmentId", saved.getShipmentId());
-        response.put("type", saved.getType());
-        response.put("filename", saved.getFilename());
-        response.put("contentType", saved.getContentType());
-        response.put("fileBase64", saved.getFileBase64());
-        response.put("uploadedAt", saved.getUploadedAt());
-
-        log.info("File stored (id={}) in Redis + Mongo + GridFS", saved.getId());
-        return response;
+        StoredFile file = variant(
+                storedFileRepository.findFirstByShipmentIdAndTypeOrderByUploadedAtDesc(shipmentId, type), variant);
+        if (file == null) return null;
+
+        byte[] content = proofCache.get(file.getStorageId());
+        if (content == null) {
+            content = readContent(file);
+            if (content == null) return null;
+            proofCache.put(file.getStorageId(), content);
+        }
+
+        Map<String, Object> data = toMetadata(file);
+        data.put("fileBase64", Base64.encodeBase64String(content));
+        return data;
     }
 
     /**
-     * Retrieve file from Redis, fallback Mongo if cache missed
+     * Metadata of the current proof, without content: what a download needs to answer conditional
+     * and range requests before reading anything.
+     * etag = content hash (storageId, or document id, until StoredFileMigrator hashed the content)
      */
-    @Cacheable(value = "storedFiles", key = "#shipmentId + ':' + #type")
-    public Map<String, Object> getProof(String shipmentId, String type) throws IOException {
+    public Map<String, Object> getProofInfo(String shipmentId, String type, String variant) {
+        StoredFile file = variant(
+                storedFileRepository.findFirstByShipmentIdAndTypeOrderByUploadedAtDesc(shipmentId, type), variant);
+        if (file == null) return null;
 
-        // 1️ Search in Redis
-        byte[] cachedFile = (byte[]) cacheManager.getCache("storedFiles")
-                .get(shipmentId + ":" + type, byte[].class);
+        Map<String, Object> data = toMetadata(file);
+        data.put("storageId", file.getStorageId());
+        data.put("etag", file.getContentHash() != null ? file.getContentHash()
+                : file.getStorageId() != null ? file.getStorageId() : file.getId());
+        if (file.getSize() == null) {
+            // legacy document: size only known from its content
+            byte[] content = readContent(file);
+            data.put("size", content != null ? (long) content.length : 0L);
+        }
+        return data;
+    }
 
-        StoredFile file = storedFileRepository.findByShipmentIdAndType(shipmentId, type);
-        if (file == null && cachedFile == null) return null;
+    /**
+     * Metadata of every current proof of the given shipments, no content read.
+     * @return one entry per (shipmentId, type), by shipmentId then type
+     */
+    public List<Map<String, Object>> listProofs(List<String> shipmentIds) {
+        if (shipmentIds.size() > maxListedShipments) {
+            throw new IllegalArgumentException(
+                    "At most " + maxListedShipments + " shipments can be listed at once, got " + shipmentIds.size());
+        }
 
-        // 2️ If cache is empty, fallback to Mongo
-        if (cachedFile == null && file != null) {
-            cachedFile = Base64.decodeBase64(file.getFileBase64());
-            // fill back Redis cache
-            cacheManager.getCache("storedFiles").put(shipmentId + ":" + type, cachedFile);
+        List<Map<String, Object>> proofs = new ArrayList<>();
+        String previousKey = null;
+        for (StoredFile file : storedFileRepository.findMetadataByShipmentIdIn(shipmentIds)) {
+            // latest first within a shipment/type: older ones are a replacement in progress
+            String key = file.getShipmentId() + "/" + file.getType();
+            if (key.equals(previousKey)) continue;
+            previousKey = key;
+
+            Map<String, Object> data = toMetadata(file);
+            data.put("storageId", file.getStorageId());
+            data.put("hash", file.getContentHash());
+            data.put("thumbnail", file.getThumbnailStorageId() != null);
+            proofs.add(data);
         }
+        return proofs;
+    }
 
-        Map<String, Object> data = new HashMap<>();
-        data.put("id", file != null ? file.getId() : null);
-        data.put("shipmentId", shipmentId);
-        data.put("type", type);
-        data.put("filename", file != null ? file.getFilename() : null);
-        data.put("contentType", file != null ? file.getContentType() : null);
-        data.put("fileBase64", Base64.encodeBase64String(cachedFile));
-        data.put("uploadedAt", file != null ? file.getUploadedAt() : null);
+    /**
+     * One slice of a proof content. Contents small enough for the proof cache are read whole once and
+     * then served from it; larger ones are read from the proof store, from the offset on.
+     * @return at most length bytes, empty past the end
+     */
+    public byte[] readProof(ProofReadRequest request) throws IOException {
+        String storageId = request.getStorageId();
+        if (storageId == null) {
+            StoredFile file = storedFileRepository.findFirstByShipmentIdAndTypeOrderByUploadedAtDesc(
+                    request.getShipmentId(), request.getType());
+            byte[] content = file != null ? readContent(file) : null;
+            if (content == null) {
+                throw new IllegalArgumentException("No file found for shipment: " + request.getShipmentId());
+            }
+            return slice(content, request.getOffset(), request.getLength());
+        }
 
-        return data;
+        byte[] cached = proofCache.get(storageId);
+        if (cached != null) {
+            return slice(cached, request.getOffset(), request.getLength());
+        }
+
+        if (proofCache.admits(proofStores.forId(storageId).size(storageId))) {
+            byte[] content = read(storageId, 0, Long.MAX_VALUE);
+            proofCache.put(storageId, content);
+            return slice(content, request.getOffset(), request.getLength());
+        }
+        return read(storageId, request.getOffset(), request.getLength());
     }
 
     /**
-     * Delete file from Redis + Mongo + GridFS
+     * Delete file from Mongo; its bytes go from the proof store only if no other file shares them
      */
-    @CacheEvict(value = "storedFiles", key = "#shipmentId + ':' + #type")
     public void deleteProof(String shipmentId, String type) throws IOException {
 
-        StoredFile file = storedFileRepository.findByShipmentIdAndType(shipmentId, type);
-        if (file != null) {
-            storedFileRepository.delete(file);
-            log.info("🗑️ File removed from Mongo (id={})", file.getId());
+        List<StoredFile> files = storedFileRepository.findByShipmentId(shipmentId).stream()
+                .filter(f -> type.equals(f.getType()))
+                .toList();
+        if (!files.isEmpty()) {
+            storedFileRepository.deleteAll(files);
+            files.forEach(this::releaseContent);
+            log.info("🗑️ File removed from Mongo (shipmentId={}, type={})", shipmentId, type);
         }
+    }
 
-        // Remove from Redis
-        cacheManager.getCache("storedFiles").evict(shipmentId + ":" + type);
+    public static String storageName(String shipmentId, String type) {
+        return shipmentId + "_" + type;
+    }
 
-        // Remove from GridFS
-        gridFsTemplate.delete(
-                org.springframework.data.mongodb.core.query.Query.query(
-                        org.springframework.data.mongodb.core.query.Criteria.where("filename")
-                                .is(shipmentId + "_" + type)
-                )
-        );
+    public static Map<String, String> storageMetadata(String shipmentId, String type, String filename, String contentType) {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("shipmentId", shipmentId);
+        metadata.put("type", type);
+        metadata.put("filename", filename);
+        metadata.put("contentType", contentType);
+        return metadata;
+    }
+
+    // ==== INTERNAL ====
 
-        log.info("🗑️ File removed from Redis + GridFS (shipmentId={})", shipmentId);
+    private byte[] read(String storageId, long offset, long length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(length, 64 * 1024));
+        proofStores.forId(storageId).transferTo(storageId, offset, length, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static byte[] slice(byte[] content, long offset, int length) {
+        int from = (int) Math.min(offset, content.length);
+        return Arrays.copyOfRange(content, from, (int) Math.min((long) from + length, content.length));
+    }
+
+    /**
+     * The thumbnail seen as a file of its own, when asked for and already generated.
+     */
+    private static StoredFile variant(StoredFile file, String variant) {
+        if (file == null || !VARIANT_THUMB.equals(variant) || file.getThumbnailStorageId() == null) {
+            return file;
+        }
+        String filename = file.getFilename() != null ? file.getFilename() : file.getType();
+        int dot = filename.lastIndexOf('.');
+        return StoredFile.builder()
+                .id(file.getId())
+                .shipmentId(file.getShipmentId())
+                .type(file.getType())
+                .filename((dot > 0 ? filename.substring(0, dot) : filename) + "_thumb.jpg")
+                .contentType(ProofImageProcessor.JPEG)
+                .storageId(file.getThumbnailStorageId())
+                .contentHash(file.getThumbnailHash())
+                .size(file.getThumbnailSize())
+                .uploadedAt(file.getUploadedAt())
+                .build();
+    }
+
+    /**
+     * Gives back the reference of a removed file; the cached bytes go with the content.
+     */
+    private void releaseContent(StoredFile file) {
+        if (file.getThumbnailHash() != null && proofContentStore.release(file.getThumbnailHash())) {
+            proofCache.evict(file.getThumbnailStorageId());
+        }
+        if (file.getStorageId() == null) {
+            return;
+        }
+        if (file.getContentHash() == null) {
+            // not hashed yet by StoredFileMigrator: the blob is its own
+            proofContentStore.deleteUnshared(file.getStorageId());
+            proofCache.evict(file.getStorageId());
+        } else if (proofContentStore.release(file.getContentHash())) {
+            proofCache.evict(file.getStorageId());
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private byte[] readContent(StoredFile file) {
+        if (file.getStorageId() != null) {
+            return read(file.getStorageId(), 0, Long.MAX_VALUE);
+        }
+        if (file.getFileBase64() != null) {
+            // not migrated yet
+            return Base64.decodeBase64(file.getFileBase64());
+        }
+        return null;
+    }
+
+    private Map<String, Object> toMetadata(StoredFile file) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", file.getId());
+        data.put("shipmentId", file.getShipmentId());
+        data.put("type", file.getType());
+        data.put("filename", file.getFilename());
+        data.put("contentType", file.getContentType());
+        data.put("size", file.getSize());
+        data.put("uploadedAt", file.getUploadedAt());
+        return data;
     }
 }
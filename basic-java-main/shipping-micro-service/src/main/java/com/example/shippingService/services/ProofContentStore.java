@@ -0,0 +1,165 @@
+package com.example.shippingService.services;
+
+import com.example.shippingService.dtos.ProofDedupReport;
+import com.example.shippingService.entities.ProofContent;
+import com.example.shippingService.storage.ProofStores;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Content-addressed storage of the proof bytes.
+ * Each unique content (SHA-256) is stored once in the proof store and reference counted in proof_contents:
+ * every StoredFile pointing to it holds one reference, taken with {@link #store} / {@link #adopt}
+ * and given back with {@link #release}. The stored blob goes with the last reference.
+ * All counters are changed with single atomic updates, safe across replicas.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProofContentStore {
+
+    private final MongoTemplate mongoTemplate;
+    private final ProofStores proofStores;
+
+    /**
+     * Takes a reference on the given content, writing it to the proof store only if it is not stored yet.
+     */
+    public ProofContent store(byte[] content, String name, Map<String, String> metadata) {
+        String sha256 = sha256(content);
+
+        ProofContent existing = retain(sha256);
+        if (existing != null) {
+            log.debug("Proof content {} already stored, {} references", sha256, existing.getRefCount());
+            return existing;
+        }
+
+        String storageId = proofStores.primary().write(name, metadata, content);
+        return adopt(sha256, content.length, storageId);
+    }
+
+    /**
+     * Takes a reference on a content already written to the proof store (streamed upload, hashed on the way).
+     * If the same content was stored meanwhile, the given blob is a duplicate and is deleted:
+     * use the storageId of the returned content, not the one given.
+     */
+    public ProofContent adopt(String sha256, long size, String uploaded) {
+        String key = sha256.toLowerCase();
+        Query query = Query.query(Criteria.where("_id").is(key));
+        Update update = new Update()
+                .inc("refCount", 1)
+                .setOnInsert("storageId", uploaded)
+                .setOnInsert("size", size)
+                .setOnInsert("createdAt", Instant.now());
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        ProofContent content;
+        try {
+            content = mongoTemplate.findAndModify(query, update, options, ProofContent.class);
+        } catch (DuplicateKeyException e) {
+            // two first uploads of the same content raced on the insert: the other one won, retry as an update
+            content = mongoTemplate.findAndModify(query, update, options, ProofContent.class);
+        }
+
+        if (!uploaded.equals(content.getStorageId())) {
+            proofStores.delete(uploaded);
+            log.info("♻️ Duplicate proof content {} ({} bytes): {} references", key, size, content.getRefCount());
+        }
+        return content;
+    }
+
+    /**
+     * Gives back one reference.
+     * @return true if it was the last one and the bytes were deleted
+     */
+    public boolean release(String sha256) {
+        ProofContent content = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(sha256)),
+                new Update().inc("refCount", -1),
+                FindAndModifyOptions.options().returnNew(true),
+                ProofContent.class
+        );
+        if (content == null || content.getRefCount() > 0) {
+            return false;
+        }
+
+        // Only if nobody took a new reference in between
+        boolean removed = mongoTemplate.remove(
+                Query.query(Criteria.where("_id").is(sha256).and("refCount").lte(0)),
+                ProofContent.class
+        ).getDeletedCount() > 0;
+        if (removed) {
+            proofStores.delete(content.getStorageId());
+            log.info("🗑️ Proof content {} no longer referenced, removed from the proof store", sha256);
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes a blob that is not reference counted (written before deduplication).
+     */
+    public void deleteUnshared(String storageId) {
+        proofStores.delete(storageId);
+    }
+
+    public ProofDedupReport report() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.group()
+                        .count().as("contents")
+                        .sum("refCount").as("files")
+                        .sum("size").as("storedBytes")
+                        .sum(ArithmeticOperators.Multiply.valueOf("size").multiplyBy("refCount")).as("logicalBytes")
+        );
+        Document totals = mongoTemplate.aggregate(aggregation, ProofContent.class, Document.class).getUniqueMappedResult();
+
+        long files = totals != null ? totals.get("files", Number.class).longValue() : 0;
+        long contents = totals != null ? totals.get("contents", Number.class).longValue() : 0;
+        long storedBytes = totals != null ? totals.get("storedBytes", Number.class).longValue() : 0;
+        long logicalBytes = totals != null ? totals.get("logicalBytes", Number.class).longValue() : 0;
+
+        return ProofDedupReport.builder()
+                .files(files)
+                .contents(contents)
+                .logicalBytes(logicalBytes)
+                .storedBytes(storedBytes)
+                .bytesSaved(logicalBytes - storedBytes)
+                .dedupRatio(storedBytes > 0 ? (double) logicalBytes / storedBytes : 1.0)
+                .build();
+    }
+
+    public static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Takes one more reference on a content already stored.
+     * @return the content, null if it is not stored
+     */
+    public ProofContent retain(String sha256) {
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(sha256)),
+                new Update().inc("refCount", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                ProofContent.class
+        );
+    }
+}
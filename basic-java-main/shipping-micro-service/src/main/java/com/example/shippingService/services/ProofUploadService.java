@@ -0,0 +1,337 @@
+package com.example.shippingService.services;
+
+import com.example.shippingService.dtos.ProofUploadBeginRequest;
+import com.example.shippingService.entities.ProofContent;
+import com.example.shippingService.entities.StoredFile;
+import com.example.shippingService.exception.ErrorMessages;
+import com.example.shippingService.exception.ServiceOverloadedException;
+import com.example.shippingService.exception.ShipmentNotFoundException;
+import com.example.shippingService.exception.UploadRejectedException;
+import com.example.shippingService.images.ProofImageProcessor;
+import com.example.shippingService.images.ProofImageProperties;
+import com.example.shippingService.repositories.ShipmentRepository;
+import com.example.shippingService.storage.ProofStores;
+import com.example.shippingService.storage.ProofWriter;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+
+/**
+ * Chunked proof uploads.
+ * Each chunk is written straight into the proof store: whatever the file size, an upload
+ * only holds the writer's buffer plus the running CRC32 / SHA-256 in memory.
+ * The file replaces the previous proof of the same shipment and type only once it is complete
+ * and its checksum verified; an aborted or expired upload leaves nothing behind.
+ * A file whose content is already stored is dropped at commit in favour of the stored one.
+ * An oversized image is downscaled at commit, once its checksum is verified, like the one-message upload.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProofUploadService {
+
+    private final ShipmentRepository shipmentRepository;
+    private final FileStorageService fileStorageService;
+    private final ProofStores proofStores;
+    private final ProofContentStore proofContentStore;
+    private final ProofImageProcessor imageProcessor;
+    private final ProofImageProperties imageProperties;
+
+    @Value("${shipping.upload.chunk-size:262144}")
+    private int chunkSize;
+
+    @Value("${shipping.upload.window:4}")
+    private int window;
+
+    @Value("${shipping.upload.max-size:104857600}")
+    private long maxSize;
+
+    @Value("${shipping.upload.max-sessions:16}")
+    private int maxSessions;
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    /* one permit per open upload, given back by whoever removes it from uploads */
+    private Semaphore sessions;
+
+    @PostConstruct
+    void init() {
+        sessions = new Semaphore(maxSessions);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Opens an upload. Nothing is visible to readers until {@link #commit}.
+     */
+    public Upload begin(ProofUploadBeginRequest request) {
+        if (request.getShipmentId() == null || request.getType() == null) {
+            throw new IllegalArgumentException("shipmentId and type are required to upload a proof");
+        }
+        shipmentRepository.findByShipmentId(request.getShipmentId())
+                .orElseThrow(() -> new ShipmentNotFoundException(request.getShipmentId()));
+
+        String uploadId = UUID.randomUUID().toString();
+        if (request.getSize() != null && request.getSize() > maxSize) {
+            throw new UploadRejectedException(String.format(ErrorMessages.UPLOAD_TOO_LARGE, uploadId, maxSize));
+        }
+        if (!sessions.tryAcquire()) {
+            throw new ServiceOverloadedException("shipping.file.upload.begin");
+        }
+
+        ProofWriter writer;
+        try {
+            writer = proofStores.primary().create(
+                    FileStorageService.storageName(request.getShipmentId(), request.getType()),
+                    FileStorageService.storageMetadata(request.getShipmentId(), request.getType(),
+                            request.getFilename(), request.getContentType())
+            );
+        } catch (RuntimeException e) {
+            sessions.release();
+            throw e;
+        }
+
+        Upload upload = new Upload(uploadId, request, writer);
+        uploads.put(uploadId, upload);
+        log.info("Upload {} started for {} ({})", uploadId, request.getShipmentId(), request.getType());
+        return upload;
+    }
+
+    /**
+     * Appends one chunk. Chunks must come in order; any error aborts the upload.
+     */
+    public void write(String uploadId, long seq, long crc32, byte[] data) {
+        Upload upload = find(uploadId);
+        try {
+            upload.write(seq, crc32, data, maxSize);
+        } catch (RuntimeException e) {
+            abort(uploadId, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Checks size and SHA-256 of the whole file, then publishes it as the proof of its shipment/type.
+     */
+    public Map<String, Object> commit(String uploadId, long size, String sha256) {
+        Upload upload = close(uploadId);
+        if (upload == null) {
+            throw new UploadRejectedException(String.format(ErrorMessages.UPLOAD_NOT_FOUND, uploadId));
+        }
+
+        String receivedSha256;
+        String storageId;
+        try {
+            receivedSha256 = upload.finish(size, sha256);
+            storageId = upload.getWriter().commit();
+        } catch (RuntimeException e) {
+            upload.abort();
+            throw e;
+        }
+
+        ProofUploadBeginRequest meta = upload.getRequest();
+        ProofImageProcessor.Image image = downscale(storageId, size, meta);
+        String contentType = image != null ? image.contentType() : meta.getContentType();
+        long storedSize = image != null ? image.content().length : size;
+        ProofContent content;
+        if (image != null) {
+            // the re-encoded image replaces the uploaded one, which nothing refers to yet
+            try {
+                content = proofContentStore.store(image.content(),
+                        FileStorageService.storageName(meta.getShipmentId(), meta.getType()),
+                        FileStorageService.storageMetadata(meta.getShipmentId(), meta.getType(), meta.getFilename(), contentType));
+            } finally {
+                proofStores.delete(storageId);
+            }
+        } else {
+            content = proofContentStore.adopt(receivedSha256, size, storageId);
+        }
+
+        StoredFile saved;
+        try {
+            saved = fileStorageService.replaceProof(StoredFile.builder()
+                    .shipmentId(meta.getShipmentId())
+                    .type(meta.getType())
+                    .filename(meta.getFilename())
+                    .contentType(contentType)
+                    .storageId(content.getStorageId())
+                    .contentHash(content.getSha256())
+                    .size(storedSize)
+                    .uploadedAt(Instant.now())
+                    .build());
+        } catch (RuntimeException e) {
+            proofContentStore.release(content.getSha256());
+            throw e;
+        }
+
+        log.info("Upload {} committed: {} bytes as {} ({} bytes stored, shipmentId={})",
+                uploadId, size, content.getStorageId(), storedSize, meta.getShipmentId());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", saved.getId());
+        response.put("shipmentId", saved.getShipmentId());
+        response.put("type", saved.getType());
+        response.put("filename", saved.getFilename());
+        response.put("contentType", saved.getContentType());
+        response.put("size", storedSize);
+        // checksum of the bytes received, what the client can compare with
+        response.put("sha256", receivedSha256);
+        response.put("uploadedAt", saved.getUploadedAt());
+        return response;
+    }
+
+    public void abort(String uploadId, String reason) {
+        Upload upload = close(uploadId);
+        if (upload != null) {
+            upload.abort();
+            log.warn("Upload {} aborted: {}", uploadId, reason);
+        }
+    }
+
+    /**
+     * Aborts the uploads that have not received anything for the given time.
+     * @return their ids
+     */
+    public List<String> abortIdle(Duration idleTimeout) {
+        long limit = System.currentTimeMillis() - idleTimeout.toMillis();
+        List<String> expired = new ArrayList<>();
+        uploads.forEach((id, upload) -> {
+            if (upload.getLastActivity() < limit) {
+                expired.add(id);
+            }
+        });
+        expired.forEach(id -> abort(id, "idle for more than " + idleTimeout));
+        return expired;
+    }
+
+    /**
+     * Reads back a committed image small enough to decode and downscales it.
+     * @return null when it is not an image or is kept as uploaded
+     */
+    private ProofImageProcessor.Image downscale(String storageId, long size, ProofUploadBeginRequest meta) {
+        if (!imageProcessor.isImage(meta.getContentType()) || size > imageProperties.getMaxSourceSize().toBytes()) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) size);
+            proofStores.forId(storageId).transferTo(storageId, 0, size, Channels.newChannel(out));
+            byte[] uploaded = out.toByteArray();
+
+            ProofImageProcessor.Image image = imageProcessor.optimize(uploaded, meta.getContentType());
+            return image.content() != uploaded ? image : null;
+        } catch (RuntimeException e) {
+            log.warn("Upload of {} ({}) kept as is, could not read it back: {}",
+                    meta.getShipmentId(), meta.getType(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ends the session: only the caller that actually removed it gives its permit back.
+     * @return null if it was already closed
+     */
+    private Upload close(String uploadId) {
+        Upload upload = uploads.remove(uploadId);
+        if (upload != null) {
+            sessions.release();
+        }
+        return upload;
+    }
+
+    private Upload find(String uploadId) {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw new UploadRejectedException(String.format(ErrorMessages.UPLOAD_NOT_FOUND, uploadId));
+        }
+        return upload;
+    }
+
+    // ==== SESSION ====
+
+    @Getter
+    public static class Upload {
+
+        private final String uploadId;
+        private final ProofUploadBeginRequest request;
+        private final ProofWriter writer;
+
+        private final CRC32 crc = new CRC32();
+        private final MessageDigest sha256;
+        private long expectedSeq;
+        private long bytes;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        Upload(String uploadId, ProofUploadBeginRequest request, ProofWriter writer) {
+            this.uploadId = uploadId;
+            this.request = request;
+            this.writer = writer;
+            try {
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        synchronized void write(long seq, long crc32, byte[] data, long maxSize) {
+            lastActivity = System.currentTimeMillis();
+            if (seq != expectedSeq) {
+                throw new UploadRejectedException(
+                        String.format(ErrorMessages.UPLOAD_CHUNK_OUT_OF_ORDER, uploadId, expectedSeq, seq));
+            }
+            crc.reset();
+            crc.update(data);
+            if (crc.getValue() != crc32) {
+                throw new UploadRejectedException(
+                        String.format(ErrorMessages.UPLOAD_CHUNK_CHECKSUM_MISMATCH, uploadId, seq));
+            }
+            if (bytes + data.length > maxSize) {
+                throw new UploadRejectedException(String.format(ErrorMessages.UPLOAD_TOO_LARGE, uploadId, maxSize));
+            }
+            writer.write(data);
+            sha256.update(data);
+            bytes += data.length;
+            expectedSeq++;
+        }
+
+        synchronized String finish(long size, String expectedSha256) {
+            String actual = HexFormat.of().formatHex(sha256.digest());
+            if (size != bytes || !actual.equalsIgnoreCase(expectedSha256)) {
+                throw new UploadRejectedException(String.format(
+                        ErrorMessages.UPLOAD_CONTENT_MISMATCH, uploadId, bytes, actual, size, expectedSha256));
+            }
+            return actual;
+        }
+
+        synchronized void abort() {
+            try {
+                writer.abort();
+            } catch (RuntimeException e) {
+                log.debug("Abort of upload {} failed: {}", uploadId, e.getMessage());
+            }
+        }
+    }
+}
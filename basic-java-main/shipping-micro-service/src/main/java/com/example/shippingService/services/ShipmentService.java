@@ -1,22 +1,30 @@
 package com.example.shippingService.services;
 
+import com.example.shippingService.cache.CacheLoaders;
+import com.example.shippingService.cache.ShipmentCacheInvalidator;
 import com.example.shippingService.dtos.ContactInfo;
+import com.example.shippingService.dtos.ShipmentPage;
 import com.example.shippingService.dtos.ShipmentRequest;
 import com.example.shippingService.dtos.ShipmentResponse;
 import com.example.shippingService.entities.Shipment;
 import com.example.shippingService.exception.ShipmentNotFoundException;
 import com.example.shippingService.mappers.ShipmentMapper;
+import com.example.shippingService.repositories.ShipmentCursor;
 import com.example.shippingService.repositories.ShipmentRepository;
+import com.example.shippingService.repositories.TrackingBucketRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -25,11 +33,27 @@ public class ShipmentService {
 
     private final ShipmentRepository shipmentRepository;
     private final ShipmentMapper shipmentMapper;
+    private final TrackingBucketRepository trackingBucketRepository;
+    private final ShipmentCacheInvalidator cacheInvalidator;
+    private final CacheLoaders cacheLoaders;
+
+    @Value("${shipping.pagination.default-limit:50}")
+    private int defaultPageSize;
+
+    @Value("${shipping.pagination.max-limit:500}")
+    private int maxPageSize;
+
+    @Value("${shipping.pagination.stream-page-size:500}")
+    private int streamPageSize;
+
+    @PostConstruct
+    void registerCacheLoader() {
+        cacheLoaders.register(ShipmentCacheInvalidator.SHIPMENTS, key -> loadShipment((String) key));
+    }
 
     /* ---------------------------------------------------------
         CREATE SHIPMENT
     --------------------------------------------------------- */
-    @CachePut(value = "shipments", key = "#result.shipmentId")
     public ShipmentResponse createShipment(ShipmentRequest request) {
         request.validate();
 
@@ -49,31 +73,78 @@ public class ShipmentService {
                 .carrier(request.getCarrier())
                 .trackingNumber("LP-" + UUID.randomUUID().toString().substring(0, 10).toUpperCase())
                 .currentStatus("CREATED")
+                .trackingEventCount(0L)
                 .weight_kg(request.getWeight())
                 .createdAt(Instant.now())
                 .updatedAt(Instant.now())
+                .revision(1L)
                 .build();
 
         shipmentRepository.save(shipment);
 
-        return shipmentMapper.toResponse(shipment);
+        ShipmentResponse response = shipmentMapper.toResponse(shipment);
+        cacheInvalidator.shipmentSaved(response, null);
+        return response;
     }
 
     /* ---------------------------------------------------------
         GET ALL SHIPMENTS
     --------------------------------------------------------- */
 
-    public List<ShipmentResponse> getAllShipments() {
-        return shipmentRepository.findAll().stream()
-                .map(shipmentMapper::toResponse)
-                .toList();
+    /**
+     * One page of shipments after the given opaque cursor (null = first page).
+     */
+    public ShipmentPage getShipmentsPage(String cursor, Integer limit) {
+        int pageSize = clampLimit(limit);
+        List<Shipment> shipments = shipmentRepository.findPageAfter(
+                cursor != null && !cursor.isBlank() ? ShipmentCursor.decode(cursor) : null,
+                pageSize
+        );
+
+        String nextCursor = null;
+        if (shipments.size() == pageSize) {
+            Shipment last = shipments.get(shipments.size() - 1);
+            nextCursor = new ShipmentCursor(last.getCreatedAt(), last.getShipmentId()).encode();
+        }
+
+        return new ShipmentPage(
+                shipments.stream().map(shipmentMapper::toResponse).toList(),
+                nextCursor,
+                pageSize
+        );
+    }
+
+    /**
+     * Walks the whole collection page by page, handing each page to the consumer:
+     * only one page is held in memory at a time.
+     */
+    public void streamAllShipments(Consumer<List<ShipmentResponse>> pageConsumer) {
+        ShipmentCursor cursor = null;
+        List<Shipment> shipments;
+        do {
+            shipments = shipmentRepository.findPageAfter(cursor, streamPageSize);
+            if (!shipments.isEmpty()) {
+                Shipment last = shipments.get(shipments.size() - 1);
+                cursor = new ShipmentCursor(last.getCreatedAt(), last.getShipmentId());
+                pageConsumer.accept(shipments.stream().map(shipmentMapper::toResponse).toList());
+            }
+        } while (shipments.size() == streamPageSize);
+    }
+
+    private int clampLimit(Integer limit) {
+        if (limit == null || limit <= 0) return defaultPageSize;
+        return Math.min(limit, maxPageSize);
     }
 
     /* ---------------------------------------------------------
         GET BY SHIPMENT ID
     --------------------------------------------------------- */
-    @Cacheable(value = "shipments", key = "#shipmentId")
+    @Cacheable(value = "shipments", key = "#shipmentId", sync = true)
     public ShipmentResponse getByShipmentId(String shipmentId) {
+        return loadShipment(shipmentId);
+    }
+
+    private ShipmentResponse loadShipment(String shipmentId) {
         Shipment shipment = shipmentRepository.findByShipmentId(shipmentId)
                 .orElseThrow(() -> new ShipmentNotFoundException(shipmentId));
 
@@ -83,49 +154,58 @@ public class ShipmentService {
     /* ---------------------------------------------------------
         UPDATE SHIPMENT
     --------------------------------------------------------- */
-    @CachePut(value = "shipments", key = "#result.shipmentId")
     public ShipmentResponse updateShipment(ShipmentRequest request) {
         request.validate();
 
-        Shipment shipment = shipmentRepository.findByShipmentId(request.getShipmentId())
+        Instant now = Instant.now();
+        Shipment shipment = shipmentRepository.updateDetails(request.getShipmentId(), changes(request), now)
                 .orElseThrow(() -> new ShipmentNotFoundException((request.getShipmentId())));
+        String previousTrackingNumber = shipment.getTrackingNumber();
 
+        // The update was applied atomically to exactly this version: replay it for the reply
         if (request.getWeight() != null) shipment.setWeight_kg(request.getWeight());
         if (request.getCarrier() != null) shipment.setCarrier(request.getCarrier());
         if (request.getTrackingNumber() != null) shipment.setTrackingNumber(request.getTrackingNumber());
-
-        if (request.getSender() != null) {
-            shipment.setSender(new ContactInfo(
-                    request.getSender().getName(),
-                    request.getSender().getAddress()
-            ));
-        }
-
-        if (request.getReceiver() != null) {
-            shipment.setReceiver(new ContactInfo(
-                    request.getReceiver().getName(),
-                    request.getReceiver().getAddress()
-            ));
-        }
-
+        if (request.getSender() != null) shipment.setSender(contact(request.getSender()));
+        if (request.getReceiver() != null) shipment.setReceiver(contact(request.getReceiver()));
         if (request.getUserId() != null) shipment.setUserId(request.getUserId());
 
-        shipment.setUpdatedAt(Instant.now());
+        shipment.setUpdatedAt(now);
+        shipment.setRevision(shipment.getRevision() != null ? shipment.getRevision() + 1 : 1L);
 
-        shipmentRepository.save(shipment);
+        ShipmentResponse response = shipmentMapper.toResponse(shipment);
+        cacheInvalidator.shipmentSaved(response, previousTrackingNumber);
+        return response;
+    }
 
-        return shipmentMapper.toResponse(shipment);
+    /**
+     * Only the fields the request sets, by their Mongo name.
+     */
+    private Map<String, Object> changes(ShipmentRequest request) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if (request.getWeight() != null) changes.put("weight_kg", request.getWeight());
+        if (request.getCarrier() != null) changes.put("carrier", request.getCarrier());
+        if (request.getTrackingNumber() != null) changes.put("trackingNumber", request.getTrackingNumber());
+        if (request.getSender() != null) changes.put("sender", contact(request.getSender()));
+        if (request.getReceiver() != null) changes.put("receiver", contact(request.getReceiver()));
+        if (request.getUserId() != null) changes.put("userId", request.getUserId());
+        return changes;
+    }
+
+    private ContactInfo contact(ContactInfo contact) {
+        return new ContactInfo(contact.getName(), contact.getAddress());
     }
 
     /* ---------------------------------------------------------
         DELETE SHIPMENT
     --------------------------------------------------------- */
-    @CacheEvict(value = "shipments", key = "#shipmentId")
     public void deleteShipment(String shipmentId) {
         Shipment shipment = shipmentRepository.findByShipmentId(shipmentId)
                 .orElseThrow(() -> new ShipmentNotFoundException(shipmentId));
 
         shipmentRepository.delete(shipment);
+        trackingBucketRepository.deleteByShipmentId(shipmentId);
+        cacheInvalidator.shipmentDeleted(shipmentId, shipment.getTrackingNumber());
     }
 
 }
@@ -1,17 +1,22 @@
 package com.example.shippingService.services;
 
+import com.example.shippingService.cache.CacheLoaders;
+import com.example.shippingService.cache.ShipmentCacheInvalidator;
 import com.example.shippingService.dtos.AddTrackingStatusRequest;
 import com.example.shippingService.dtos.TrackingResponse;
 import com.example.shippingService.dtos.TrackingResponse.StatusEntry;
 import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.entities.TrackingBucket;
+import com.example.shippingService.entities.TrackingEvent;
 import com.example.shippingService.exception.ShipmentNotFoundException;
 import com.example.shippingService.exception.ErrorMessages;
 import com.example.shippingService.repositories.ShipmentRepository;
+import com.example.shippingService.repositories.TrackingBucketRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CachePut;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -23,12 +28,30 @@ import java.util.*;
 public class TrackingService {
 
     private final ShipmentRepository shipmentRepository;
+    private final TrackingBucketRepository trackingBucketRepository;
+    private final ShipmentCacheInvalidator cacheInvalidator;
+    private final CacheLoaders cacheLoaders;
+
+    @Value("${shipping.tracking.bucket-size:100}")
+    private int bucketSize;
+
+    @Value("${shipping.tracking.recent-events:20}")
+    private int recentEvents;
+
+    @PostConstruct
+    void registerCacheLoader() {
+        cacheLoaders.register(ShipmentCacheInvalidator.TRACKING, key -> loadTracking((String) key));
+    }
 
     /**
      * Retrieve tracking info by trackingNumber ONLY
      */
-    @Cacheable(value = "tracking", key = "#trackingNumber")
+    @Cacheable(value = "tracking", key = "#trackingNumber", sync = true)
     public TrackingResponse getTrackingInfoByTrackingNumber(String trackingNumber) {
+        return loadTracking(trackingNumber);
+    }
+
+    private TrackingResponse loadTracking(String trackingNumber) {
         log.debug("🔍 Fetching tracking info for trackingNumber: {}", trackingNumber);
 
         Shipment shipment = shipmentRepository.findByTrackingNumber(trackingNumber)
@@ -39,37 +62,83 @@ public class TrackingService {
                         )
                 ));
 
-        List<Map<String, Object>> trackingHistory = shipment.getTrackingHistory();
-        if (trackingHistory == null) trackingHistory = new ArrayList<>();
+        // served trimmed from the first read on, never as the whole legacy history
+        shipment = migrateLegacyHistory(shipment);
+        copyPendingEvents(shipment);
 
-        List<StatusEntry> statusEntries = trackingHistory.stream()
-                .map(entry -> new StatusEntry(
-                        (String) entry.get("status"),
-                        toLong(entry.get("userId")),
-                        convertToInstant(entry.get("timestamp")),
-                        (String) entry.get("location"),
-                        (String) entry.get("note")
-                ))
-                .toList();
+        return toResponse(shipment, null);
+    }
 
-        return new TrackingResponse(
-                shipment.getShipmentId(),
-                shipment.getCurrentStatus(),
-                statusEntries,
-                shipment.getUserId()
-        );
+    /**
+     * One bucket of older events (see TrackingResponse.previousBucket).
+     */
+    public TrackingResponse getTrackingBucket(String trackingNumber, int bucket) {
+        Shipment shipment = shipmentRepository.findByTrackingNumber(trackingNumber)
+                .orElseThrow(() -> new ShipmentNotFoundException(
+                        String.format(
+                                ErrorMessages.SHIPMENT_NOT_FOUND_BY_TRACKING,
+                                trackingNumber
+                        )
+                ));
+
+        shipment = migrateLegacyHistory(shipment);
+        copyPendingEvents(shipment);
+
+        List<TrackingEvent> events = new ArrayList<>(trackingBucketRepository
+                .findByShipmentIdAndBucket(shipment.getShipmentId(), bucket)
+                .map(TrackingBucket::getEvents)
+                .orElse(List.of()));
+        // concurrent or late (pending) copies may land out of order; events without a number are older
+        events.sort(Comparator.comparing(TrackingEvent::getSequence, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        return TrackingResponse.builder()
+                .shipmentId(shipment.getShipmentId())
+                .currentStatus(shipment.getCurrentStatus())
+                .history(toStatusEntries(events, shipment.getUserId()))
+                .userId(shipment.getUserId())
+                .totalEvents(totalEvents(shipment))
+                .bucket(bucket)
+                .previousBucket(bucket > 0 ? bucket - 1 : null)
+                .etag(shipment.etag())
+                .build();
     }
 
     /**
      * Add tracking status using trackingNumber ONLY
      */
-    @Caching(put = { @CachePut(value = "tracking", key = "#trackingNumber")})
     public TrackingResponse addTrackingStatusByTrackingNumber(
             String trackingNumber,
             AddTrackingStatusRequest request,
             String userIdFromRequest) {
 
-        Shipment shipment = shipmentRepository.findByTrackingNumber(trackingNumber)
+        Instant timestamp = request.getTimestamp() != null
+                ? convertToInstant(request.getTimestamp())
+                : Instant.now();
+
+        TrackingEvent event = TrackingEvent.builder()
+                .status(request.getStatus())
+                .location(request.getLocation())
+                .note(request.getNote())
+                .timestamp(timestamp.toEpochMilli())
+                // No caller: the event belongs to the shipment owner (resolved on read, see toResponse)
+                .userId(toLong(userIdFromRequest))
+                .build();
+
+        Shipment shipment = shipmentRepository.appendTrackingEvent(
+                        trackingNumber, event, request.getStatus(), Instant.now(), recentEvents)
+                .or(() -> shipmentRepository.findByTrackingNumber(trackingNumber).map(existing -> {
+                    // A history still inside the shipment: move it out, then retry
+                    try {
+                        moveHistoryToBuckets(existing);
+                    } catch (RuntimeException e) {
+                        throw new IllegalStateException(String.format(
+                                ErrorMessages.TRACKING_HISTORY_NOT_MIGRATED, existing.getShipmentId()), e);
+                    }
+                    return shipmentRepository.appendTrackingEvent(
+                                    trackingNumber, event, request.getStatus(), Instant.now(), recentEvents)
+                            .orElseThrow(() -> new IllegalStateException(String.format(
+                                    ErrorMessages.TRACKING_HISTORY_NOT_MIGRATED, existing.getShipmentId())));
+                }))
                 .orElseThrow(() -> new ShipmentNotFoundException(
                         String.format(
                                 ErrorMessages.SHIPMENT_NOT_FOUND_BY_TRACKING,
@@ -77,50 +146,120 @@ public class TrackingService {
                         )
                 ));
 
-        Instant timestamp = request.getTimestamp() != null
-                ? convertToInstant(request.getTimestamp())
-                : Instant.now();
+        // The event is recorded (and marked pending): a failed bucket copy is retried later, not reported
+        copyPendingEvents(shipment);
 
-        Map<String, Object> entry = new HashMap<>();
-        entry.put("status", request.getStatus());
-        entry.put("location", request.getLocation());
-        entry.put("note", request.getNote());
-        entry.put("timestamp", timestamp);
-
-        // UserId can be String or Long -> store as String if necessary
-        entry.put("userId",
-                userIdFromRequest != null
-                        ? userIdFromRequest
-                        : String.valueOf(shipment.getUserId())
-        );
+        TrackingResponse response = toResponse(shipment, toLong(userIdFromRequest));
+        cacheInvalidator.trackingChanged(shipment.getShipmentId(), trackingNumber, response);
+        return response;
+    }
 
-        if (shipment.getTrackingHistory() == null) {
-            shipment.setTrackingHistory(new ArrayList<>());
-        }
-        shipment.getTrackingHistory().add(entry);
-
-        shipment.setCurrentStatus(request.getStatus());
-        shipment.setUpdatedAt(Instant.now());
-        shipmentRepository.save(shipment);
-
-        List<StatusEntry> history = shipment.getTrackingHistory().stream()
-                .map(e -> new StatusEntry(
-                        (String) e.get("status"),
-                        toLong(e.get("userId")),
-                        convertToInstant(e.get("timestamp")),
-                        (String) e.get("location"),
-                        (String) e.get("note")
+    private TrackingResponse toResponse(Shipment shipment, Long fallbackUserId) {
+        List<TrackingEvent> trackingHistory = shipment.getTrackingHistory();
+        if (trackingHistory == null) trackingHistory = new ArrayList<>();
+
+        long total = totalEvents(shipment);
+        long olderEvents = total - trackingHistory.size();
+
+        return TrackingResponse.builder()
+                .shipmentId(shipment.getShipmentId())
+                .currentStatus(shipment.getCurrentStatus())
+                .history(toStatusEntries(trackingHistory, shipment.getUserId()))
+                .userId(shipment.getUserId() != null
+                        ? shipment.getUserId()
+                        : fallbackUserId)
+                .totalEvents(total)
+                // bucket holding the newest event not in the shipment (it may also hold some recent ones)
+                .previousBucket(olderEvents > 0 ? (int) ((olderEvents - 1) / bucketSize) : null)
+                .etag(shipment.etag())
+                .build();
+    }
+
+    private List<StatusEntry> toStatusEntries(List<TrackingEvent> events, Long ownerId) {
+        return events.stream()
+                .map(event -> new StatusEntry(
+                        event.getStatus(),
+                        event.getUserId() != null ? event.getUserId() : ownerId,
+                        event.timestampAsInstant(),
+                        event.getLocation(),
+                        event.getNote()
                 ))
                 .toList();
+    }
 
-        return new TrackingResponse(
-                shipment.getShipmentId(),
-                shipment.getCurrentStatus(),
-                history,
-                shipment.getUserId() != null
-                        ? shipment.getUserId()
-                        : toLong(userIdFromRequest)
-        );
+    private long totalEvents(Shipment shipment) {
+        if (shipment.getTrackingEventCount() != null) return shipment.getTrackingEventCount();
+        return shipment.getTrackingHistory() != null ? shipment.getTrackingHistory().size() : 0;
+    }
+
+    /**
+     * Copies the events marked pending to their bucket, then clears the mark. Idempotent: two instances
+     * copying the same event leave one copy. Stops at the first failure, the next append or read retries.
+     */
+    private void copyPendingEvents(Shipment shipment) {
+        List<TrackingEvent> pending = shipment.getPendingEvents();
+        if (pending == null) return;
+        for (TrackingEvent event : pending) {
+            try {
+                trackingBucketRepository.appendEvent(
+                        shipment.getShipmentId(), (int) (event.getSequence() / bucketSize), event);
+                shipmentRepository.clearPendingEvent(shipment.getShipmentId(), event.getSequence());
+            } catch (Exception e) {
+                log.warn("⚠️ Tracking event {} of {} not copied to its bucket yet: {}",
+                        event.getSequence(), shipment.getShipmentId(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lazy migration of documents written before the buckets / compact events:
+     * - a history still held by the shipment is copied to its buckets, then trimmed to the latest events;
+     * - a statusHistory still in the old map format is rewritten in the compact format.
+     * Both steps are idempotent and guarded against concurrent writes; the read itself never fails because of them.
+     * @return the shipment as stored once migrated (the one given if nothing was done or the move failed)
+     */
+    public Shipment migrateLegacyHistory(Shipment shipment) {
+        try {
+            shipment = moveHistoryToBuckets(shipment);
+
+            if (TrackingEvent.anyLegacy(shipment.getStatusHistory())) {
+                shipmentRepository.rewriteStatusHistory(shipment.getShipmentId(), shipment.getStatusHistory());
+            }
+        } catch (Exception e) {
+            log.warn("Could not migrate tracking history of {}: {}", shipment.getShipmentId(), e.getMessage());
+        }
+        return shipment;
+    }
+
+    /**
+     * @return the shipment as stored after the move: trimmed, counted and one revision later
+     */
+    private Shipment moveHistoryToBuckets(Shipment shipment) {
+        List<TrackingEvent> history = shipment.getTrackingHistory();
+        if (shipment.getTrackingEventCount() != null || history == null || history.isEmpty()) return shipment;
+
+        for (int from = 0; from < history.size(); from += bucketSize) {
+            trackingBucketRepository.replaceBucket(
+                    shipment.getShipmentId(),
+                    from / bucketSize,
+                    history.subList(from, Math.min(from + bucketSize, history.size()))
+            );
+        }
+        List<TrackingEvent> recent = history.subList(Math.max(0, history.size() - recentEvents), history.size());
+        boolean moved = shipmentRepository.markHistoryBucketed(shipment.getShipmentId(), history.size(), recent);
+        log.debug("Tracking history of {} {}", shipment.getShipmentId(),
+                moved ? "moved to buckets" : "changed concurrently, move skipped");
+
+        if (!moved) {
+            // someone else wrote it meanwhile: what they left is the current state
+            return shipmentRepository.findById(shipment.getShipmentId()).orElse(shipment);
+        }
+        shipment.setTrackingEventCount((long) history.size());
+        shipment.setTrackingHistory(new ArrayList<>(recent));
+        shipment.setRevision(shipment.getRevision() != null ? shipment.getRevision() + 1 : 1L);
+        cacheInvalidator.historyMoved(shipment.getShipmentId());
+        return shipment;
     }
 
     /**
@@ -130,6 +269,8 @@ public class TrackingService {
         if (value == null) return null;
         if (value instanceof Long l) return l;
         if (value instanceof Integer i) return i.longValue();
+        // legacy events stored String.valueOf(null) when the shipment had no owner
+        if (value instanceof String s && "null".equals(s)) return null;
         if (value instanceof String s && !s.isEmpty()) return Long.parseLong(s);
         throw new IllegalArgumentException(
                 String.format(
@@ -0,0 +1,151 @@
+package com.example.shippingService.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Proofs as plain files, for single-node deployments: no binary in Mongo at all.
+ * <pre>
+ *   &lt;root&gt;/.tmp/&lt;id&gt;                  being written
+ *   &lt;root&gt;/ab/cd/abcd...              committed (sharded on the first 4 hex digits)
+ * </pre>
+ * A blob is written to .tmp, forced to disk, then moved into place with an atomic rename:
+ * readers never see a partial file. Reads use FileChannel.transferTo, which lets the kernel copy
+ * straight to the target when it is a file or socket channel.
+ * storageIds are "fs-" + 32 hex digits.
+ */
+@Slf4j
+@Component
+public class FileSystemProofStore implements ProofStore {
+
+    public static final String NAME = "filesystem";
+    private static final String PREFIX = "fs-";
+    /** Also keeps any path element out of what is resolved under root */
+    private static final Pattern STORAGE_ID = Pattern.compile("fs-[0-9a-f]{32}");
+
+    private final Path root;
+    private final Path tmp;
+
+    public FileSystemProofStore(@Value("${shipping.storage.filesystem.root:${java.io.tmpdir}/shipping-proofs}") Path root) {
+        this.root = root;
+        this.tmp = root.resolve(".tmp");
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean owns(String storageId) {
+        return storageId != null && STORAGE_ID.matcher(storageId).matches();
+    }
+
+    @Override
+    public ProofWriter create(String name, Map<String, String> metadata) {
+        String id = UUID.randomUUID().toString().replace("-", "");
+        Path part = tmp.resolve(id);
+        FileChannel channel;
+        try {
+            Files.createDirectories(tmp);
+            channel = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new ProofWriter() {
+            @Override
+            public void write(byte[] data) {
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(data);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public String commit() {
+                String storageId = PREFIX + id;
+                try {
+                    channel.force(true);
+                    channel.close();
+                    Path target = path(storageId);
+                    Files.createDirectories(target.getParent());
+                    Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+                    return storageId;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void abort() {
+                try {
+                    channel.close();
+                    Files.deleteIfExists(part);
+                } catch (IOException e) {
+                    log.debug("Could not remove {}: {}", part, e.getMessage());
+                }
+            }
+        };
+    }
+
+    @Override
+    public long size(String storageId) {
+        try {
+            return Files.size(path(storageId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long transferTo(String storageId, long offset, long length, WritableByteChannel target) {
+        try (FileChannel channel = FileChannel.open(path(storageId), StandardOpenOption.READ)) {
+            long end = offset + Math.min(length, Math.max(0, channel.size() - offset));
+            long position = offset;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) break;
+                position += transferred;
+            }
+            return Math.max(0, position - offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void delete(String storageId) {
+        try {
+            Files.deleteIfExists(path(storageId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path path(String storageId) {
+        if (!owns(storageId)) {
+            throw new IllegalArgumentException("Not a file system storageId: " + storageId);
+        }
+        String hex = storageId.substring(PREFIX.length());
+        return root.resolve(hex.substring(0, 2)).resolve(hex.substring(2, 4)).resolve(hex);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.shippingService.storage;
+
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSDownloadStream;
+import com.mongodb.client.gridfs.GridFSUploadStream;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+/**
+ * Proofs in the GridFS "fs" bucket; the storageId is the ObjectId of the GridFS file.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GridFsProofStore implements ProofStore {
+
+    public static final String NAME = "gridfs";
+
+    private final GridFSBucket gridFSBucket;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean owns(String storageId) {
+        return ObjectId.isValid(storageId);
+    }
+
+    @Override
+    public ProofWriter create(String name, Map<String, String> metadata) {
+        Document fields = new Document();
+        metadata.forEach(fields::append);
+        GridFSUploadStream stream = gridFSBucket.openUploadStream(name, new GridFSUploadOptions().metadata(fields));
+
+        return new ProofWriter() {
+            @Override
+            public void write(byte[] data) {
+                stream.write(data);
+            }
+
+            @Override
+            public String commit() {
+                stream.close();
+                return stream.getObjectId().toHexString();
+            }
+
+            @Override
+            public void abort() {
+                try {
+                    stream.abort();
+                } catch (RuntimeException e) {
+                    log.debug("GridFS abort of {} failed: {}", stream.getObjectId(), e.getMessage());
+                }
+            }
+        };
+    }
+
+    @Override
+    public long size(String storageId) {
+        GridFSFile file = gridFSBucket.find(new Document("_id", new ObjectId(storageId))).first();
+        if (file == null) {
+            throw new MongoGridFSException("No GridFS file " + storageId);
+        }
+        return file.getLength();
+    }
+
+    @Override
+    public long transferTo(String storageId, long offset, long length, WritableByteChannel target) {
+        try (GridFSDownloadStream stream = gridFSBucket.openDownloadStream(new ObjectId(storageId))) {
+            long size = stream.getGridFSFile().getLength();
+            // skip() starts from the GridFS chunk holding the offset
+            stream.skipNBytes(Math.min(offset, size));
+
+            byte[] buffer = new byte[stream.getGridFSFile().getChunkSize()];
+            long remaining = Math.min(length, Math.max(0, size - offset));
+            long copied = 0;
+            while (remaining > 0) {
+                int read = stream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) break;
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    target.write(chunk);
+                }
+                remaining -= read;
+                copied += read;
+            }
+            return copied;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void delete(String storageId) {
+        try {
+            gridFSBucket.delete(new ObjectId(storageId));
+        } catch (MongoGridFSException e) {
+            log.debug("GridFS file {} already gone: {}", storageId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.shippingService.storage;
+
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+/**
+ * Where the bytes of the proofs live. Metadata, reference counts and caching stay in
+ * FileStorageService / ProofContentStore; a backend only stores immutable blobs under the
+ * storageId it issues at {@link #create}.
+ * storageIds are opaque but tell their backend apart ({@link #owns}), so that contents written
+ * under another backend stay readable after shipping.storage.backend changes.
+ * I/O errors are thrown as {@link UncheckedIOException}.
+ */
+public interface ProofStore {
+
+    /** Backend name, as in shipping.storage.backend */
+    String name();
+
+    /** True if this backend issued the storageId */
+    boolean owns(String storageId);
+
+    /**
+     * Opens a new blob. Nothing is readable until {@link ProofWriter#commit()}.
+     * @param name     human-readable name (shipmentId_type), for backends that keep one
+     * @param metadata descriptive fields, for backends that keep them
+     */
+    ProofWriter create(String name, Map<String, String> metadata);
+
+    /** Whole content at once */
+    default String write(String name, Map<String, String> metadata, byte[] content) {
+        ProofWriter writer = create(name, metadata);
+        try {
+            writer.write(content);
+            return writer.commit();
+        } catch (RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+    }
+
+    long size(String storageId);
+
+    /**
+     * Copies bytes [offset, offset + length) of the blob to the target, fewer past its end.
+     * @return the number of bytes copied
+     */
+    long transferTo(String storageId, long offset, long length, WritableByteChannel target);
+
+    /** No-op if the blob is already gone */
+    void delete(String storageId);
+}
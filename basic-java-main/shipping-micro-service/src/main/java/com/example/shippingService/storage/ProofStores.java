@@ -0,0 +1,40 @@
+package com.example.shippingService.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * The configured backend, for new contents, and the lookup of the backend of an existing storageId.
+ */
+@Component
+public class ProofStores {
+
+    private final List<ProofStore> stores;
+    private final ProofStore primary;
+
+    public ProofStores(List<ProofStore> stores, @Value("${shipping.storage.backend:gridfs}") String backend) {
+        this.stores = stores;
+        this.primary = stores.stream()
+                .filter(store -> store.name().equals(backend))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown shipping.storage.backend: " + backend));
+    }
+
+    /** Backend receiving new contents */
+    public ProofStore primary() {
+        return primary;
+    }
+
+    public ProofStore forId(String storageId) {
+        return stores.stream()
+                .filter(store -> store.owns(storageId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No proof store for storageId " + storageId));
+    }
+
+    public void delete(String storageId) {
+        forId(storageId).delete(storageId);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.shippingService.storage;
+
+/**
+ * A blob being written, see {@link ProofStore#create}. Not thread-safe.
+ */
+public interface ProofWriter {
+
+    void write(byte[] data);
+
+    /**
+     * Makes the blob readable.
+     * @return its storageId
+     */
+    String commit();
+
+    /** Drops what was written; safe to call after a failed write or commit */
+    void abort();
+}
@@ -2,6 +2,7 @@ package com.example.shippingService;
 
 import com.example.shippingService.dtos.ProofUploadRequest;
 import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.entities.StoredFile;
 import com.example.shippingService.repositories.ShipmentRepository;
 import com.example.shippingService.repositories.StoredFileRepository;
 import com.example.shippingService.services.FileStorageService;
@@ -16,6 +17,8 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -56,6 +59,7 @@ class FileStorageServiceTest {
     }
 
     @Test
+    @SuppressWarnings("deprecation")   // the legacy inline content must stay empty
     void testStoreFileMongo() throws IOException {
         // Fichier exemple en base64
         String base64Content = "VGhpcyBpcyBhIHRlc3QgZmlsZQ=="; // "This is a test file"
@@ -72,13 +76,55 @@ class FileStorageServiceTest {
         assertThat(response).isNotNull();
         assertThat(response.get("shipmentId")).isEqualTo(shipment.getShipmentId());
         assertThat(response.get("type")).isEqualTo("PROOF");
-        assertThat(response.get("fileBase64")).isEqualTo(base64Content);
+        assertThat(response).doesNotContainKey("fileBase64");
         assertThat(response.get("filename")).isEqualTo("test.txt");
         assertThat(response.get("contentType")).isEqualTo("text/plain");
+        assertThat(response.get("size")).isEqualTo(19L);
 
-        // Vérification dans la base
+        // Vérification dans la base : métadonnées seulement, contenu dans GridFS
         var storedFile = storedFileRepository.findByShipmentIdAndType(shipment.getShipmentId(), "PROOF");
         assertThat(storedFile).isNotNull();
-        assertThat(storedFile.getFileBase64()).isEqualTo(base64Content);
+        assertThat(storedFile.getFileBase64()).isNull();
+        assertThat(storedFile.getStorageId()).isNotNull();
+        assertThat(storedFile.getSize()).isEqualTo(19L);
+
+        Map<String, Object> proof = fileStorageService.getProof(shipment.getShipmentId(), "PROOF", null);
+        assertThat(proof.get("fileBase64")).isEqualTo(base64Content);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")   // a legacy inline content, never part of a listing
+    void listingKeepsTheLatestProofPerTypeWithoutContent() {
+        Instant now = Instant.now();
+        storedFileRepository.saveAll(List.of(
+                storedFile("SHIP-A", "POD", "st-old", now.minusSeconds(60)).fileBase64("bGVnYWN5").build(),
+                storedFile("SHIP-A", "POD", "st-new", now).build(),
+                storedFile("SHIP-A", "PHOTO", "st-photo", now).thumbnailStorageId("st-thumb").build(),
+                storedFile("SHIP-B", "POD", "st-b", now).build(),
+                storedFile("SHIP-OTHER", "POD", "st-other", now).build()
+        ));
+
+        List<Map<String, Object>> proofs = fileStorageService.listProofs(List.of("SHIP-A", "SHIP-B"));
+
+        assertThat(proofs).extracting(p -> p.get("shipmentId") + "/" + p.get("type") + "=" + p.get("storageId"))
+                .containsExactly("SHIP-A/PHOTO=st-photo", "SHIP-A/POD=st-new", "SHIP-B/POD=st-b");
+        assertThat(proofs.get(0)).containsEntry("thumbnail", true).containsEntry("hash", "hash-st-photo")
+                .containsEntry("size", 42L).doesNotContainKey("fileBase64");
+
+        // the query itself leaves the legacy content in Mongo
+        assertThat(storedFileRepository.findMetadataByShipmentIdIn(List.of("SHIP-A")))
+                .allSatisfy(file -> assertThat(file.getFileBase64()).isNull());
+    }
+
+    private static StoredFile.StoredFileBuilder storedFile(String shipmentId, String type, String storageId, Instant uploadedAt) {
+        return StoredFile.builder()
+                .shipmentId(shipmentId)
+                .type(type)
+                .filename(type.toLowerCase() + ".jpg")
+                .contentType("image/jpeg")
+                .storageId(storageId)
+                .contentHash("hash-" + storageId)
+                .size(42L)
+                .uploadedAt(uploadedAt);
     }
 }
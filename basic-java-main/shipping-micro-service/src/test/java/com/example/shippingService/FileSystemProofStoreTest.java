@@ -0,0 +1,75 @@
+package com.example.shippingService;
+
+import com.example.shippingService.storage.FileSystemProofStore;
+import com.example.shippingService.storage.ProofWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileSystemProofStoreTest {
+
+    @TempDir
+    Path root;
+
+    private final byte[] content = new byte[100_000];
+
+    @Test
+    void committedBlobIsReadBackWholeOrInRanges() {
+        new Random(7).nextBytes(content);
+        FileSystemProofStore store = new FileSystemProofStore(root);
+
+        ProofWriter writer = store.create("SHIP-1_label", Map.of());
+        writer.write(Arrays.copyOfRange(content, 0, 40_000));
+        writer.write(Arrays.copyOfRange(content, 40_000, content.length));
+        String storageId = writer.commit();
+
+        assertThat(store.owns(storageId)).isTrue();
+        assertThat(store.size(storageId)).isEqualTo(content.length);
+        assertThat(read(store, storageId, 0, Long.MAX_VALUE)).isEqualTo(content);
+        assertThat(read(store, storageId, 99_990, 1_000)).isEqualTo(Arrays.copyOfRange(content, 99_990, 100_000));
+        assertThat(read(store, storageId, 200_000, 10)).isEmpty();
+
+        store.delete(storageId);
+        assertThatThrownBy(() -> store.size(storageId)).isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void abortedBlobLeavesNoFile() throws Exception {
+        FileSystemProofStore store = new FileSystemProofStore(root);
+
+        ProofWriter writer = store.create("SHIP-1_label", Map.of());
+        writer.write(new byte[1024]);
+        writer.abort();
+
+        try (Stream<Path> files = Files.walk(root)) {
+            assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void onlyItsOwnIdsAreAccepted() {
+        FileSystemProofStore store = new FileSystemProofStore(root);
+
+        assertThat(store.owns("65a1f0c2e4b0a1b2c3d4e5f6")).isFalse();   // GridFS ObjectId
+        assertThat(store.owns("fs-../../../../etc/passwd-00000000000")).isFalse();
+        assertThatThrownBy(() -> store.delete("fs-../secret")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte[] read(FileSystemProofStore store, String storageId, long offset, long length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.transferTo(storageId, offset, length, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+}
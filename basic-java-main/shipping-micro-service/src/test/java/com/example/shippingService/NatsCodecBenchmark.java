@@ -0,0 +1,137 @@
+package com.example.shippingService;
+
+import com.example.shippingService.dtos.ContactInfo;
+import com.example.shippingService.dtos.ShipmentIdRequest;
+import com.example.shippingService.dtos.ShipmentResponse;
+import com.example.shippingService.listener.NatsCodec;
+import com.example.shippingService.listener.NatsReply;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time and allocation per request of NatsCodec against the Map-based path it replaced
+ * (readValue into a Map, convertValue of the data, pretty-printed writeValueAsString, getBytes).
+ * One request = decode a shipmentId request + encode a reply holding a page of shipments.
+ * JMH is not available to this build: warm-up then timed rounds; allocation is the thread's
+ * allocated bytes as reported by the JVM.
+ * <pre>
+ *   mvn test -Dtest=NatsCodecBenchmark -Dbenchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NatsCodecBenchmark {
+
+    private static final int PAGE = 50;
+    private static final int WARM_UP = 5_000;
+    private static final int OPERATIONS = 5_000;
+
+    // Same setup as NatsConfig (pretty printing included)
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final NatsCodec codec = new NatsCodec(objectMapper);
+    private final Message request = NatsMessage.builder()
+            .subject("shipping.getByShipmentId")
+            .data("{\"data\":{\"shipmentId\":\"SHIP-1\"}}".getBytes(StandardCharsets.UTF_8))
+            .build();
+    private final List<ShipmentResponse> page = page();
+
+    @Test
+    void codecAgainstMapBasedPath() throws Exception {
+        Result legacy = measure(this::legacy);
+        Result codec = measure(this::codec);
+
+        System.out.printf("NATS request, %d shipments per reply%n", PAGE);
+        System.out.printf("  map-based : %,8.0f ns/op  %,9.0f B/op%n", legacy.nanos(), legacy.bytes());
+        System.out.printf("  NatsCodec : %,8.0f ns/op  %,9.0f B/op%n", codec.nanos(), codec.bytes());
+    }
+
+    // ==== PATHS ====
+
+    @SuppressWarnings("unchecked")
+    private int legacy() throws Exception {
+        Map<String, Object> payload = objectMapper.readValue(
+                new String(request.getData(), StandardCharsets.UTF_8), Map.class);
+        String shipmentId = (String) ((Map<String, Object>) payload.get("data")).get("shipmentId");
+
+        Map<String, Object> reply = new HashMap<>();
+        reply.put("success", true);
+        reply.put("status", "success");
+        reply.put("source", "Shipping-service");
+        reply.put("message", "All shipments retrieved successfully");
+        List<Object> data = new ArrayList<>(page.size());
+        for (ShipmentResponse shipment : page) {
+            data.add(objectMapper.convertValue(shipment, Map.class));
+        }
+        reply.put("data", data);
+        reply.put("instanceId", "shipping-1");
+        return shipmentId.length() + objectMapper.writeValueAsString(reply).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private int codec() throws Exception {
+        String shipmentId = codec.decode(request, ShipmentIdRequest.class).getShipmentId();
+
+        NatsReply<List<ShipmentResponse>> reply = NatsReply.success("All shipments retrieved successfully", page);
+        reply.setInstanceId("shipping-1");
+        return shipmentId.length() + codec.encode(reply).length;
+    }
+
+    // ==== HARNESS ====
+
+    private interface Operation {
+        int run() throws Exception;
+    }
+
+    private record Result(double nanos, double bytes) {}
+
+    private static Result measure(Operation operation) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < WARM_UP; i++) {
+            sink += operation.run();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            sink += operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+        if (sink == 0) throw new IllegalStateException("nothing encoded");
+        return new Result((double) elapsed / OPERATIONS, (double) allocated / OPERATIONS);
+    }
+
+    private static List<ShipmentResponse> page() {
+        List<ShipmentResponse> page = new ArrayList<>(PAGE);
+        for (int i = 0; i < PAGE; i++) {
+            ShipmentResponse shipment = new ShipmentResponse();
+            shipment.setShipmentId("SHIP-" + i);
+            shipment.setUserId((long) i);
+            shipment.setCarrier("DHL");
+            shipment.setWeight(2.5);
+            shipment.setSender(new ContactInfo());
+            shipment.setStatusHistory(List.of(Map.of("status", "CREATED")));
+            shipment.setCreatedAt(Instant.parse("2025-01-01T10:00:00Z"));
+            page.add(shipment);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.shippingService;
+
+import com.example.shippingService.dtos.AddTrackingStatusRequest;
+import com.example.shippingService.dtos.ContactInfo;
+import com.example.shippingService.dtos.ShipmentIdRequest;
+import com.example.shippingService.dtos.ShipmentResponse;
+import com.example.shippingService.exception.ErrorMessages;
+import com.example.shippingService.listener.NatsCodec;
+import com.example.shippingService.listener.NatsReply;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NatsCodecTest {
+
+    // Same setup as NatsConfig (pretty printing included)
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final NatsCodec codec = new NatsCodec(objectMapper);
+
+    @Test
+    void decodesShipmentIdFromRootOrData() throws Exception {
+        assertThat(codec.decode(message("{\"shipmentId\":\"SHIP-1\"}"), ShipmentIdRequest.class).getShipmentId())
+                .isEqualTo("SHIP-1");
+        assertThat(codec.decode(message("{\"data\":{\"shipmentId\":\"SHIP-2\"}}"), ShipmentIdRequest.class).getShipmentId())
+                .isEqualTo("SHIP-2");
+    }
+
+    @Test
+    void reportsUnbindablePayloadWithTheGivenMessage() {
+        assertThatThrownBy(() -> codec.decode(
+                message("{\"data\":\"oops\"}"), ShipmentIdRequest.class, ErrorMessages.INVALID_GET_BY_ID_PAYLOAD))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Invalid payload for shipping.getByShipmentId: {\"data\":\"oops\"}");
+    }
+
+    @Test
+    void trackingAddTakesUserIdFromRootAndIsLenient() throws Exception {
+        AddTrackingStatusRequest wrapped = codec.decode(message(
+                "{\"userId\":\"42\",\"data\":{\"trackingNumber\":\"TRK-1\",\"status\":\"IN_TRANSIT\",\"userId\":7}}"
+        ), AddTrackingStatusRequest.class);
+        assertThat(wrapped.getUserId()).isEqualTo(42L);
+        assertThat(wrapped.getTrackingNumber()).isEqualTo("TRK-1");
+        assertThat(wrapped.getStatus()).isEqualTo("IN_TRANSIT");
+
+        for (String userId : List.of("\"\"", "\"null\"", "\"abc\"", "null")) {
+            AddTrackingStatusRequest flat = codec.decode(message(
+                    "{\"trackingNumber\":\"TRK-1\",\"userId\":" + userId + "}"
+            ), AddTrackingStatusRequest.class);
+            assertThat(flat.getUserId()).as(userId).isNull();
+        }
+    }
+
+    @Test
+    void encodedReplyMatchesThePreviousMapBasedReply() throws Exception {
+        ShipmentResponse shipment = new ShipmentResponse();
+        shipment.setShipmentId("SHIP-1");
+        shipment.setUserId(3L);
+        shipment.setCarrier("DHL");
+        shipment.setWeight(2.5);
+        shipment.setSender(new ContactInfo());
+        shipment.setStatusHistory(List.of(Map.of("status", "CREATED")));
+        shipment.setCreatedAt(Instant.parse("2025-01-01T10:00:00Z"));
+
+        // Previous path: convertValue into HashMaps, then writeValueAsString
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("success", true);
+        legacy.put("status", "success");
+        legacy.put("source", "Shipping-service");
+        legacy.put("message", "All shipments retrieved successfully");
+        legacy.put("data", List.of(objectMapper.convertValue(shipment, Map.class)));
+        legacy.put("instanceId", "shipping-1");
+
+        NatsReply<List<ShipmentResponse>> reply =
+                NatsReply.success("All shipments retrieved successfully", List.of(shipment));
+        reply.setInstanceId("shipping-1");
+        byte[] encoded = codec.encode(reply);
+
+        assertThat(objectMapper.readTree(encoded))
+                .isEqualTo(objectMapper.readTree(objectMapper.writeValueAsString(legacy)));
+        assertThat(new String(encoded, StandardCharsets.UTF_8)).doesNotContain("\n");
+    }
+
+    private static Message message(String json) {
+        return NatsMessage.builder()
+                .subject("shipping.test")
+                .data(json.getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+}
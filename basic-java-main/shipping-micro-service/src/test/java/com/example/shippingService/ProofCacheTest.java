@@ -0,0 +1,83 @@
+package com.example.shippingService;
+
+import com.example.shippingService.cache.ProofCache;
+import com.example.shippingService.cache.ProofCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProofCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProofCache cache;
+
+    @BeforeEach
+    void setUp() {
+        ProofCacheProperties properties = new ProofCacheProperties();
+        properties.setMaxEntrySize(DataSize.ofKilobytes(64));
+        properties.setMemorySize(DataSize.ofKilobytes(256));
+        properties.getDisk().setDirectory(directory);
+        properties.getDisk().setSize(DataSize.ofMegabytes(4));
+        properties.getDisk().setSegmentSize(DataSize.ofKilobytes(256));
+
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ProofCache(properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    void filesOverTheEntryLimitAreNotCached() {
+        cache.put("big", new byte[128 * 1024]);
+
+        assertThat(cache.get("big")).isNull();
+        assertThat(meterRegistry.get("shipping.proof.cache.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void memoryIsBoundedInBytesAndOverflowsToDisk() {
+        for (int i = 0; i < 16; i++) {
+            cache.put("proof-" + i, filled(i, 60 * 1024));
+        }
+
+        double memoryBytes = meterRegistry.get("shipping.proof.cache.bytes").tag("tier", "memory").gauge().value();
+        assertThat(memoryBytes).isLessThanOrEqualTo(256 * 1024);
+
+        // every proof is still served, from one tier or the other
+        for (int i = 0; i < 16; i++) {
+            assertThat(cache.get("proof-" + i)).isEqualTo(filled(i, 60 * 1024));
+        }
+        assertThat(meterRegistry.get("shipping.proof.cache.requests")
+                .tag("tier", "disk").tag("result", "hit").counter().count()).isPositive();
+    }
+
+    @Test
+    void evictedProofIsGoneFromBothTiers() {
+        cache.put("proof", filled(1, 1024));
+        cache.evict("proof");
+
+        assertThat(cache.get("proof")).isNull();
+        assertThat(meterRegistry.get("shipping.proof.cache.requests")
+                .tag("tier", "all").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    private static byte[] filled(int value, int size) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.shippingService;
+
+import com.example.shippingService.images.ProofImageProcessor;
+import com.example.shippingService.images.ProofImageProperties;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProofImageProcessorTest {
+
+    private final ProofImageProperties properties = new ProofImageProperties();
+    private final ProofImageProcessor processor = new ProofImageProcessor(properties);
+
+    @Test
+    void oversizedPhotoIsDownscaledToMaxDimension() throws IOException {
+        properties.setMaxDimension(800);
+        byte[] photo = jpeg(3000, 1500);
+
+        ProofImageProcessor.Image optimized = processor.optimize(photo, "image/jpeg");
+
+        assertThat(optimized.content().length).isLessThan(photo.length);
+        assertThat(optimized.contentType()).isEqualTo("image/jpeg");
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(optimized.content()));
+        assertThat(image.getWidth()).isEqualTo(800);
+        assertThat(image.getHeight()).isEqualTo(400);
+    }
+
+    @Test
+    void smallImagesAndOtherFilesAreKeptAsIs() throws IOException {
+        byte[] photo = jpeg(640, 480);
+        byte[] pdf = "%PDF-1.4 label".getBytes();
+
+        assertThat(processor.optimize(photo, "image/jpeg").content()).isSameAs(photo);
+        assertThat(processor.optimize(pdf, "application/pdf").content()).isSameAs(pdf);
+        assertThat(processor.thumbnail(pdf, "application/pdf")).isNull();
+        // announced as an image, but is not one
+        assertThat(processor.optimize(pdf, "image/png").content()).isSameAs(pdf);
+    }
+
+    @Test
+    void thumbnailOfDeliveryPhotoIsSmallJpeg() throws IOException {
+        byte[] photo;
+        try (InputStream in = getClass().getResourceAsStream("/proofs/DELIVERY.jpg")) {
+            photo = in.readAllBytes();
+        }
+        properties.setThumbnailDimension(64);
+
+        byte[] thumbnail = processor.thumbnail(photo, "image/jpeg");
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(thumbnail));
+        assertThat(Math.max(image.getWidth(), image.getHeight())).isEqualTo(64);
+        assertThat(thumbnail.length).isLessThan(photo.length);
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            g.setColor(new Color(random.nextInt(0xffffff)));
+            g.fillRect(random.nextInt(width), random.nextInt(height), 40, 40);
+        }
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+}
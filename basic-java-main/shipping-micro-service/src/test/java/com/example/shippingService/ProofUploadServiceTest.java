@@ -0,0 +1,342 @@
+package com.example.shippingService;
+
+import com.example.shippingService.cache.ProofCache;
+import com.example.shippingService.cache.ProofCacheProperties;
+import com.example.shippingService.dtos.ProofDedupReport;
+import com.example.shippingService.dtos.ProofReadRequest;
+import com.example.shippingService.dtos.ProofUploadBeginRequest;
+import com.example.shippingService.entities.ProofContent;
+import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.entities.StoredFile;
+import com.example.shippingService.exception.ServiceOverloadedException;
+import com.example.shippingService.exception.UploadRejectedException;
+import com.example.shippingService.images.ProofImageProcessor;
+import com.example.shippingService.images.ProofImageProperties;
+import com.example.shippingService.images.ProofThumbnailer;
+import com.example.shippingService.repositories.ShipmentRepository;
+import com.example.shippingService.repositories.StoredFileRepository;
+import com.example.shippingService.services.FileStorageService;
+import com.example.shippingService.services.ProofContentStore;
+import com.example.shippingService.services.ProofUploadService;
+import com.example.shippingService.storage.FileSystemProofStore;
+import com.example.shippingService.storage.GridFsProofStore;
+import com.example.shippingService.storage.ProofStores;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataMongoTest(properties = {"shipping.upload.chunk-size=1024", "shipping.images.max-dimension=800"})
+@Import({ProofUploadService.class, FileStorageService.class, ProofContentStore.class,
+        ProofStores.class, GridFsProofStore.class, FileSystemProofStore.class,
+        ProofImageProperties.class, ProofImageProcessor.class, ProofThumbnailer.class, ProofUploadServiceTest.Config.class})
+@Testcontainers(disabledWithoutDocker = true)
+class ProofUploadServiceTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> mongo.getConnectionString() + "/shipping");
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        GridFSBucket gridFSBucket(MongoDatabaseFactory factory) {
+            return GridFSBuckets.create(factory.getMongoDatabase());
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ProofCache proofCache() {
+            ProofCacheProperties properties = new ProofCacheProperties();
+            properties.getDisk().setEnabled(false);
+            return new ProofCache(properties, new SimpleMeterRegistry());
+        }
+    }
+
+    @Autowired
+    private ProofUploadService uploadService;
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private GridFSBucket gridFSBucket;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ProofContentStore proofContentStore;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final byte[] file = new byte[10_000];
+
+    @BeforeEach
+    void setUp() {
+        shipmentRepository.deleteAll();
+        storedFileRepository.deleteAll();
+        mongoTemplate.dropCollection(ProofContent.class);
+        gridFSBucket.drop();
+        shipmentRepository.save(Shipment.builder().shipmentId("SHIP-UP").trackingNumber("LP-UP").build());
+        shipmentRepository.save(Shipment.builder().shipmentId("SHIP-UP-2").trackingNumber("LP-UP-2").build());
+        new Random(42).nextBytes(file);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")   // the legacy inline content must stay empty
+    void chunksEndUpAsOneGridFsFile() throws Exception {
+        String uploadId = uploadService.begin(beginRequest()).getUploadId();
+        for (int seq = 0, from = 0; from < file.length; seq++, from += 1024) {
+            byte[] chunk = Arrays.copyOfRange(file, from, Math.min(from + 1024, file.length));
+            uploadService.write(uploadId, seq, crc32(chunk), chunk);
+        }
+
+        Map<String, Object> stored = uploadService.commit(uploadId, file.length, sha256(file));
+
+        assertThat(stored).containsEntry("size", (long) file.length);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        gridFSBucket.downloadToStream("SHIP-UP_deliveryProof", content);
+        assertThat(content.toByteArray()).isEqualTo(file);
+        StoredFile metadata = storedFileRepository.findByShipmentIdAndType("SHIP-UP", "deliveryProof");
+        assertThat(metadata.getStorageId()).isNotNull();
+        assertThat(metadata.getSize()).isEqualTo((long) file.length);
+        assertThat(metadata.getContentHash()).isEqualTo(sha256(file));
+        assertThat(metadata.getFileBase64()).isNull();
+    }
+
+    @Test
+    void identicalContentIsStoredOnceAndKeptWhileReferenced() throws Exception {
+        upload(beginRequest());
+        ProofUploadBeginRequest other = beginRequest();
+        other.setShipmentId("SHIP-UP-2");
+        upload(other);
+
+        assertThat(gridFSBucket.find()).hasSize(1);
+        ProofDedupReport report = proofContentStore.report();
+        assertThat(report.getFiles()).isEqualTo(2);
+        assertThat(report.getContents()).isEqualTo(1);
+        assertThat(report.getBytesSaved()).isEqualTo(file.length);
+
+        fileStorageService.deleteProof("SHIP-UP", "deliveryProof");
+        assertThat(gridFSBucket.find()).hasSize(1);
+        assertThat(fileStorageService.getProof("SHIP-UP-2", "deliveryProof", null)).containsEntry("size", (long) file.length);
+
+        fileStorageService.deleteProof("SHIP-UP-2", "deliveryProof");
+        assertThat(gridFSBucket.find()).isEmpty();
+        assertThat(mongoTemplate.count(new Query(), ProofContent.class)).isZero();
+    }
+
+    @Test
+    void contentIsReadBackInSlices() throws Exception {
+        upload(beginRequest());
+        Map<String, Object> info = fileStorageService.getProofInfo("SHIP-UP", "deliveryProof", null);
+        assertThat(info).containsEntry("etag", sha256(file)).containsEntry("size", (long) file.length);
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ProofReadRequest read = new ProofReadRequest();
+        read.setStorageId((String) info.get("storageId"));
+        read.setLength(3000);
+        for (long offset = 0; offset < file.length; offset += 3000) {
+            read.setOffset(offset);
+            content.write(fileStorageService.readProof(read));
+        }
+        assertThat(content.toByteArray()).isEqualTo(file);
+
+        read.setOffset(file.length + 10);
+        assertThat(fileStorageService.readProof(read)).isEmpty();
+    }
+
+    @Test
+    void chunkOutOfOrderAbortsTheUpload() {
+        String uploadId = uploadService.begin(beginRequest()).getUploadId();
+        byte[] chunk = Arrays.copyOf(file, 1024);
+
+        assertThatThrownBy(() -> uploadService.write(uploadId, 1, crc32(chunk), chunk))
+                .isInstanceOf(UploadRejectedException.class);
+        // the session is gone
+        assertThatThrownBy(() -> uploadService.write(uploadId, 0, crc32(chunk), chunk))
+                .isInstanceOf(UploadRejectedException.class);
+    }
+
+    @Test
+    void wrongChecksumStoresNothing() {
+        String uploadId = uploadService.begin(beginRequest()).getUploadId();
+        byte[] chunk = Arrays.copyOf(file, 1024);
+        uploadService.write(uploadId, 0, crc32(chunk), chunk);
+
+        assertThatThrownBy(() -> uploadService.commit(uploadId, 1024, "00"))
+                .isInstanceOf(UploadRejectedException.class);
+        assertThat(gridFSBucket.find().first()).isNull();
+        assertThat(storedFileRepository.count()).isZero();
+    }
+
+    @Test
+    void concurrentBeginsNeverOpenMoreThanMaxSessions() throws Exception {
+        int maxSessions = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(maxSessions * 2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> begins = new ArrayList<>();
+        for (int i = 0; i < maxSessions * 2; i++) {
+            begins.add(executor.submit(() -> {
+                start.await();
+                return uploadService.begin(beginRequest()).getUploadId();
+            }));
+        }
+        start.countDown();
+
+        List<String> opened = new ArrayList<>();
+        int refused = 0;
+        for (Future<String> begin : begins) {
+            try {
+                opened.add(begin.get(10, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(ServiceOverloadedException.class);
+                refused++;
+            }
+        }
+        executor.shutdown();
+        assertThat(opened).hasSize(maxSessions);
+        assertThat(refused).isEqualTo(maxSessions);
+
+        // each way out gives its slot back, once
+        uploadService.abort(opened.get(0), "test");
+        uploadService.abort(opened.get(0), "test again");
+        String next = uploadService.begin(beginRequest()).getUploadId();
+        assertThatThrownBy(() -> uploadService.begin(beginRequest())).isInstanceOf(ServiceOverloadedException.class);
+
+        assertThatThrownBy(() -> uploadService.commit(next, 1, "00")).isInstanceOf(UploadRejectedException.class);
+        uploadService.begin(beginRequest());
+
+        Thread.sleep(5);
+        assertThat(uploadService.abortIdle(Duration.ZERO)).hasSize(maxSessions);
+        for (int i = 0; i < maxSessions; i++) {
+            uploadService.begin(beginRequest());
+        }
+        Thread.sleep(5);
+        uploadService.abortIdle(Duration.ZERO);
+    }
+
+    @Test
+    void oversizedImageIsDownscaledAtCommit() throws Exception {
+        byte[] photo = jpeg(3000, 1500);
+        ProofUploadBeginRequest request = beginRequest();
+        request.setFilename("proof.jpg");
+        request.setContentType("image/jpeg");
+
+        Map<String, Object> stored = upload(request, photo);
+
+        StoredFile metadata = storedFileRepository.findByShipmentIdAndType("SHIP-UP", "deliveryProof");
+        assertThat(metadata.getSize()).isLessThan((long) photo.length);
+        assertThat(stored).containsEntry("size", metadata.getSize()).containsEntry("sha256", sha256(photo));
+
+        byte[] content = Base64.decodeBase64(
+                (String) fileStorageService.getProof("SHIP-UP", "deliveryProof", null).get("fileBase64"));
+        assertThat(metadata.getContentHash()).isEqualTo(sha256(content));
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(content));
+        assertThat(image.getWidth()).isEqualTo(800);
+        assertThat(image.getHeight()).isEqualTo(400);
+        // only the re-encoded image is left in the proof store
+        assertThat(gridFSBucket.find()).hasSize(1);
+    }
+
+    private void upload(ProofUploadBeginRequest request) throws Exception {
+        upload(request, file);
+    }
+
+    private Map<String, Object> upload(ProofUploadBeginRequest request, byte[] content) throws Exception {
+        String uploadId = uploadService.begin(request).getUploadId();
+        for (int seq = 0, from = 0; from < content.length; seq++, from += 1024) {
+            byte[] chunk = Arrays.copyOfRange(content, from, Math.min(from + 1024, content.length));
+            uploadService.write(uploadId, seq, crc32(chunk), chunk);
+        }
+        return uploadService.commit(uploadId, content.length, sha256(content));
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            g.setColor(new Color(random.nextInt(0xffffff)));
+            g.fillRect(random.nextInt(width), random.nextInt(height), 40, 40);
+        }
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    private static ProofUploadBeginRequest beginRequest() {
+        ProofUploadBeginRequest request = new ProofUploadBeginRequest();
+        request.setShipmentId("SHIP-UP");
+        request.setType("deliveryProof");
+        request.setFilename("proof.bin");
+        request.setContentType("application/octet-stream");
+        return request;
+    }
+
+    private static long crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.shippingService;
+
+import com.example.shippingService.cache.CacheTtlPolicy;
+import com.example.shippingService.cache.ShipmentCacheInvalidator;
+import com.example.shippingService.dtos.ShipmentResponse;
+import com.example.shippingService.dtos.TrackingResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShipmentCacheInvalidatorTest {
+
+    private ConcurrentMapCacheManager cacheManager;
+    private ShipmentCacheInvalidator invalidator;
+    private Cache shipments;
+    private Cache tracking;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager("shipments", "tracking");
+        invalidator = new ShipmentCacheInvalidator(cacheManager);
+        shipments = cacheManager.getCache("shipments");
+        tracking = cacheManager.getCache("tracking");
+
+        shipments.put("SHIP-1", shipment("LP-OLD", "IN_TRANSIT"));
+        tracking.put("LP-OLD", trackingResponse("IN_TRANSIT"));
+    }
+
+    @Test
+    void newTrackingNumberDropsTheOldTrackingEntry() {
+        invalidator.shipmentSaved(shipment("LP-NEW", "IN_TRANSIT"), "LP-OLD");
+
+        assertThat(((ShipmentResponse) shipments.get("SHIP-1").get()).getTrackingNumber()).isEqualTo("LP-NEW");
+        assertThat(tracking.get("LP-OLD")).isNull();
+    }
+
+    @Test
+    void trackingEventRefreshesTrackingAndDropsTheStaleShipment() {
+        invalidator.trackingChanged("SHIP-1", "LP-OLD", trackingResponse("DELIVERED"));
+
+        assertThat(((TrackingResponse) tracking.get("LP-OLD").get()).getCurrentStatus()).isEqualTo("DELIVERED");
+        assertThat(shipments.get("SHIP-1")).isNull();
+    }
+
+    @Test
+    void deleteDropsEveryDerivedEntry() {
+        invalidator.shipmentDeleted("SHIP-1", "LP-OLD");
+
+        assertThat(shipments.get("SHIP-1")).isNull();
+        assertThat(tracking.get("LP-OLD")).isNull();
+    }
+
+    @Test
+    void deliveredShipmentsGetTheLongTtl() {
+        CacheTtlPolicy policy = new CacheTtlPolicy(Duration.ofMinutes(15), Duration.ofHours(6), Set.of("DELIVERED"));
+
+        assertThat(policy.ttlFor(shipment("LP-1", "delivered"))).isEqualTo(Duration.ofHours(6));
+        assertThat(policy.ttlFor(trackingResponse("DELIVERED"))).isEqualTo(Duration.ofHours(6));
+        assertThat(policy.ttlFor(trackingResponse("IN_TRANSIT"))).isEqualTo(Duration.ofMinutes(15));
+        assertThat(policy.ttlFor(new byte[0])).isEqualTo(Duration.ofMinutes(15));
+    }
+
+    @Test
+    void revisionIsReadBackFromTheEtag() {
+        ShipmentResponse shipment = shipment("LP-1", "IN_TRANSIT");
+        shipment.setEtag("r12");
+
+        assertThat(ShipmentCacheInvalidator.revisionOf(shipment)).isEqualTo(12);
+        assertThat(ShipmentCacheInvalidator.revisionOf(TrackingResponse.builder().etag("r3").build())).isEqualTo(3);
+        assertThat(ShipmentCacheInvalidator.revisionOf(trackingResponse("IN_TRANSIT"))).isEqualTo(-1);
+        assertThat(ShipmentCacheInvalidator.revisionOf("r5")).isEqualTo(-1);
+    }
+
+    private static ShipmentResponse shipment(String trackingNumber, String status) {
+        ShipmentResponse response = new ShipmentResponse();
+        response.setShipmentId("SHIP-1");
+        response.setTrackingNumber(trackingNumber);
+        response.setStatus(status);
+        return response;
+    }
+
+    private static TrackingResponse trackingResponse(String status) {
+        return TrackingResponse.builder().shipmentId("SHIP-1").currentStatus(status).build();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.shippingService;
+
+import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.repositories.ShipmentCursor;
+import com.example.shippingService.repositories.ShipmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataMongoTest
+@Testcontainers(disabledWithoutDocker = true)
+class ShipmentPaginationTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> mongo.getConnectionString() + "/shipping");
+    }
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @BeforeEach
+    void seed() {
+        shipmentRepository.deleteAll();
+
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        List<Shipment> shipments = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            shipments.add(Shipment.builder()
+                    .shipmentId(String.format("SHIP-%03d", i))
+                    .trackingNumber("LP-" + i)
+                    // several shipments share the same createdAt, a few legacy ones have none
+                    .createdAt(i < 3 ? null : base.plusSeconds(i / 4))
+                    .build());
+        }
+        shipmentRepository.saveAll(shipments);
+    }
+
+    @Test
+    void walksEveryShipmentOnceInKeysetOrder() {
+        List<String> seen = new ArrayList<>();
+        ShipmentCursor cursor = null;
+        List<Shipment> page;
+
+        do {
+            page = shipmentRepository.findPageAfter(cursor, 7);
+            page.forEach(s -> seen.add(s.getShipmentId()));
+            if (!page.isEmpty()) {
+                Shipment last = page.get(page.size() - 1);
+                // go through the opaque token, as a client would
+                cursor = ShipmentCursor.decode(new ShipmentCursor(last.getCreatedAt(), last.getShipmentId()).encode());
+            }
+        } while (page.size() == 7);
+
+        assertThat(seen).hasSize(25);
+        assertThat(new HashSet<>(seen)).hasSize(25);
+        assertThat(seen.subList(0, 3)).containsExactly("SHIP-000", "SHIP-001", "SHIP-002");
+        assertThat(seen).isSorted();
+    }
+}
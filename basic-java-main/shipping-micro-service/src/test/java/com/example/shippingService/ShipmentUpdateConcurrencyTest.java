@@ -0,0 +1,124 @@
+package com.example.shippingService;
+
+import com.example.shippingService.cache.CacheLoaders;
+import com.example.shippingService.cache.ShipmentCacheInvalidator;
+import com.example.shippingService.dtos.AddTrackingStatusRequest;
+import com.example.shippingService.dtos.ShipmentRequest;
+import com.example.shippingService.dtos.TrackingResponse;
+import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.mappers.ShipmentMapper;
+import com.example.shippingService.repositories.ShipmentRepository;
+import com.example.shippingService.services.ShipmentService;
+import com.example.shippingService.services.TrackingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Updates of the shipment details racing with scans of the same parcel: neither may undo the other.
+ */
+@DataMongoTest(properties = {
+        "shipping.tracking.bucket-size=16",
+        "shipping.tracking.recent-events=10"
+})
+@Import({TrackingService.class, ShipmentService.class, ShipmentMapper.class, CacheLoaders.class})
+@Testcontainers(disabledWithoutDocker = true)
+class ShipmentUpdateConcurrencyTest {
+
+    private static final int SCANS = 48;
+    private static final int UPDATES = 48;
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> mongo.getConnectionString() + "/shipping");
+    }
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private ShipmentService shipmentService;
+
+    @Autowired
+    private TrackingService trackingService;
+
+    @MockBean
+    private ShipmentCacheInvalidator cacheInvalidator;
+
+    @Test
+    void updatesDoNotRollBackConcurrentTrackingEvents() throws Exception {
+        shipmentRepository.save(Shipment.builder()
+                .shipmentId("SHIP-RACE")
+                .trackingNumber("LP-RACE")
+                .userId(7L)
+                .carrier("La Poste")
+                .weight_kg(1.0)
+                .currentStatus("CREATED")
+                .trackingEventCount(0L)
+                .revision(1L)
+                .createdAt(Instant.now())
+                .build());
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        for (int i = 0; i < SCANS; i++) {
+            AddTrackingStatusRequest scan = new AddTrackingStatusRequest();
+            scan.setStatus("SCAN-" + i);
+            results.add(pool.submit(() -> {
+                start.await();
+                return trackingService.addTrackingStatusByTrackingNumber("LP-RACE", scan, null);
+            }));
+        }
+        for (int i = 0; i < UPDATES; i++) {
+            ShipmentRequest update = new ShipmentRequest();
+            update.setShipmentId("SHIP-RACE");
+            update.setCarrier("Carrier-" + i);
+            update.setWeight(1.0 + i % 5);
+            results.add(pool.submit(() -> {
+                start.await();
+                return shipmentService.updateShipment(update);
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Shipment shipment = shipmentRepository.findByShipmentId("SHIP-RACE").orElseThrow();
+        assertThat(shipment.getTrackingEventCount()).isEqualTo((long) SCANS);
+        assertThat(shipment.getTrackingHistory()).hasSize(10);
+        assertThat(shipment.getCurrentStatus()).startsWith("SCAN-");
+        assertThat(shipment.getCarrier()).startsWith("Carrier-");
+        assertThat(shipment.getRevision()).isEqualTo(1L + SCANS + UPDATES);
+
+        // every scan got its own sequence number, hence its place in the buckets
+        List<String> all = new ArrayList<>();
+        Integer bucket = trackingService.getTrackingInfoByTrackingNumber("LP-RACE").getPreviousBucket();
+        while (bucket != null) {
+            TrackingResponse page = trackingService.getTrackingBucket("LP-RACE", bucket);
+            page.getHistory().forEach(entry -> all.add(entry.getStatus()));
+            bucket = page.getPreviousBucket();
+        }
+        assertThat(all).hasSize(SCANS).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.shippingService;
+
+import com.example.shippingService.config.NatsExecutorProperties;
+import com.example.shippingService.config.ServiceInstance;
+import com.example.shippingService.dtos.ShipmentResponse;
+import com.example.shippingService.listener.ChunkedUploadHandler;
+import com.example.shippingService.listener.NatsCodec;
+import com.example.shippingService.listener.ShippingNatsListener;
+import com.example.shippingService.listener.SubjectExecutorRegistry;
+import com.example.shippingService.mappers.ShipmentMapper;
+import com.example.shippingService.services.FileStorageService;
+import com.example.shippingService.services.ShipmentService;
+import com.example.shippingService.services.TrackingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.Nats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs 1 then 4 in-process replicas of the shipping listener in the same queue group
+ * and checks that every request is answered exactly once and that throughput scales.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ShippingNatsScaleOutTest {
+
+    private static final int REQUESTS = 200;
+    private static final long HANDLER_MILLIS = 20;
+
+    @Container
+    static GenericContainer<?> nats = new GenericContainer<>("nats:2.10-alpine").withExposedPorts(4222);
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final List<ShippingNatsListener> replicas = new ArrayList<>();
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        replicas.forEach(ShippingNatsListener::shutdown);
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    @Test
+    void throughputGrowsWithReplicasAndNoRequestIsHandledTwice() throws Exception {
+        Map<String, Integer> handledPerRequest = new ConcurrentHashMap<>();
+
+        double oneReplica = measureThroughput(1, handledPerRequest);
+        stopReplicas();
+
+        double fourReplicas = measureThroughput(4, handledPerRequest);
+
+        assertThat(handledPerRequest.values()).allMatch(count -> count == 1);
+        assertThat(fourReplicas / oneReplica)
+                .as("throughput 1 replica = %.1f req/s, 4 replicas = %.1f req/s", oneReplica, fourReplicas)
+                .isGreaterThan(2.5);
+    }
+
+    private double measureThroughput(int replicaCount, Map<String, Integer> handledPerRequest) throws Exception {
+        for (int i = 0; i < replicaCount; i++) {
+            startReplica("replica-" + replicaCount + "-" + i, handledPerRequest);
+        }
+
+        Connection client = connect();
+        Set<String> answeringInstances = ConcurrentHashMap.newKeySet();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Message>> replies = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            String payload = "{\"shipmentId\":\"SHIP-" + replicaCount + "-" + i + "\"}";
+            replies.add(client.requestWithTimeout(
+                    "shipping.getByShipmentId",
+                    payload.getBytes(StandardCharsets.UTF_8),
+                    Duration.ofSeconds(30)
+            ));
+        }
+        for (CompletableFuture<Message> reply : replies) {
+            Map<?, ?> body = objectMapper.readValue(reply.get().getData(), Map.class);
+            assertThat(body.get("success")).isEqualTo(true);
+            answeringInstances.add(body.get("instanceId").toString());
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        assertThat(answeringInstances).hasSize(replicaCount);
+        return REQUESTS / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    private void startReplica(String instanceId, Map<String, Integer> handledPerRequest) throws Exception {
+        ShipmentService shipmentService = mock(ShipmentService.class);
+        when(shipmentService.getByShipmentId(anyString())).thenAnswer(invocation -> {
+            String shipmentId = invocation.getArgument(0);
+            handledPerRequest.merge(shipmentId, 1, Integer::sum);
+            Thread.sleep(HANDLER_MILLIS);
+            ShipmentResponse response = new ShipmentResponse();
+            response.setShipmentId(shipmentId);
+            return response;
+        });
+
+        // One worker per replica: scaling has to come from the queue group
+        NatsExecutorProperties properties = new NatsExecutorProperties();
+        properties.getDefaults().setConcurrency(1);
+        properties.getDefaults().setQueueCapacity(REQUESTS);
+
+        ShippingNatsListener listener = new ShippingNatsListener(
+                connect(),
+                shipmentService,
+                mock(TrackingService.class),
+                mock(FileStorageService.class),
+                new NatsCodec(objectMapper),
+                new ShipmentMapper(),
+                new SubjectExecutorRegistry(properties, new SimpleMeterRegistry()),
+                new ServiceInstance(instanceId),
+                mock(ChunkedUploadHandler.class)
+        );
+        ReflectionTestUtils.setField(listener, "queueGroup", "shipping-service");
+        ReflectionTestUtils.setField(listener, "drainTimeout", 5000L);
+        listener.init();
+        replicas.add(listener);
+    }
+
+    private void stopReplicas() {
+        replicas.forEach(ShippingNatsListener::shutdown);
+        replicas.clear();
+    }
+
+    private Connection connect() throws Exception {
+        Connection connection = Nats.connect("nats://" + nats.getHost() + ":" + nats.getMappedPort(4222));
+        connections.add(connection);
+        return connection;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.shippingService;
+
+import com.example.shippingService.config.NatsExecutorProperties;
+import com.example.shippingService.config.ServiceInstance;
+import com.example.shippingService.dtos.ShipmentResponse;
+import com.example.shippingService.listener.ChunkedUploadHandler;
+import com.example.shippingService.listener.NatsCodec;
+import com.example.shippingService.listener.ShippingNatsListener;
+import com.example.shippingService.listener.SubjectExecutorRegistry;
+import com.example.shippingService.mappers.ShipmentMapper;
+import com.example.shippingService.services.FileStorageService;
+import com.example.shippingService.services.ShipmentService;
+import com.example.shippingService.services.TrackingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.nats.client.Connection;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Streamed shipping.getAll: chunks never go over the max payload, and a shipment too large
+ * for a message on its own is left out without breaking the stream.
+ */
+class ShippingNatsStreamTest {
+
+    private static final long MAX_PAYLOAD = 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Connection connection = mock(Connection.class);
+    private final ShipmentService shipmentService = mock(ShipmentService.class);
+
+    @Test
+    void oversizeShipmentIsLeftOutAndTheStreamStillEnds() throws Exception {
+        when(connection.getMaxPayload()).thenReturn(MAX_PAYLOAD);
+        List<List<ShipmentResponse>> pages = List.of(
+                List.of(shipment("SHIP-1", 10), shipment("SHIP-2", 10)),
+                List.of(shipment("SHIP-3", 10), shipment("SHIP-HUGE", 2000))
+        );
+        doAnswer(invocation -> {
+            Consumer<List<ShipmentResponse>> consumer = invocation.getArgument(0);
+            pages.forEach(consumer);
+            return null;
+        }).when(shipmentService).streamAllShipments(any());
+
+        ReflectionTestUtils.invokeMethod(listener(), "streamShipments", NatsMessage.builder()
+                .subject("shipping.getAll")
+                .replyTo("_INBOX.stream")
+                .data("{\"stream\":true}".getBytes())
+                .build());
+
+        ArgumentCaptor<Headers> headers = ArgumentCaptor.forClass(Headers.class);
+        ArgumentCaptor<byte[]> bodies = ArgumentCaptor.forClass(byte[].class);
+        verify(connection, atLeastOnce()).publish(eq("_INBOX.stream"), headers.capture(), bodies.capture());
+
+        List<String> shipmentIds = new ArrayList<>();
+        for (int i = 0; i < bodies.getAllValues().size(); i++) {
+            assertThat(headers.getAllValues().get(i).getFirst(ShippingNatsListener.HEADER_CHUNK_SEQ))
+                    .isEqualTo(String.valueOf(i));
+            assertThat(bodies.getAllValues().get(i).length).isLessThanOrEqualTo((int) MAX_PAYLOAD);
+            for (JsonNode item : objectMapper.readTree(bodies.getAllValues().get(i))) {
+                shipmentIds.add(item.get("shipmentId").asText());
+            }
+        }
+        assertThat(shipmentIds).containsExactly("SHIP-1", "SHIP-2", "SHIP-3");
+        List<Headers> sent = headers.getAllValues();
+        assertThat(sent.get(sent.size() - 1).getFirst(ShippingNatsListener.HEADER_CHUNK_LAST)).isEqualTo("true");
+    }
+
+    private ShippingNatsListener listener() {
+        return new ShippingNatsListener(
+                connection,
+                shipmentService,
+                mock(TrackingService.class),
+                mock(FileStorageService.class),
+                new NatsCodec(objectMapper),
+                new ShipmentMapper(),
+                new SubjectExecutorRegistry(new NatsExecutorProperties(), new SimpleMeterRegistry()),
+                new ServiceInstance("shipping-1"),
+                mock(ChunkedUploadHandler.class)
+        );
+    }
+
+    private static ShipmentResponse shipment(String shipmentId, int carrierLength) {
+        ShipmentResponse shipment = new ShipmentResponse();
+        shipment.setShipmentId(shipmentId);
+        shipment.setCarrier("x".repeat(carrierLength));
+        return shipment;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.shippingService;
+
+import com.example.shippingService.config.NatsExecutorProperties;
+import com.example.shippingService.config.NatsExecutorProperties.RejectionPolicy;
+import com.example.shippingService.listener.SubjectExecutorRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubjectExecutorRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SubjectExecutorRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (registry != null) registry.shutdown();
+    }
+
+    @Test
+    void routesEachSubjectToThePoolOfItsGroup() throws Exception {
+        registry = registry(RejectionPolicy.REJECT, 1);
+
+        assertThat(registry.groupOf("shipping.tracking.get")).isEqualTo("reads");
+        assertThat(registry.groupOf("shipping.unknown")).isEqualTo(NatsExecutorProperties.DEFAULT_GROUP);
+        assertThat(threadOf("shipping.tracking.get")).startsWith("nats-reads-");
+        assertThat(threadOf("shipping.unknown")).startsWith("nats-default-");
+    }
+
+    @Test
+    void aFullGroupDoesNotDelayTheOthers() throws Exception {
+        registry = registry(RejectionPolicy.REJECT, 1);
+        block("shipping.tracking.get");
+        registry.execute("shipping.tracking.get", () -> {}, () -> {});
+
+        assertThat(threadOf("shipping.create")).startsWith("nats-writes-");
+    }
+
+    @Test
+    void rejectPolicyRepliesAtOnceAndCountsTheRejection() throws Exception {
+        registry = registry(RejectionPolicy.REJECT, 1);
+        block("shipping.tracking.get");
+        registry.execute("shipping.tracking.get", () -> {}, () -> {});
+
+        AtomicInteger ran = new AtomicInteger();
+        String[] rejectedOn = new String[1];
+        registry.execute("shipping.tracking.get", ran::incrementAndGet,
+                () -> rejectedOn[0] = Thread.currentThread().getName());
+
+        assertThat(rejectedOn[0]).isEqualTo(Thread.currentThread().getName());
+        assertThat(ran).hasValue(0);
+        assertThat(counter("shipping.nats.rejected", "shipping.tracking.get")).isEqualTo(1.0);
+    }
+
+    @Test
+    void discardOldestRejectsTheOldestQueuedRequest() throws Exception {
+        registry = registry(RejectionPolicy.DISCARD_OLDEST, 1);
+        block("shipping.tracking.get");
+
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch newestRan = new CountDownLatch(1);
+        registry.execute("shipping.tracking.get", () -> {}, rejected::incrementAndGet);
+        registry.execute("shipping.tracking.get", newestRan::countDown, () -> {});
+
+        assertThat(rejected).hasValue(1);
+        release.countDown();
+        assertThat(newestRan.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void retryPolicyNeverRunsTheHandlerOnTheCallerThread() throws Exception {
+        registry = registry(RejectionPolicy.RETRY, 1);
+        block("shipping.tracking.get");
+        registry.execute("shipping.tracking.get", () -> {}, () -> {});
+
+        CompletableFuture<String> ranOn = new CompletableFuture<>();
+        registry.execute("shipping.tracking.get", () -> ranOn.complete(Thread.currentThread().getName()),
+                () -> ranOn.complete("rejected"));
+        assertThat(ranOn).isNotDone();
+
+        // room frees up before the retries run out: the request is served by the pool
+        release.countDown();
+        assertThat(ranOn.get(5, TimeUnit.SECONDS)).startsWith("nats-reads-");
+    }
+
+    @Test
+    void retryPolicyRejectsOnceTheRetriesRunOut() throws Exception {
+        registry = registry(RejectionPolicy.RETRY, 1);
+        block("shipping.tracking.get");
+        registry.execute("shipping.tracking.get", () -> {}, () -> {});
+
+        CompletableFuture<String> rejectedOn = new CompletableFuture<>();
+        registry.execute("shipping.tracking.get", () -> rejectedOn.complete("ran"),
+                () -> rejectedOn.complete(Thread.currentThread().getName()));
+
+        assertThat(rejectedOn.get(5, TimeUnit.SECONDS)).isEqualTo("nats-retry");
+        assertThat(counter("shipping.nats.rejected", "shipping.tracking.get")).isEqualTo(1.0);
+    }
+
+    @Test
+    void publishesQueueDepthAndWaitPerSubject() throws Exception {
+        registry = registry(RejectionPolicy.REJECT, 2);
+        block("shipping.tracking.get");
+        CountDownLatch ran = new CountDownLatch(1);
+        registry.execute("shipping.tracking.get", ran::countDown, () -> {});
+
+        assertThat(registry.queueDepth("shipping.tracking.get")).isEqualTo(1);
+        assertThat(meterRegistry.get("shipping.nats.queue.depth").tag("subject", "shipping.tracking.get")
+                .gauge().value()).isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(registry.queueDepth("shipping.tracking.get")).isZero();
+        assertThat(meterRegistry.get("shipping.nats.queue.wait").tag("subject", "shipping.tracking.get")
+                .timer().count()).isEqualTo(2);
+    }
+
+    // ==== HELPERS ====
+
+    private SubjectExecutorRegistry registry(RejectionPolicy policy, int queueCapacity) {
+        NatsExecutorProperties properties = new NatsExecutorProperties();
+        properties.getDefaults().setConcurrency(1);
+        properties.getDefaults().setQueueCapacity(queueCapacity);
+        properties.getDefaults().setRejectionPolicy(policy);
+        properties.getGroups().put("reads", group("shipping.tracking.get"));
+        properties.getGroups().put("writes", group("shipping.create"));
+        return new SubjectExecutorRegistry(properties, meterRegistry);
+    }
+
+    private static NatsExecutorProperties.Group group(String subject) {
+        NatsExecutorProperties.Group group = new NatsExecutorProperties.Group();
+        group.setSubjects(List.of(subject));
+        return group;
+    }
+
+    /** Occupies the single worker of the subject's group until {@code release} */
+    private void block(String subject) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        registry.execute(subject, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> {});
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private String threadOf(String subject) throws Exception {
+        CompletableFuture<String> thread = new CompletableFuture<>();
+        registry.execute(subject, () -> thread.complete(Thread.currentThread().getName()),
+                () -> thread.complete("rejected"));
+        return thread.get(5, TimeUnit.SECONDS);
+    }
+
+    private double counter(String name, String subject) {
+        return meterRegistry.get(name).tag("subject", subject).counter().count();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.shippingService;
+
+import com.example.shippingService.cache.CacheLoaders;
+import com.example.shippingService.cache.ShipmentCacheInvalidator;
+import com.example.shippingService.dtos.AddTrackingStatusRequest;
+import com.example.shippingService.dtos.TrackingResponse;
+import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.entities.TrackingBucket;
+import com.example.shippingService.entities.TrackingEvent;
+import com.example.shippingService.exception.ShipmentNotFoundException;
+import com.example.shippingService.repositories.ShipmentRepository;
+import com.example.shippingService.repositories.TrackingBucketRepository;
+import com.example.shippingService.services.TrackingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * A tracking event whose bucket copy failed is kept pending and copied later, never lost.
+ */
+@DataMongoTest(properties = {
+        "shipping.tracking.bucket-size=4",
+        "shipping.tracking.recent-events=2"
+})
+@Import({TrackingService.class, CacheLoaders.class})
+@Testcontainers(disabledWithoutDocker = true)
+class TrackingBucketRecoveryTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> mongo.getConnectionString() + "/shipping");
+    }
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @SpyBean
+    private TrackingBucketRepository trackingBucketRepository;
+
+    @Autowired
+    private TrackingService trackingService;
+
+    @MockBean
+    private ShipmentCacheInvalidator cacheInvalidator;
+
+    @BeforeEach
+    void cleanUp() {
+        shipmentRepository.deleteAll();
+        trackingBucketRepository.deleteAll();
+    }
+
+    @Test
+    void failedBucketCopyIsKeptPendingAndCopiedOnTheNextRead() {
+        shipmentRepository.save(shipment("SHIP-PENDING", "LP-PENDING").trackingEventCount(0L).build());
+        doThrow(new DataAccessResourceFailureException("tracking_buckets unavailable"))
+                .doCallRealMethod()
+                .when(trackingBucketRepository).appendEvent(anyString(), anyInt(), any());
+
+        // recorded in the shipment even though the bucket write failed
+        assertThat(trackingService.addTrackingStatusByTrackingNumber("LP-PENDING", scan("PICKED_UP"), null)
+                .getTotalEvents()).isEqualTo(1L);
+        Shipment stored = shipmentRepository.findByShipmentId("SHIP-PENDING").orElseThrow();
+        assertThat(stored.getPendingEvents()).extracting(TrackingEvent::getSequence).containsExactly(0L);
+        assertThat(trackingBucketRepository.findByShipmentIdAndBucket("SHIP-PENDING", 0)).isEmpty();
+
+        // more events push it out of the recent slice: it must survive in the buckets
+        for (String status : List.of("HUB", "OUT_FOR_DELIVERY", "DELIVERED")) {
+            trackingService.addTrackingStatusByTrackingNumber("LP-PENDING", scan(status), null);
+        }
+
+        assertThat(shipmentRepository.findByShipmentId("SHIP-PENDING").orElseThrow().getPendingEvents()).isEmpty();
+        assertThat(trackingService.getTrackingBucket("LP-PENDING", 0).getHistory())
+                .extracting(TrackingResponse.StatusEntry::getStatus)
+                .containsExactly("PICKED_UP", "HUB", "OUT_FOR_DELIVERY", "DELIVERED");
+    }
+
+    @Test
+    void copyingTheSameEventTwiceKeepsOneCopy() {
+        TrackingEvent event = TrackingEvent.builder().status("HUB").timestamp(1L).sequence(5L).build();
+
+        trackingBucketRepository.appendEvent("SHIP-TWICE", 1, event);
+        trackingBucketRepository.appendEvent("SHIP-TWICE", 1, event);
+
+        assertThat(trackingBucketRepository.findByShipmentIdAndBucket("SHIP-TWICE", 1))
+                .map(TrackingBucket::getEvents)
+                .hasValueSatisfying(events -> assertThat(events).hasSize(1));
+    }
+
+    @Test
+    void failedMigrationIsReportedNotTakenForAnUnknownShipment() {
+        List<TrackingEvent> history = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            history.add(TrackingEvent.builder().status("OLD-" + i).timestamp((long) i).build());
+        }
+        shipmentRepository.save(shipment("SHIP-LEGACY", "LP-LEGACY").trackingHistory(history).build());
+        doThrow(new DataAccessResourceFailureException("tracking_buckets unavailable"))
+                .when(trackingBucketRepository).replaceBucket(anyString(), anyInt(), anyList());
+
+        assertThatThrownBy(() -> trackingService.addTrackingStatusByTrackingNumber("LP-LEGACY", scan("HUB"), null))
+                .isInstanceOf(IllegalStateException.class)
+                .isNotInstanceOf(ShipmentNotFoundException.class)
+                .hasMessageContaining("SHIP-LEGACY");
+
+        // once the buckets are back, the same request goes through
+        doCallRealMethod().when(trackingBucketRepository).replaceBucket(anyString(), anyInt(), anyList());
+        assertThat(trackingService.addTrackingStatusByTrackingNumber("LP-LEGACY", scan("HUB"), null)
+                .getTotalEvents()).isEqualTo(7L);
+    }
+
+    @Test
+    void firstReadOfALegacyHistoryIsAnsweredTrimmedWithANewEtag() {
+        List<TrackingEvent> history = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            history.add(TrackingEvent.builder().status("OLD-" + i).timestamp((long) i).build());
+        }
+        shipmentRepository.save(shipment("SHIP-FIRST", "LP-FIRST").trackingHistory(history).build());
+
+        TrackingResponse first = trackingService.getTrackingInfoByTrackingNumber("LP-FIRST");
+
+        assertThat(first.getHistory()).extracting(TrackingResponse.StatusEntry::getStatus)
+                .containsExactly("OLD-4", "OLD-5");
+        assertThat(first.getTotalEvents()).isEqualTo(6L);
+        assertThat(first.getPreviousBucket()).isEqualTo(0);
+        assertThat(first.getEtag()).isEqualTo("r1");
+        // the same answer as any later read of what is now stored
+        assertThat(trackingService.getTrackingInfoByTrackingNumber("LP-FIRST"))
+                .usingRecursiveComparison().isEqualTo(first);
+        assertThat(trackingService.getTrackingBucket("LP-FIRST", 0).getHistory()).hasSize(4);
+    }
+
+    private static Shipment.ShipmentBuilder shipment(String shipmentId, String trackingNumber) {
+        return Shipment.builder()
+                .shipmentId(shipmentId)
+                .trackingNumber(trackingNumber)
+                .userId(7L)
+                .currentStatus("CREATED")
+                .createdAt(Instant.now());
+    }
+
+    private static AddTrackingStatusRequest scan(String status) {
+        AddTrackingStatusRequest request = new AddTrackingStatusRequest();
+        request.setStatus(status);
+        return request;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.shippingService;
+
+import com.example.shippingService.cache.CacheLoaders;
+import com.example.shippingService.cache.ShipmentCacheInvalidator;
+import com.example.shippingService.dtos.AddTrackingStatusRequest;
+import com.example.shippingService.dtos.TrackingResponse;
+import com.example.shippingService.entities.Shipment;
+import com.example.shippingService.repositories.ShipmentRepository;
+import com.example.shippingService.services.TrackingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Parallel scans of the same parcel must all end up in its history.
+ */
+@DataMongoTest(properties = {
+        "shipping.tracking.bucket-size=16",
+        "shipping.tracking.recent-events=10"
+})
+@Import({TrackingService.class, CacheLoaders.class})
+@Testcontainers(disabledWithoutDocker = true)
+class TrackingConcurrencyTest {
+
+    private static final int SCANS = 64;
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> mongo.getConnectionString() + "/shipping");
+    }
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private TrackingService trackingService;
+
+    @MockBean
+    private ShipmentCacheInvalidator cacheInvalidator;
+
+    @Test
+    void parallelScansOfOneParcelAreAllKept() throws Exception {
+        shipmentRepository.save(Shipment.builder()
+                .shipmentId("SHIP-CONCURRENT")
+                .trackingNumber("LP-CONCURRENT")
+                .userId(7L)
+                .currentStatus("CREATED")
+                .createdAt(Instant.now())
+                .build());
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<TrackingResponse>> results = new ArrayList<>();
+
+        for (int i = 0; i < SCANS; i++) {
+            AddTrackingStatusRequest request = new AddTrackingStatusRequest();
+            request.setStatus("SCAN-" + i);
+            request.setLocation("HUB-" + (i % 4));
+            results.add(pool.submit(() -> {
+                start.await();
+                return trackingService.addTrackingStatusByTrackingNumber("LP-CONCURRENT", request, null);
+            }));
+        }
+        start.countDown();
+        for (Future<TrackingResponse> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        TrackingResponse tracking = trackingService.getTrackingInfoByTrackingNumber("LP-CONCURRENT");
+        assertThat(tracking.getTotalEvents()).isEqualTo(SCANS);
+        assertThat(tracking.getHistory()).hasSize(10);
+        assertThat(tracking.getCurrentStatus()).startsWith("SCAN-");
+
+        // Page back through every bucket: each scan is there exactly once
+        List<TrackingResponse.StatusEntry> all = new ArrayList<>();
+        Integer bucket = tracking.getPreviousBucket();
+        assertThat(bucket).isEqualTo(3);
+        while (bucket != null) {
+            TrackingResponse page = trackingService.getTrackingBucket("LP-CONCURRENT", bucket);
+            all.addAll(page.getHistory());
+            bucket = page.getPreviousBucket();
+        }
+        assertThat(all).hasSize(SCANS);
+        assertThat(all)
+                .extracting(TrackingResponse.StatusEntry::getStatus)
+                .doesNotHaveDuplicates();
+        assertThat(all)
+                .allMatch(entry -> Long.valueOf(7L).equals(entry.getUserId()));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.shippingService;
+
+import com.example.shippingService.entities.TrackingEvent;
+import com.example.shippingService.mappers.TrackingEventReadConverter;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrackingEventReadConverterTest {
+
+    private final TrackingEventReadConverter converter = new TrackingEventReadConverter();
+
+    @Test
+    void readsCompactEntries() {
+        TrackingEvent event = converter.convert(new Document()
+                .append("s", "IN_TRANSIT")
+                .append("t", 1735725600000L)
+                .append("u", 7L)
+                .append("l", "HUB-1"));
+
+        assertThat(event.getStatus()).isEqualTo("IN_TRANSIT");
+        assertThat(event.timestampAsInstant()).isEqualTo(Instant.parse("2025-01-01T10:00:00Z"));
+        assertThat(event.getUserId()).isEqualTo(7L);
+        assertThat(event.getLocation()).isEqualTo("HUB-1");
+        assertThat(event.isLegacy()).isFalse();
+    }
+
+    @Test
+    void normalizesLegacyEntriesAndFlagsThem() {
+        Instant at = Instant.parse("2025-01-01T10:00:00Z");
+
+        TrackingEvent fromDate = converter.convert(new Document()
+                .append("status", "CREATED")
+                .append("timestamp", Date.from(at))
+                .append("userId", "7")
+                .append("note", "first scan"));
+        TrackingEvent fromString = converter.convert(new Document()
+                .append("status", "CREATED")
+                .append("timestamp", at.toString())
+                .append("userId", "null"));
+
+        assertThat(fromDate.isLegacy()).isTrue();
+        assertThat(fromDate.getTimestamp()).isEqualTo(at.toEpochMilli());
+        assertThat(fromDate.getUserId()).isEqualTo(7L);
+        assertThat(fromDate.getNote()).isEqualTo("first scan");
+
+        assertThat(fromString.getTimestamp()).isEqualTo(at.toEpochMilli());
+        assertThat(fromString.getUserId()).isNull();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.shippingService;
+
+import com.example.shippingService.cache.TwoLevelCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoLevelCacheTest {
+
+    private ConcurrentMapCache redis;
+    private List<Object> published;
+    private SimpleMeterRegistry meterRegistry;
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        redis = new ConcurrentMapCache("shipments");
+        published = new ArrayList<>();
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new TwoLevelCache("shipments",
+                Caffeine.newBuilder().maximumSize(100).build(),
+                redis,
+                published::add,
+                meterRegistry);
+    }
+
+    @Test
+    void secondReadIsServedFromL1() {
+        redis.put("SHIP-1", "v1");
+
+        assertThat(cache.get("SHIP-1").get()).isEqualTo("v1");   // L1 miss, L2 hit
+        redis.evict("SHIP-1");                                   // L2 no longer involved
+        assertThat(cache.get("SHIP-1").get()).isEqualTo("v1");   // L1 hit
+
+        assertThat(count("l1", "hit")).isEqualTo(1);
+        assertThat(count("l1", "miss")).isEqualTo(1);
+        assertThat(count("l2", "hit")).isEqualTo(1);
+        assertThat(meterRegistry.get("shipping.cache.hit.ratio")
+                .tag("cache", "shipments").tag("level", "l1").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void writesGoToBothLevelsAndAreAnnounced() {
+        cache.put("SHIP-1", "v1");
+        cache.evict("SHIP-2");
+        cache.clear();
+
+        assertThat(published).containsExactly("SHIP-1", "SHIP-2", null);
+    }
+
+    @Test
+    void loadingThroughTheCacheIsNotAnnounced() {
+        assertThat(cache.get("SHIP-1", () -> "loaded")).isEqualTo("loaded");
+
+        assertThat(redis.get("SHIP-1").get()).isEqualTo("loaded");
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    void remoteInvalidationFallsBackToRedis() {
+        cache.put("SHIP-1", "v1");
+        // another replica updated the shipment
+        redis.put("SHIP-1", "v2");
+
+        cache.invalidateLocal("SHIP-1");
+
+        assertThat(cache.get("SHIP-1").get()).isEqualTo("v2");
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(pool.submit(() -> cache.get("LP-1", () -> {
+                    loaderCalls.incrementAndGet();
+                    release.await();
+                    return "tracking";
+                })));
+            }
+            Thread.sleep(200);   // let every thread miss
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("tracking");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(loaderCalls).hasValue(1);
+    }
+
+    @Test
+    void hotEntryIsRefreshedBeforeItsRedisTtl() {
+        AtomicInteger loaderCalls = new AtomicInteger();
+        TwoLevelCache refreshing = refreshingCache(key -> "v" + loaderCalls.incrementAndGet(), value -> -1);
+
+        assertThat(refreshing.get("LP-1", () -> "v" + loaderCalls.incrementAndGet())).isEqualTo("v1");
+
+        // still served from cache, reloaded behind it through the cache's own loader
+        assertThat(refreshing.get("LP-1", () -> "from the @Cacheable call")).isEqualTo("v1");
+        assertThat(loaderCalls).hasValue(2);
+        assertThat(redis.get("LP-1").get()).isEqualTo("v2");
+        assertThat(published).containsExactly("LP-1");
+    }
+
+    @Test
+    void loadFinishingAfterAWriteDoesNotOverwriteIt() {
+        assertThat(cache.get("SHIP-1", () -> {
+            cache.put("SHIP-1", "written");   // the invalidator, while the loader was reading the old version
+            return "loaded";
+        })).isEqualTo("loaded");
+
+        assertThat(redis.get("SHIP-1").get()).isEqualTo("written");
+        assertThat(cache.get("SHIP-1").get()).isEqualTo("written");
+    }
+
+    @Test
+    void loadFinishingAfterAnEvictionDoesNotBringTheOldValueBack() {
+        cache.get("SHIP-1", () -> {
+            cache.evict("SHIP-1");
+            return "loaded";
+        });
+        assertThat(redis.get("SHIP-1")).isNull();
+
+        // same for a write seen on another replica
+        cache.get("SHIP-2", () -> {
+            cache.invalidateLocal("SHIP-2");
+            return "loaded";
+        });
+        assertThat(redis.get("SHIP-2")).isNull();
+    }
+
+    @Test
+    void olderRevisionDoesNotReplaceANewerOneInRedis() {
+        TwoLevelCache versioned = refreshingCache(key -> null, value -> Long.parseLong(((String) value).substring(1)));
+
+        assertThat(versioned.get("SHIP-1", () -> {
+            redis.put("SHIP-1", "r7");   // written by another replica meanwhile
+            return "r6";
+        })).isEqualTo("r6");
+
+        assertThat(redis.get("SHIP-1").get()).isEqualTo("r7");
+    }
+
+    @Test
+    void refreshRacingWithAWriteKeepsTheWrite() {
+        TwoLevelCache[] refreshing = new TwoLevelCache[1];
+        AtomicInteger loaderCalls = new AtomicInteger();
+        refreshing[0] = refreshingCache(key -> {
+            if (loaderCalls.incrementAndGet() > 1) {
+                refreshing[0].put(key, "written");   // write landing during the refresh
+            }
+            return "v" + loaderCalls.get();
+        }, value -> -1);
+
+        refreshing[0].get("LP-1", () -> "v" + loaderCalls.incrementAndGet());
+        refreshing[0].get("LP-1", () -> "unused");
+
+        assertThat(loaderCalls).hasValue(2);
+        assertThat(redis.get("LP-1").get()).isEqualTo("written");
+    }
+
+    private TwoLevelCache refreshingCache(Function<Object, Object> reloader, ToLongFunction<Object> revision) {
+        return new TwoLevelCache("tracking",
+                Caffeine.newBuilder().maximumSize(100).build(),
+                redis,
+                published::add,
+                meterRegistry,
+                value -> Duration.ofSeconds(1),
+                1e9,          // a huge beta pulls the refresh window over the whole TTL
+                reloader,
+                Runnable::run,
+                revision);
+    }
+
+    private double count(String level, String result) {
+        return meterRegistry.get("shipping.cache.requests")
+                .tag("cache", "shipments").tag("level", level).tag("result", result)
+                .counter().count();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.userservice.config;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Identity of this replica, added to every NATS reply so that a response can be traced
+ * back to the instance of the queue group that produced it.
+ */
+@Slf4j
+@Getter
+@Component
+public class ServiceInstance {
+
+    private final String id;
+
+    public ServiceInstance(@Value("${nats.spring.instance-id:}") String configuredId) {
+        if (configuredId != null && !configuredId.isBlank()) {
+            this.id = configuredId;
+        } else if (System.getenv("HOSTNAME") != null) {
+            this.id = System.getenv("HOSTNAME");
+        } else {
+            this.id = "user-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        log.info("User-service instance id: {}", id);
+    }
+}
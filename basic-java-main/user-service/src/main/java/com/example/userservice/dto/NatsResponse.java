@@ -14,6 +14,9 @@ public class NatsResponse {
     private boolean success;
     private Object data;
     private ErrorDto error;
+
+    // replica of the queue group that produced this reply
+    private String instanceId;
     
     public static NatsResponse success(Object data) {
         return NatsResponse.builder()
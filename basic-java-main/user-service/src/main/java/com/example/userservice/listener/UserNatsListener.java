@@ -1,5 +1,6 @@
 package com.example.userservice.listener;
 
+import com.example.userservice.config.ServiceInstance;
 import com.example.userservice.dto.*;
 import com.example.userservice.entity.UserRole;
 import com.example.userservice.service.UserService;
@@ -8,14 +9,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
 import io.nats.client.Message;
+import io.nats.client.MessageHandler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
@@ -25,22 +31,59 @@ public class UserNatsListener {
     private final UserService userService;
     private final ObjectMapper objectMapper;
     private final Connection natsConnection;
+    private final ServiceInstance serviceInstance;
+
+    @Value("${nats.spring.queue-group:user-service}")
+    private String queueGroup;
+
+    @Value("${nats.spring.drain-timeout:10000}")
+    private long drainTimeout;
+
+    private Dispatcher dispatcher;
 
     @PostConstruct
     public void setupListeners() {
-        Dispatcher dispatcher = natsConnection.createDispatcher();
+        dispatcher = natsConnection.createDispatcher();
         
         // Subscribe to all user-related subjects
-        dispatcher.subscribe("user.create", this::handleCreateUser);
-        dispatcher.subscribe("user.get", this::handleGetUser);
-        dispatcher.subscribe("user.getAll", this::handleGetAllUsers);
-        dispatcher.subscribe("user.update", this::handleUpdateUser);
-        dispatcher.subscribe("user.delete", this::handleDeleteUser);
-        dispatcher.subscribe("user.notification", this::handleNotifyUser);
+        subscribe("user.create", this::handleCreateUser);
+        subscribe("user.get", this::handleGetUser);
+        subscribe("user.getAll", this::handleGetAllUsers);
+        subscribe("user.update", this::handleUpdateUser);
+        subscribe("user.delete", this::handleDeleteUser);
+        subscribe("user.notification", this::handleNotifyUser);
 
         // LOGIN
-        dispatcher.subscribe("user.login", this::handleLoginUser);
-        log.info("NATS listeners initialized for user service");
+        subscribe("user.login", this::handleLoginUser);
+        log.info("NATS listeners initialized for user service (instance={}, queueGroup={})",
+                serviceInstance.getId(), queueGroup.isBlank() ? "<none>" : queueGroup);
+    }
+
+    /**
+     * With a queue group, N replicas share the subjects: each request is delivered to one replica only.
+     */
+    private void subscribe(String subject, MessageHandler handler) {
+        if (queueGroup.isBlank()) {
+            dispatcher.subscribe(subject, handler);
+        } else {
+            dispatcher.subscribe(subject, queueGroup, handler);
+        }
+    }
+
+    /**
+     * Stop receiving and finish the messages already delivered before the connection is closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (dispatcher == null) return;
+        try {
+            dispatcher.drain(Duration.ofMillis(drainTimeout)).get(drainTimeout, TimeUnit.MILLISECONDS);
+            log.info("NATS listeners drained (instance={})", serviceInstance.getId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("NATS dispatcher drain did not complete cleanly: {}", e.getMessage());
+        }
     }
 
     // =====================================================================
@@ -62,7 +105,7 @@ public class UserNatsListener {
             // Build success response
             NatsResponse response = NatsResponse.success(user);
 
-            String responseJson = objectMapper.writeValueAsString(response);
+            String responseJson = serialize(response);
 
             // Send reply
             if (message.getReplyTo() != null) {
@@ -109,7 +152,7 @@ public class UserNatsListener {
 
             // Build success response
             NatsResponse response = NatsResponse.success(userDto);
-            String responseJson = objectMapper.writeValueAsString(response);
+            String responseJson = serialize(response);
 
             log.info("Sending response for 'user.create': success");
 
@@ -172,7 +215,7 @@ public class UserNatsListener {
             UserDto userDto = userService.getUserById(id);
 
             NatsResponse response = NatsResponse.success(userDto);
-            String responseJson = objectMapper.writeValueAsString(response);
+            String responseJson = serialize(response);
 
             if (message.getReplyTo() != null) {
                 natsConnection.publish(message.getReplyTo(), responseJson.getBytes(StandardCharsets.UTF_8));
@@ -213,7 +256,7 @@ public class UserNatsListener {
             NatsResponse response = NatsResponse.success(users);
             
             // Serialize and send response
-            String responseJson = objectMapper.writeValueAsString(response);
+            String responseJson = serialize(response);
             log.info("Sending response for 'user.getAll': success with {} users", users.size());
             
             if (message.getReplyTo() != null) {
@@ -287,7 +330,7 @@ public class UserNatsListener {
 
             // Build success response
             NatsResponse response = NatsResponse.success(userDto);
-            String responseJson = objectMapper.writeValueAsString(response);
+            String responseJson = serialize(response);
 
             log.info("Sending response for 'user.update': success");
 
@@ -356,7 +399,7 @@ public class UserNatsListener {
 
             // Build success response with null data
             NatsResponse response = NatsResponse.success(null);
-            String responseJson = objectMapper.writeValueAsString(response);
+            String responseJson = serialize(response);
             log.info("Sending response for 'user.delete': success");
 
             if (message.getReplyTo() != null) {
@@ -394,13 +437,21 @@ public class UserNatsListener {
         }
     }
 
+    /**
+     * Serialize a reply, stamped with the id of this replica
+     */
+    private String serialize(NatsResponse response) throws JsonProcessingException {
+        response.setInstanceId(serviceInstance.getId());
+        return objectMapper.writeValueAsString(response);
+    }
+
     /**
      * Helper method to build error response
      */
     private String buildErrorResponse(String code, String message) {
         try {
             NatsResponse errorResponse = NatsResponse.error(code, message);
-            return objectMapper.writeValueAsString(errorResponse);
+            return serialize(errorResponse);
         } catch (JsonProcessingException e) {
             log.error("Error serializing error response", e);
             return "{\"success\":false,\"data\":null,\"error\":{\"code\":\"SERIALIZATION_ERROR\",\"message\":\"Failed to serialize error response\"}}";